@@ -0,0 +1,64 @@
+package bench;
+
+/**
+ * A benchmark run by the BenchRunner: a setup for a given number of balls, an operation that is timed over and over,
+ * and a teardown. An operation should leave its result in a field, or otherwise have a visible effect, so that the JIT
+ * cannot optimize it away.
+ * @author Peter Dulworth (psd2), Rocky Wu (lw31)
+ */
+public abstract class ABenchmark {
+
+	/**
+	 * The name of the benchmark, e.g. "dispatch.Sequential".
+	 */
+	private final String name;
+
+	/**
+	 * Constructor.
+	 * @param name The name of the benchmark.
+	 */
+	protected ABenchmark(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * @return The name of the benchmark.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return True if the benchmark is run at every number of balls, false if it does not depend on the number of balls
+	 * and is run once only.
+	 */
+	public boolean isSized() {
+		return true;
+	}
+
+	/**
+	 * Prepares a run of the benchmark. Not timed.
+	 * @param n The number of balls, or 1 if the benchmark is not sized.
+	 */
+	public abstract void setup(int n);
+
+	/**
+	 * The timed operation.
+	 */
+	public abstract void op();
+
+	/**
+	 * @param n The number of balls that the benchmark was set up with.
+	 * @return The number of operations that one call of op() counts as, e.g. the number of balls painted, so that the
+	 * time is reported per ball instead of per call.
+	 */
+	public int getOpsPerInvocation(int n) {
+		return 1;
+	}
+
+	/**
+	 * Releases what the setup made. Not timed.
+	 */
+	public void tearDown() {
+	}
+}
@@ -0,0 +1,300 @@
+package bench;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import com.sun.management.ThreadMXBean;
+
+import model.IBallCmd;
+import model.StrategyRegistry;
+import provided.util.dispatcher.impl.IndexedDispatcher;
+import provided.util.dispatcher.impl.ParallelDispatcher;
+import provided.util.dispatcher.impl.SequentialDispatcher;
+import util.MeteredDispatcher;
+
+/**
+ * Runs the benchmarks of the dispatchers, the collision strategies, the object loader and the paint strategies at a
+ * range of numbers of balls, and prints a table of the time and the allocations per operation.
+ *
+ * Each benchmark is set up once per number of balls, warmed up for a few iterations so that the JIT compiles its hot
+ * paths, then timed for a few iterations of a fixed duration, calling its operation over and over. The allocations are
+ * the bytes allocated by all the live threads during the timed iterations, which includes the workers of parallel
+ * dispatchers and renderers, divided by the number of operations. The garbage collections during the timed iterations
+ * are counted as well.
+ *
+ * Usage: java -m HW05/bench.BenchRunner [-n 100,1000,10000,100000] [-f regex] [-w warmups] [-i iterations] [-t ms]
+ * <ul>
+ * <li>-n The numbers of balls to run the sized benchmarks at.</li>
+ * <li>-f Only runs the benchmarks whose name contains a match of the regular expression, e.g. "tick|dispatch".</li>
+ * <li>-w The number of warmup iterations.</li>
+ * <li>-i The number of timed iterations.</li>
+ * <li>-t The duration of an iteration, in milliseconds.</li>
+ * </ul>
+ * @author Peter Dulworth (psd2), Rocky Wu (lw31)
+ */
+public class BenchRunner {
+
+	/**
+	 * The numbers of balls that the sized benchmarks are run at by default.
+	 */
+	public static final int[] DEFAULT_SIZES = { 100, 1000, 10000, 100000 };
+
+	/**
+	 * The numbers of balls to run the sized benchmarks at.
+	 */
+	private int[] sizes = DEFAULT_SIZES;
+
+	/**
+	 * Selects the benchmarks to run by name.
+	 */
+	private Pattern filter = Pattern.compile("");
+
+	/**
+	 * The number of warmup iterations.
+	 */
+	private int warmups = 3;
+
+	/**
+	 * The number of timed iterations.
+	 */
+	private int iterations = 5;
+
+	/**
+	 * The duration of an iteration, in nanoseconds.
+	 */
+	private long iterationNanos = TimeUnit.MILLISECONDS.toNanos(200);
+
+	/**
+	 * The thread bean, which counts the bytes allocated by each thread.
+	 */
+	private final ThreadMXBean threadBean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+	/**
+	 * The beans of the garbage collectors.
+	 */
+	private final List<GarbageCollectorMXBean> gcBeans = ManagementFactory.getGarbageCollectorMXBeans();
+
+	/**
+	 * The measurements of one benchmark at one number of balls.
+	 */
+	private static class Result {
+
+		/**
+		 * The mean time per operation over the timed iterations, in nanoseconds.
+		 */
+		private double nsPerOp;
+
+		/**
+		 * The standard deviation of the time per operation over the timed iterations, in nanoseconds.
+		 */
+		private double nsError;
+
+		/**
+		 * The bytes allocated per operation.
+		 */
+		private double bytesPerOp;
+
+		/**
+		 * The allocation rate, in megabytes per second.
+		 */
+		private double mbPerSec;
+
+		/**
+		 * The number of garbage collections.
+		 */
+		private long gcCount;
+
+		/**
+		 * The time spent in garbage collections, in milliseconds.
+		 */
+		private long gcMillis;
+	}
+
+	/**
+	 * Runs the benchmarks selected by the command line and prints the results on System.out.
+	 * @param args The command line, see the class comment.
+	 */
+	public static void main(String[] args) {
+		BenchRunner runner = new BenchRunner();
+		try {
+			runner.parseArgs(args);
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.err.println("Usage: BenchRunner [-n 100,1000,10000,100000] [-f regex] [-w warmups] [-i iterations] [-t ms]");
+			System.exit(2);
+		}
+		runner.run(allBenchmarks());
+	}
+
+	/**
+	 * @return All the benchmarks: every dispatcher, every collision strategy in sequential and parallel mode, the object
+	 * loader and every indexed paint strategy.
+	 */
+	public static List<ABenchmark> allBenchmarks() {
+		List<ABenchmark> benchmarks = new ArrayList<ABenchmark>();
+		benchmarks.add(new DispatcherBench("Sequential", SequentialDispatcher<IBallCmd>::new));
+		benchmarks.add(new DispatcherBench("Parallel", ParallelDispatcher<IBallCmd>::new));
+		benchmarks.add(new DispatcherBench("Indexed", IndexedDispatcher<IBallCmd>::new));
+		benchmarks.add(new DispatcherBench("MeteredIndexed", () -> new MeteredDispatcher<IBallCmd>(new IndexedDispatcher<IBallCmd>())));
+		for (String strategy : new String[] { "Overlap", "Collide", "CollideExact" }) {
+			benchmarks.add(new CollisionBench(strategy, false));
+			benchmarks.add(new CollisionBench(strategy, true));
+		}
+		benchmarks.add(new LoaderBench());
+		for (String strategy : StrategyRegistry.Singleton.getPaintStrategyNames()) {
+			benchmarks.add(new PaintBench(strategy));
+		}
+		return benchmarks;
+	}
+
+	/**
+	 * Sets the options of this runner from the command line.
+	 * @param args The command line, see the class comment.
+	 * @throws IllegalArgumentException If the command line is malformed.
+	 */
+	private void parseArgs(String[] args) {
+		for (int i = 0; i < args.length; i += 2) {
+			if (i + 1 >= args.length) {
+				throw new IllegalArgumentException("Missing the value of " + args[i]);
+			}
+			String value = args[i + 1];
+			switch (args[i]) {
+			case "-n":
+				sizes = Arrays.stream(value.split(",")).mapToInt(Integer::parseInt).toArray();
+				break;
+			case "-f":
+				filter = Pattern.compile(value);
+				break;
+			case "-w":
+				warmups = Integer.parseInt(value);
+				break;
+			case "-i":
+				iterations = Math.max(1, Integer.parseInt(value));
+				break;
+			case "-t":
+				iterationNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, Long.parseLong(value)));
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown option " + args[i]);
+			}
+		}
+	}
+
+	/**
+	 * Runs the given benchmarks that match the filter, each at every number of balls if it is sized, and prints a row
+	 * of results for each run as soon as it is done.
+	 * @param benchmarks The benchmarks.
+	 */
+	public void run(List<ABenchmark> benchmarks) {
+		if (threadBean.isThreadAllocatedMemorySupported()) {
+			threadBean.setThreadAllocatedMemoryEnabled(true);
+		}
+		System.out.printf("%-28s %7s %14s %12s %12s %10s %5s %7s%n", "Benchmark", "N", "ns/op", "+- sd", "B/op", "MB/s",
+				"GCs", "GC ms");
+		for (ABenchmark b : benchmarks) {
+			if (!filter.matcher(b.getName()).find()) {
+				continue;
+			}
+			for (int n : b.isSized() ? sizes : new int[] { 1 }) {
+				Result r = measure(b, n);
+				System.out.printf("%-28s %7d %14.1f %12.1f %12.1f %10.1f %5d %7d%n", b.getName(), n, r.nsPerOp, r.nsError,
+						r.bytesPerOp, r.mbPerSec, r.gcCount, r.gcMillis);
+			}
+		}
+	}
+
+	/**
+	 * Sets up, warms up, times and tears down the given benchmark at the given number of balls.
+	 * @param b The benchmark.
+	 * @param n The number of balls.
+	 * @return The measurements.
+	 */
+	private Result measure(ABenchmark b, int n) {
+		b.setup(n);
+		try {
+			int batch = 1;
+			for (int i = 0; i < warmups; i++) {
+				long ops = iterate(b, batch);
+				batch = (int) Math.max(1, Math.min(Integer.MAX_VALUE, ops / 100));
+			}
+			double[] nsPerOp = new double[iterations];
+			long totalOps = 0;
+			long bytes0 = allocatedBytes();
+			long gcCount0 = gcCount();
+			long gcMillis0 = gcMillis();
+			long start = System.nanoTime();
+			for (int i = 0; i < iterations; i++) {
+				long t0 = System.nanoTime();
+				long ops = iterate(b, batch) * b.getOpsPerInvocation(n);
+				nsPerOp[i] = (double) (System.nanoTime() - t0) / ops;
+				totalOps += ops;
+			}
+			long elapsed = System.nanoTime() - start;
+			long bytes = allocatedBytes() - bytes0;
+
+			Result r = new Result();
+			r.nsPerOp = Arrays.stream(nsPerOp).average().orElse(0);
+			r.nsError = Math.sqrt(Arrays.stream(nsPerOp).map((t) -> (t - r.nsPerOp) * (t - r.nsPerOp)).sum() / Math.max(1, iterations - 1));
+			r.bytesPerOp = (double) bytes / totalOps;
+			r.mbPerSec = bytes / 1e6 / (elapsed / 1e9);
+			r.gcCount = gcCount() - gcCount0;
+			r.gcMillis = gcMillis() - gcMillis0;
+			return r;
+		} finally {
+			b.tearDown();
+		}
+	}
+
+	/**
+	 * Calls the operation of the given benchmark in batches until an iteration's duration has passed.
+	 * @param b The benchmark.
+	 * @param batch The number of calls between two reads of the clock.
+	 * @return The number of calls.
+	 */
+	private long iterate(ABenchmark b, int batch) {
+		long calls = 0;
+		long start = System.nanoTime();
+		do {
+			for (int i = 0; i < batch; i++) {
+				b.op();
+			}
+			calls += batch;
+		} while (System.nanoTime() - start < iterationNanos);
+		return calls;
+	}
+
+	/**
+	 * @return The total number of bytes allocated so far by the live threads, or 0 if it is not measured.
+	 */
+	private long allocatedBytes() {
+		if (!threadBean.isThreadAllocatedMemoryEnabled()) {
+			return 0;
+		}
+		long total = 0;
+		for (long bytes : threadBean.getThreadAllocatedBytes(threadBean.getAllThreadIds())) {
+			if (bytes > 0) {
+				total += bytes;
+			}
+		}
+		return total;
+	}
+
+	/**
+	 * @return The total number of garbage collections so far.
+	 */
+	private long gcCount() {
+		return gcBeans.stream().mapToLong((gc) -> Math.max(0, gc.getCollectionCount())).sum();
+	}
+
+	/**
+	 * @return The total time spent in garbage collections so far, in milliseconds.
+	 */
+	private long gcMillis() {
+		return gcBeans.stream().mapToLong((gc) -> Math.max(0, gc.getCollectionTime())).sum();
+	}
+}
@@ -0,0 +1,68 @@
+package bench;
+
+import model.BallModel;
+import model.IBallCmd;
+import model.IPaintStrategy;
+import model.IUpdateStrategyFac;
+
+/**
+ * Times one tick of a headless BallModel whose n balls all use the given update strategy, e.g. "Collide". The world
+ * grows with n so that the density of the balls, and thus the number of contacts per ball, stays the same.
+ * @author Peter Dulworth (psd2), Rocky Wu (lw31)
+ */
+public class CollisionBench extends ABenchmark {
+
+	/**
+	 * The area of the world per ball, in square pixels. A ball covers about a third of it.
+	 */
+	private static final double AREA_PER_BALL = 4000;
+
+	/**
+	 * The short name of the update strategy of the balls.
+	 */
+	private final String strategyName;
+
+	/**
+	 * Whether the ticks run in parallel mode, see BallModel.setParallel().
+	 */
+	private final boolean parallel;
+
+	/**
+	 * The model set up with the balls.
+	 */
+	private BallModel model;
+
+	/**
+	 * Constructor.
+	 * @param strategyName The short name of the update strategy of the balls, e.g. "Collide".
+	 * @param parallel True to run the ticks in parallel mode.
+	 */
+	public CollisionBench(String strategyName, boolean parallel) {
+		super("tick." + strategyName + (parallel ? ".parallel" : ""));
+		this.strategyName = strategyName;
+		this.parallel = parallel;
+	}
+
+	@Override
+	public void setup(int n) {
+		int side = (int) Math.ceil(Math.sqrt(n * AREA_PER_BALL));
+		model = new BallModel(side, side);
+		model.setParallel(parallel);
+		model.setSeed(n);
+		IUpdateStrategyFac<IBallCmd> fac = model.makeUpdateStrategyFac(strategyName);
+		for (int i = 0; i < n; i++) {
+			model.makeBall(fac.make(), IPaintStrategy.NULL);
+		}
+		model.tick();
+	}
+
+	@Override
+	public void op() {
+		model.tick();
+	}
+
+	@Override
+	public void tearDown() {
+		model = null;
+	}
+}
@@ -0,0 +1,87 @@
+package bench;
+
+import java.awt.Color;
+import java.awt.Point;
+import java.util.SplittableRandom;
+import java.util.function.Supplier;
+
+import model.Ball;
+import model.BallStore;
+import model.IBallCmd;
+import model.IPaintStrategy;
+import model.strategy.StraightStrategy;
+import provided.util.dispatcher.IDispatcher;
+import provided.util.valueGenerator.impl.RandomEngine;
+
+/**
+ * Times one updateAll() of a dispatcher over n balls, with the command that moved, bounced and updated every ball
+ * before the model moved the balls in bulk over its store.
+ * @author Peter Dulworth (psd2), Rocky Wu (lw31)
+ */
+public class DispatcherBench extends ABenchmark {
+
+	/**
+	 * The width and height of the world of the balls.
+	 */
+	private static final int WORLD = 1000;
+
+	/**
+	 * The command sent to every ball.
+	 */
+	private static final IBallCmd CMD = (context, disp) -> {
+		context.move();
+		context.bounce();
+		context.updateState(disp);
+	};
+
+	/**
+	 * Makes the dispatcher to time.
+	 */
+	private final Supplier<IDispatcher<IBallCmd>> dispatcherFac;
+
+	/**
+	 * The dispatcher set up with the balls.
+	 */
+	private IDispatcher<IBallCmd> dispatcher;
+
+	/**
+	 * Constructor.
+	 * @param name The name of the dispatcher, e.g. "Sequential".
+	 * @param dispatcherFac Makes the dispatcher to time.
+	 */
+	public DispatcherBench(String name, Supplier<IDispatcher<IBallCmd>> dispatcherFac) {
+		super("dispatch." + name);
+		this.dispatcherFac = dispatcherFac;
+	}
+
+	@Override
+	public void setup(int n) {
+		BallStore store = new BallStore();
+		store.setBounds(WORLD, WORLD);
+		dispatcher = dispatcherFac.get();
+		SplittableRandom random = new SplittableRandom(n);
+		for (int i = 0; i < n; i++) {
+			int r = RandomEngine.nextInt(random, 15, 30);
+			Ball b = new Ball(new Point(RandomEngine.nextInt(random, r, WORLD - r), RandomEngine.nextInt(random, r, WORLD - r)), r,
+					new Point(RandomEngine.nextInt(random, -7, 7), RandomEngine.nextInt(random, -7, 7)), Color.RED, null,
+					new StraightStrategy<IBallCmd>(), IPaintStrategy.NULL);
+			store.adopt(b);
+			dispatcher.addObserver(b);
+		}
+	}
+
+	@Override
+	public void op() {
+		dispatcher.updateAll(CMD);
+	}
+
+	@Override
+	public int getOpsPerInvocation(int n) {
+		return n;
+	}
+
+	@Override
+	public void tearDown() {
+		dispatcher = null;
+	}
+}
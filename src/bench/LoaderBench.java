@@ -0,0 +1,58 @@
+package bench;
+
+import model.IPaintStrategy;
+import provided.util.loader.impl.ObjectLoader;
+
+/**
+ * Times ObjectLoader.loadInstance() of a paint strategy by its fully qualified class name, as the BallModel does for
+ * every ball it makes. Does not depend on the number of balls.
+ * @author Peter Dulworth (psd2), Rocky Wu (lw31)
+ */
+public class LoaderBench extends ABenchmark {
+
+	/**
+	 * The class that is loaded.
+	 */
+	private static final String CLASS_NAME = "model.paint.strategy.BallPaintStrategy";
+
+	/**
+	 * The loader.
+	 */
+	private ObjectLoader<IPaintStrategy> loader;
+
+	/**
+	 * The latest instance loaded, kept so that loading it cannot be optimized away.
+	 */
+	private IPaintStrategy loaded;
+
+	/**
+	 * Constructor.
+	 */
+	public LoaderBench() {
+		super("loader.loadInstance");
+	}
+
+	@Override
+	public boolean isSized() {
+		return false;
+	}
+
+	@Override
+	public void setup(int n) {
+		loader = new ObjectLoader<IPaintStrategy>((args) -> IPaintStrategy.NULL);
+	}
+
+	@Override
+	public void op() {
+		loaded = loader.loadInstance(CLASS_NAME);
+	}
+
+	@Override
+	public void tearDown() {
+		if (IPaintStrategy.NULL == loaded) {
+			System.err.println("LoaderBench: could not load " + CLASS_NAME);
+		}
+		loader = null;
+		loaded = null;
+	}
+}
@@ -0,0 +1,89 @@
+package bench;
+
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+
+import model.BallModel;
+import model.IBallCmd;
+import model.IPaintStrategyFac;
+import model.IUpdateStrategyFac;
+
+/**
+ * Times painting n balls that all use the given paint strategy, e.g. "Ball", into an offscreen BufferedImage the size
+ * of a typical window, and reports the time per ball. The balls are painted from a snapshot of a headless BallModel,
+ * so the time includes the batching and the level-of-detail policy of the renderer at its current quality.
+ * @author Peter Dulworth (psd2), Rocky Wu (lw31)
+ */
+public class PaintBench extends ABenchmark {
+
+	/**
+	 * The width of the image.
+	 */
+	private static final int WIDTH = 1024;
+
+	/**
+	 * The height of the image.
+	 */
+	private static final int HEIGHT = 768;
+
+	/**
+	 * The short name of the paint strategy of the balls.
+	 */
+	private final String strategyName;
+
+	/**
+	 * The model set up with the balls.
+	 */
+	private BallModel model;
+
+	/**
+	 * The image that is painted into.
+	 */
+	private BufferedImage image;
+
+	/**
+	 * The Graphics of the image.
+	 */
+	private Graphics g;
+
+	/**
+	 * Constructor.
+	 * @param strategyName The short name of the paint strategy of the balls, e.g. "Ball".
+	 */
+	public PaintBench(String strategyName) {
+		super("paint." + strategyName);
+		this.strategyName = strategyName;
+	}
+
+	@Override
+	public void setup(int n) {
+		model = new BallModel(WIDTH, HEIGHT);
+		model.setSeed(n);
+		IUpdateStrategyFac<IBallCmd> straight = model.makeUpdateStrategyFac("Straight");
+		IPaintStrategyFac fac = model.makePaintStrategyFac(strategyName);
+		for (int i = 0; i < n; i++) {
+			model.makeBall(straight.make(), fac.make());
+		}
+		model.tick();
+		image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+		g = image.createGraphics();
+	}
+
+	@Override
+	public void op() {
+		model.paint(g);
+	}
+
+	@Override
+	public int getOpsPerInvocation(int n) {
+		return n;
+	}
+
+	@Override
+	public void tearDown() {
+		g.dispose();
+		g = null;
+		image = null;
+		model = null;
+	}
+}
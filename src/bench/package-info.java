@@ -0,0 +1,8 @@
+/**
+ * This package contains the benchmarks of the dispatchers, the collision strategies, the object loader and the paint
+ * strategies, and the harness that runs them, see BenchRunner.
+ *
+ * @author Peter Dulworth (psd2)
+ * @author Rocky Wu (lw31)
+ */
+package bench;
@@ -122,18 +122,33 @@ public class Controller {
 
 			@Override
 			public void paint(Graphics g) {
-				model.update(g);
+				model.paint(g);
+			}
+
+			@Override
+			public void paint(Graphics g, long nanoTime) {
+				model.paint(g, nanoTime);
 			}
 
 		});
+
+		// pre-populate the drop lists with the strategies that the model knows about
+		for (String name : model.getUpdateStrategyNames()) {
+			view.addStrategyItem(model.makeUpdateStrategyFac(name));
+		}
+		for (String name : model.getPaintStrategyNames()) {
+			view.addPaintItem(model.makePaintStrategyFac(name));
+		}
 	}
 
 	/**
-	 * Start the system.	
+	 * Start the system. Also publishes the metrics of the model if the system property ballworld.metrics.port is set,
+	 * see MetricsServer.
 	 */
 	public void start() {
 		view.start();
 		model.start();
+		MetricsServer.startFromProperties(model);
 	}
 
 	/**
@@ -0,0 +1,377 @@
+package controller;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.sun.management.ThreadMXBean;
+
+import model.BallModel;
+import model.IBallCmd;
+import model.IPaintStrategy;
+import model.IUpdateStrategyFac;
+import model.StrategyRegistry;
+import util.LatencyHistogram;
+import util.MeteredDispatcher;
+
+/**
+ * Command-line entry point that runs a BallModel without a window, populated with a given mix of update strategies,
+ * for a fixed number of ticks, and reports the tick latency percentiles, the balls updated per second, the bytes
+ * allocated per tick and the traffic of the dispatcher per tick. The distribution of the tick times can be written to a file to compare runs.
+ *
+ * Usage: java -m HW05/controller.LoadGenerator [-mix 40:Collide,30:Overlap+Eat,30:Spawn] [-n 10000] [-ticks 1000]
+ * [-warmup 100] [-size WIDTHxHEIGHT] [-seed 1] [-parallel] [-out ticks.hgrm] [-metrics PORT]
+ * <ul>
+ * <li>-mix The shares of the population, each a weight and the short names of one or more update strategies joined
+ * with "+", which are combined as by the Combine button.</li>
+ * <li>-n The number of balls made before the first tick.</li>
+ * <li>-ticks The number of ticks that are timed.</li>
+ * <li>-warmup The number of ticks run before the timed ones, so that the JIT compiles the hot paths.</li>
+ * <li>-size The size of the world. By default it grows with the number of balls, at about 4000 square pixels per ball.</li>
+ * <li>-seed The seed of the random initial conditions, see BallModel.setSeed().</li>
+ * <li>-parallel Runs the ticks in parallel mode, see BallModel.setParallel().</li>
+ * <li>-out The file to write the distribution of the tick times to, as a table of percentiles.</li>
+ * <li>-metrics Publishes the metrics of the model on the given port of the loopback address while the load runs, see
+ * MetricsServer. Port 0 picks a free port.</li>
+ * </ul>
+ * @author Peter Dulworth (psd2), Rocky Wu (lw31)
+ */
+public class LoadGenerator {
+
+	/**
+	 * The area of the world per ball when no size is given, in square pixels.
+	 */
+	private static final double AREA_PER_BALL = 4000;
+
+	/**
+	 * The mix of strategies.
+	 */
+	private String mix = "40:Collide,30:Overlap+Eat,30:Spawn";
+
+	/**
+	 * The number of balls made before the first tick.
+	 */
+	private int n = 10000;
+
+	/**
+	 * The number of ticks that are timed.
+	 */
+	private int ticks = 1000;
+
+	/**
+	 * The number of ticks run before the timed ones.
+	 */
+	private int warmup = 100;
+
+	/**
+	 * The width of the world, or 0 to size it from the number of balls.
+	 */
+	private int width = 0;
+
+	/**
+	 * The height of the world, or 0 to size it from the number of balls.
+	 */
+	private int height = 0;
+
+	/**
+	 * The seed of the random initial conditions.
+	 */
+	private long seed = 1;
+
+	/**
+	 * Whether the ticks run in parallel mode.
+	 */
+	private boolean parallel = false;
+
+	/**
+	 * The file to write the distribution of the tick times to, or null.
+	 */
+	private String out = null;
+
+	/**
+	 * The port to publish the metrics on, or -1 not to publish them.
+	 */
+	private int metricsPort = -1;
+
+	/**
+	 * The thread bean, which counts the bytes allocated by each thread.
+	 */
+	private final ThreadMXBean threadBean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+	/**
+	 * One share of the mix: the strategy of the balls and its weight.
+	 */
+	private static class Share {
+
+		/**
+		 * The strategy names as given, e.g. "Overlap+Eat".
+		 */
+		private final String names;
+
+		/**
+		 * The weight of the share.
+		 */
+		private final double weight;
+
+		/**
+		 * The factory of the strategy of the balls.
+		 */
+		private final IUpdateStrategyFac<IBallCmd> fac;
+
+		/**
+		 * The number of balls of the share.
+		 */
+		private int count;
+
+		/**
+		 * Constructor.
+		 * @param names The strategy names as given.
+		 * @param weight The weight of the share.
+		 * @param fac The factory of the strategy of the balls.
+		 */
+		private Share(String names, double weight, IUpdateStrategyFac<IBallCmd> fac) {
+			this.names = names;
+			this.weight = weight;
+			this.fac = fac;
+		}
+	}
+
+	/**
+	 * Runs the load described by the command line and prints the report on System.out.
+	 * @param args The command line, see the class comment.
+	 */
+	public static void main(String[] args) {
+		LoadGenerator generator = new LoadGenerator();
+		try {
+			generator.parseArgs(args);
+			generator.run();
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.err.println("Usage: LoadGenerator [-mix 40:Collide,30:Overlap+Eat,30:Spawn] [-n 10000] [-ticks 1000] "
+					+ "[-warmup 100] [-size WIDTHxHEIGHT] [-seed 1] [-parallel] [-out ticks.hgrm] [-metrics PORT]");
+			System.exit(2);
+		}
+	}
+
+	/**
+	 * Sets the options of this generator from the command line.
+	 * @param args The command line, see the class comment.
+	 * @throws IllegalArgumentException If the command line is malformed.
+	 */
+	private void parseArgs(String[] args) {
+		for (int i = 0; i < args.length; i++) {
+			if ("-parallel".equals(args[i])) {
+				parallel = true;
+				continue;
+			}
+			if (i + 1 >= args.length) {
+				throw new IllegalArgumentException("Missing the value of " + args[i]);
+			}
+			String value = args[++i];
+			switch (args[i - 1]) {
+			case "-mix":
+				mix = value;
+				break;
+			case "-n":
+				n = Integer.parseInt(value);
+				break;
+			case "-ticks":
+				ticks = Math.max(1, Integer.parseInt(value));
+				break;
+			case "-warmup":
+				warmup = Math.max(0, Integer.parseInt(value));
+				break;
+			case "-size":
+				String[] wh = value.split("x");
+				if (wh.length != 2) {
+					throw new IllegalArgumentException("Malformed size " + value);
+				}
+				width = Integer.parseInt(wh[0]);
+				height = Integer.parseInt(wh[1]);
+				break;
+			case "-seed":
+				seed = Long.parseLong(value);
+				break;
+			case "-out":
+				out = value;
+				break;
+			case "-metrics":
+				metricsPort = Integer.parseInt(value);
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown option " + args[i - 1]);
+			}
+		}
+	}
+
+	/**
+	 * Parses the mix and splits the balls between its shares, by the largest remainder so that the counts add up to n.
+	 * @param model The model that makes the strategy factories.
+	 * @return The shares of the mix.
+	 * @throws IllegalArgumentException If the mix is malformed or names an unknown strategy.
+	 */
+	private List<Share> parseMix(BallModel model) {
+		List<Share> shares = new ArrayList<Share>();
+		double total = 0;
+		for (String entry : mix.split(",")) {
+			String[] parts = entry.trim().split(":");
+			if (parts.length != 2) {
+				throw new IllegalArgumentException("Malformed share " + entry + ", expected WEIGHT:NAME[+NAME...]");
+			}
+			double weight = Double.parseDouble(parts[0]);
+			IUpdateStrategyFac<IBallCmd> fac = null;
+			for (String name : parts[1].split("\\+")) {
+				if (StrategyRegistry.Singleton.isIndexed() && null == StrategyRegistry.Singleton.findUpdateStrategy(name)) {
+					throw new IllegalArgumentException("Unknown update strategy " + name + ", one of "
+							+ StrategyRegistry.Singleton.getUpdateStrategyNames());
+				}
+				IUpdateStrategyFac<IBallCmd> nameFac = model.makeUpdateStrategyFac(name);
+				fac = null == fac ? nameFac : model.combineStrategyFacs(fac, nameFac);
+			}
+			shares.add(new Share(parts[1], weight, fac));
+			total += weight;
+		}
+		if (total <= 0) {
+			throw new IllegalArgumentException("The weights of the mix add up to " + total);
+		}
+		int made = 0;
+		for (Share share : shares) {
+			share.count = (int) Math.floor(n * share.weight / total);
+			made += share.count;
+		}
+		final double sum = total;
+		shares.stream().sorted((a, b) -> Double.compare(frac(n * b.weight / sum), frac(n * a.weight / sum))).limit(n - made)
+				.forEach((share) -> share.count++);
+		return shares;
+	}
+
+	/**
+	 * @param x A non-negative number.
+	 * @return The fractional part of x.
+	 */
+	private static double frac(double x) {
+		return x - Math.floor(x);
+	}
+
+	/**
+	 * Builds the model, publishes its metrics if asked to and runs the load.
+	 * @throws IllegalArgumentException If the mix is malformed, the metrics port cannot be bound or the output file
+	 * cannot be written.
+	 */
+	private void run() {
+		if (0 == width || 0 == height) {
+			width = height = (int) Math.ceil(Math.sqrt(Math.max(1, n) * AREA_PER_BALL));
+		}
+		BallModel model = new BallModel(width, height);
+		MetricsServer metrics = new MetricsServer(model);
+		if (metricsPort >= 0) {
+			try {
+				metrics.start(metricsPort);
+			} catch (IOException e) {
+				throw new IllegalArgumentException("Cannot listen on port " + metricsPort + ": " + e.getMessage());
+			}
+			System.out.printf("metrics:    %s%n", metrics.getUrl());
+		}
+		try {
+			run(model);
+		} finally {
+			metrics.stop();
+		}
+	}
+
+	/**
+	 * Populates the model, runs the warmup and timed ticks and prints the report.
+	 * @param model The empty model.
+	 * @throws IllegalArgumentException If the mix is malformed or the output file cannot be written.
+	 */
+	private void run(BallModel model) {
+		model.setParallel(parallel);
+		model.setSeed(seed);
+		List<Share> shares = parseMix(model);
+		for (Share share : shares) {
+			for (int i = 0; i < share.count; i++) {
+				model.makeBall(share.fac.make(), IPaintStrategy.NULL);
+			}
+		}
+		model.tick(); // makes the balls
+		for (int i = 0; i < warmup; i++) {
+			model.tick();
+		}
+		int startBalls = model.getBallCount();
+
+		LatencyHistogram histogram = new LatencyHistogram();
+		long ballTicks = 0;
+		MeteredDispatcher.Sample traffic0 = model.getDispatcherMeter().getTotals();
+		long maxDepth = 0;
+		long bytes0 = allocatedBytes();
+		long start = System.nanoTime();
+		for (int i = 0; i < ticks; i++) {
+			long t0 = System.nanoTime();
+			model.tick();
+			histogram.record(System.nanoTime() - t0);
+			ballTicks += model.getBallCount();
+			maxDepth = Math.max(maxDepth, model.getDispatcherSample().getMaxDepth());
+		}
+		long elapsed = System.nanoTime() - start;
+		long bytes = allocatedBytes() - bytes0;
+		MeteredDispatcher.Sample traffic = model.getDispatcherMeter().getTotals();
+		LatencyHistogram updateAll = model.getDispatcherMeter().getLatency();
+		LatencyHistogram updateAllPairs = model.getDispatcherMeter().getPairLatency();
+
+		StringBuilder mixReport = new StringBuilder();
+		for (Share share : shares) {
+			mixReport.append(mixReport.length() == 0 ? "" : ", ").append(share.count).append(' ').append(share.names);
+		}
+		System.out.printf("mix:        %s%n", mixReport);
+		System.out.printf("world:      %dx%d, %s ticks, seed %d%n", width, height, parallel ? "parallel" : "sequential", seed);
+		System.out.printf("balls:      %d after %d warmup ticks, %d after %d timed ticks%n", startBalls, warmup,
+				model.getBallCount(), ticks);
+		System.out.printf("tick:       p50 %.3f ms, p99 %.3f ms, p999 %.3f ms, max %.3f ms, mean %.3f ms%n",
+				histogram.getValueAtPercentile(50) / 1e6, histogram.getValueAtPercentile(99) / 1e6,
+				histogram.getValueAtPercentile(99.9) / 1e6, histogram.getMax() / 1e6, histogram.getMean() / 1e6);
+		System.out.printf("throughput: %.0f balls/s, %.1f ticks/s%n", ballTicks / (elapsed / 1e9), ticks / (elapsed / 1e9));
+		System.out.printf("allocation: %.0f B/tick, %.1f MB/s%n", (double) bytes / ticks, bytes / 1e6 / (elapsed / 1e9));
+		System.out.printf("dispatcher: %.1f messages/tick, %.1f updateAll/tick of which %.1f nested, max depth %d, "
+				+ "%.1f adds/tick, %.1f removes/tick%n", (double) (traffic.getMessages() - traffic0.getMessages()) / ticks,
+				(double) (traffic.getUpdateAllCalls() - traffic0.getUpdateAllCalls()) / ticks,
+				(double) (traffic.getNestedCalls() - traffic0.getNestedCalls()) / ticks, maxDepth,
+				(double) (traffic.getAdds() - traffic0.getAdds()) / ticks, (double) (traffic.getRemoves() - traffic0.getRemoves()) / ticks);
+		System.out.printf("updateAll:  p50 %.3f ms, p99 %.3f ms, max %.3f ms (outermost calls, warmup included)%n",
+				updateAll.getValueAtPercentile(50) / 1e6, updateAll.getValueAtPercentile(99) / 1e6, updateAll.getMax() / 1e6);
+		System.out.printf("pairs:      %.1f pairs/tick, %.1f updateAllPairs/tick, p50 %.3f ms, p99 %.3f ms, max %.3f ms "
+				+ "(outermost calls, warmup included)%n", (double) (traffic.getPairs() - traffic0.getPairs()) / ticks,
+				(double) (traffic.getPairCalls() - traffic0.getPairCalls()) / ticks, updateAllPairs.getValueAtPercentile(50) / 1e6,
+				updateAllPairs.getValueAtPercentile(99) / 1e6, updateAllPairs.getMax() / 1e6);
+
+		if (null != out) {
+			try (PrintStream ps = new PrintStream(out)) {
+				ps.printf("# LoadGenerator -mix %s -n %d -ticks %d -warmup %d -size %dx%d -seed %d%s%n", mix, n, ticks, warmup,
+						width, height, seed, parallel ? " -parallel" : "");
+				histogram.writePercentiles(ps);
+			} catch (FileNotFoundException e) {
+				throw new IllegalArgumentException("Cannot write " + out + ": " + e.getMessage());
+			}
+			System.out.printf("histogram:  %s%n", out);
+		}
+	}
+
+	/**
+	 * @return The total number of bytes allocated so far by the live threads, or 0 if it is not measured.
+	 */
+	private long allocatedBytes() {
+		if (!threadBean.isThreadAllocatedMemorySupported()) {
+			return 0;
+		}
+		threadBean.setThreadAllocatedMemoryEnabled(true);
+		long total = 0;
+		for (long bytes : threadBean.getThreadAllocatedBytes(threadBean.getAllThreadIds())) {
+			if (bytes > 0) {
+				total += bytes;
+			}
+		}
+		return total;
+	}
+}
@@ -0,0 +1,316 @@
+package controller;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import model.BallModel;
+import model.BallSnapshot;
+import model.paint.ImageCache;
+import model.paint.SpriteCache;
+import util.LatencyHistogram;
+import util.MeteredDispatcher;
+
+/**
+ * An optional HTTP endpoint that publishes the metrics of a BallModel in the Prometheus text format, on the JDK's
+ * built-in HTTP server: the balls per update and paint strategy class, the tick, frame, updateAll() and
+ * updateAllPairs() time histograms, the balls spawned and killed, the traffic of the dispatcher, the hits and misses of
+ * the image and sprite caches and the collections and pause time of each garbage collector.
+ *
+ * A scrape never iterates the dispatcher or takes a lock of the model: the balls are counted from the latest published
+ * BallSnapshot, which is immutable, and every counter and histogram is striped over LongAdders that are read without
+ * stopping the simulation. The server answers on a single daemon thread.
+ *
+ * The Controller starts a server when the system property ballworld.metrics.port is set, e.g.
+ * -Dballworld.metrics.port=9404, and the LoadGenerator when given -metrics PORT. By default the server only listens on
+ * the loopback address; set ballworld.metrics.host to listen on another one. Port 0 picks a free port, see getPort().
+ * @author Peter Dulworth (psd2), Rocky Wu (lw31)
+ */
+public class MetricsServer {
+
+	/**
+	 * The path that the metrics are published at.
+	 */
+	public static final String PATH = "/metrics";
+
+	/**
+	 * The content type of the Prometheus text format.
+	 */
+	private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+	/**
+	 * The upper bounds of the buckets of the time histograms, in seconds.
+	 */
+	private static final double[] BUCKETS = { 0.0001, 0.00025, 0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25,
+			0.5, 1, 2.5 };
+
+	/**
+	 * The model whose metrics are published.
+	 */
+	private final BallModel model;
+
+	/**
+	 * The running server, or null if it is not started.
+	 */
+	private HttpServer server = null;
+
+	/**
+	 * The thread that answers the requests, or null if the server is not started.
+	 */
+	private ExecutorService executor = null;
+
+	/**
+	 * Constructor.
+	 * @param model The model whose metrics are published.
+	 */
+	public MetricsServer(BallModel model) {
+		this.model = model;
+	}
+
+	/**
+	 * Starts a server for the given model if the system property ballworld.metrics.port is set.
+	 * @param model The model whose metrics are published.
+	 * @return The started server, or null if the property is not set or the server cannot be started.
+	 */
+	public static MetricsServer startFromProperties(BallModel model) {
+		String port = System.getProperty("ballworld.metrics.port");
+		if (null == port) {
+			return null;
+		}
+		MetricsServer metrics = new MetricsServer(model);
+		try {
+			String host = System.getProperty("ballworld.metrics.host");
+			InetAddress address = null == host ? InetAddress.getLoopbackAddress() : InetAddress.getByName(host);
+			metrics.start(new InetSocketAddress(address, Integer.parseInt(port)));
+			System.out.println("Metrics published at " + metrics.getUrl());
+			return metrics;
+		} catch (IOException | NumberFormatException e) {
+			System.err.println("MetricsServer: Cannot listen on port " + port + ": " + e);
+			return null;
+		}
+	}
+
+	/**
+	 * Starts the server on the given port of the loopback address.
+	 * @param port The port, or 0 for a free one.
+	 * @throws IOException If the port cannot be bound.
+	 */
+	public void start(int port) throws IOException {
+		start(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+	}
+
+	/**
+	 * Starts the server on the given address. Does nothing if it is already started.
+	 * @param address The address and port to listen on. Port 0 picks a free port.
+	 * @throws IOException If the address cannot be bound.
+	 */
+	public synchronized void start(InetSocketAddress address) throws IOException {
+		if (null != server) {
+			return;
+		}
+		HttpServer s = HttpServer.create(address, 0);
+		s.createContext(PATH, this::handle);
+		executor = Executors.newSingleThreadExecutor((r) -> {
+			Thread t = new Thread(r, "MetricsServer");
+			t.setDaemon(true);
+			return t;
+		});
+		s.setExecutor(executor);
+		s.start();
+		server = s;
+	}
+
+	/**
+	 * Stops the server, letting the requests in progress finish for up to a second. Does nothing if it is not started.
+	 */
+	public synchronized void stop() {
+		if (null == server) {
+			return;
+		}
+		server.stop(1);
+		executor.shutdown();
+		server = null;
+		executor = null;
+	}
+
+	/**
+	 * @return The port that the server listens on, or -1 if it is not started.
+	 */
+	public synchronized int getPort() {
+		return null == server ? -1 : server.getAddress().getPort();
+	}
+
+	/**
+	 * @return The URL of the metrics, or null if the server is not started.
+	 */
+	public synchronized String getUrl() {
+		if (null == server) {
+			return null;
+		}
+		InetSocketAddress address = server.getAddress();
+		return "http://" + address.getHostString() + ":" + address.getPort() + PATH;
+	}
+
+	/**
+	 * Answers a request for the metrics. Runs on the thread of the server.
+	 * @param exchange The request and its response.
+	 * @throws IOException If the response cannot be sent.
+	 */
+	private void handle(HttpExchange exchange) throws IOException {
+		try {
+			String method = exchange.getRequestMethod();
+			if (!"GET".equals(method) && !"HEAD".equals(method)) {
+				exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+				exchange.sendResponseHeaders(405, -1);
+				return;
+			}
+			byte[] body = scrape().getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+			if ("HEAD".equals(method)) {
+				exchange.sendResponseHeaders(200, -1);
+				return;
+			}
+			exchange.sendResponseHeaders(200, body.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(body);
+			}
+		} finally {
+			exchange.close();
+		}
+	}
+
+	/**
+	 * Renders the current metrics of the model in the Prometheus text format. Safe to call from any thread while the
+	 * simulation runs.
+	 * @return The metrics.
+	 */
+	public String scrape() {
+		StringBuilder sb = new StringBuilder(4096);
+		BallSnapshot snap = model.getSnapshot();
+
+		header(sb, "ballworld_balls", "gauge", "Balls in the latest snapshot, by update and paint strategy class.");
+		for (Map.Entry<Class<?>, Map<Class<?>, Integer>> update : snap.countStrategies().entrySet()) {
+			for (Map.Entry<Class<?>, Integer> paint : update.getValue().entrySet()) {
+				sb.append("ballworld_balls{update=\"").append(escape(update.getKey().getName())).append("\",paint=\"")
+						.append(escape(paint.getKey().getName())).append("\"} ").append(paint.getValue()).append('\n');
+			}
+		}
+		header(sb, "ballworld_ticks_total", "counter", "Ticks run by the simulation.");
+		sample(sb, "ballworld_ticks_total", snap.getTick());
+
+		histogram(sb, "ballworld_tick_seconds", "Duration of the ticks.", model.getTickTimes());
+		histogram(sb, "ballworld_frame_seconds", "Duration of painting the frames.", model.getFrameTimes());
+
+		MeteredDispatcher<?> meter = model.getDispatcherMeter();
+		MeteredDispatcher.Sample totals = meter.getTotals();
+		header(sb, "ballworld_balls_spawned_total", "counter", "Balls added to the dispatcher.");
+		sample(sb, "ballworld_balls_spawned_total", totals.getAdds());
+		header(sb, "ballworld_balls_killed_total", "counter", "Balls removed from the dispatcher.");
+		sample(sb, "ballworld_balls_killed_total", totals.getRemoves());
+		header(sb, "ballworld_dispatcher_messages_total", "counter", "Messages delivered to the balls by the dispatcher.");
+		sample(sb, "ballworld_dispatcher_messages_total", totals.getMessages());
+		header(sb, "ballworld_dispatcher_update_all_total", "counter", "updateAll() calls of the dispatcher.");
+		sample(sb, "ballworld_dispatcher_update_all_total", totals.getUpdateAllCalls());
+		header(sb, "ballworld_dispatcher_nested_update_all_total", "counter",
+				"updateAll() calls made by a ball while it handled a message.");
+		sample(sb, "ballworld_dispatcher_nested_update_all_total", totals.getNestedCalls());
+		histogram(sb, "ballworld_dispatcher_update_all_seconds", "Duration of the outermost updateAll() calls.",
+				meter.getLatency());
+		header(sb, "ballworld_dispatcher_update_all_pairs_total", "counter", "updateAllPairs() calls of the dispatcher.");
+		sample(sb, "ballworld_dispatcher_update_all_pairs_total", totals.getPairCalls());
+		header(sb, "ballworld_dispatcher_pairs_total", "counter", "Pairs of balls that a pair command was applied to.");
+		sample(sb, "ballworld_dispatcher_pairs_total", totals.getPairs());
+		histogram(sb, "ballworld_dispatcher_update_all_pairs_seconds", "Duration of the outermost updateAllPairs() calls.",
+				meter.getPairLatency());
+
+		long imageHits = ImageCache.Singleton.getHits();
+		long imageMisses = ImageCache.Singleton.getMisses();
+		long spriteHits = SpriteCache.Singleton.getHits();
+		long spriteMisses = SpriteCache.Singleton.getMisses();
+		header(sb, "ballworld_cache_requests_total", "counter", "Requests to the image and sprite caches, by result.");
+		sb.append("ballworld_cache_requests_total{cache=\"image\",result=\"hit\"} ").append(imageHits).append('\n');
+		sb.append("ballworld_cache_requests_total{cache=\"image\",result=\"miss\"} ").append(imageMisses).append('\n');
+		sb.append("ballworld_cache_requests_total{cache=\"sprite\",result=\"hit\"} ").append(spriteHits).append('\n');
+		sb.append("ballworld_cache_requests_total{cache=\"sprite\",result=\"miss\"} ").append(spriteMisses).append('\n');
+		header(sb, "ballworld_cache_hit_ratio", "gauge", "Fraction of the requests to the caches that hit, since the start.");
+		sb.append("ballworld_cache_hit_ratio{cache=\"image\"} ").append(ratio(imageHits, imageMisses)).append('\n');
+		sb.append("ballworld_cache_hit_ratio{cache=\"sprite\"} ").append(ratio(spriteHits, spriteMisses)).append('\n');
+
+		header(sb, "jvm_gc_collection_seconds", "summary",
+				"Collections of each garbage collector and the time spent in them, which is the pause time of the stop-the-world collectors.");
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			String labels = "{gc=\"" + escape(gc.getName()) + "\"} ";
+			sb.append("jvm_gc_collection_seconds_count").append(labels).append(Math.max(0, gc.getCollectionCount())).append('\n');
+			sb.append("jvm_gc_collection_seconds_sum").append(labels).append(Math.max(0, gc.getCollectionTime()) / 1e3).append('\n');
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Appends the HELP and TYPE lines of a metric.
+	 * @param sb The text to append to.
+	 * @param name The name of the metric.
+	 * @param type The type of the metric.
+	 * @param help The description of the metric.
+	 */
+	private static void header(StringBuilder sb, String name, String type, String help) {
+		sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+		sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+	}
+
+	/**
+	 * Appends a sample without labels.
+	 * @param sb The text to append to.
+	 * @param name The name of the metric.
+	 * @param value The value.
+	 */
+	private static void sample(StringBuilder sb, String name, long value) {
+		sb.append(name).append(' ').append(value).append('\n');
+	}
+
+	/**
+	 * Appends a histogram of durations in seconds, with the cumulative buckets of BUCKETS.
+	 * @param sb The text to append to.
+	 * @param name The name of the metric.
+	 * @param help The description of the metric.
+	 * @param histogram The durations, in nanoseconds.
+	 */
+	private static void histogram(StringBuilder sb, String name, String help, LatencyHistogram histogram) {
+		header(sb, name, "histogram", help);
+		for (double bound : BUCKETS) {
+			sb.append(name).append("_bucket{le=\"").append(BigDecimal.valueOf(bound).toPlainString()).append("\"} ")
+					.append(histogram.getCountAtOrBelow((long) (bound * 1e9))).append('\n');
+		}
+		sb.append(name).append("_bucket{le=\"+Inf\"} ").append(histogram.getCount()).append('\n');
+		sb.append(name).append("_sum ").append(histogram.getSum() / 1e9).append('\n');
+		sb.append(name).append("_count ").append(histogram.getCount()).append('\n');
+	}
+
+	/**
+	 * @param hits The number of hits.
+	 * @param misses The number of misses.
+	 * @return The fraction of hits, or NaN if there was no request.
+	 */
+	private static String ratio(long hits, long misses) {
+		return 0 == hits + misses ? "NaN" : Double.toString((double) hits / (hits + misses));
+	}
+
+	/**
+	 * @param value A label value.
+	 * @return The value with its backslashes, double quotes and line feeds escaped.
+	 */
+	private static String escape(String value) {
+		return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+	}
+}
@@ -4,36 +4,41 @@ import java.awt.Color;
 import java.awt.Component;
 import java.awt.Graphics;
 import java.awt.Point;
+import java.util.ArrayList;
+import java.util.List;
 
 import provided.util.dispatcher.IDispatcher;
 import provided.util.dispatcher.IObserver;
+import util.jfr.InteractEvent;
 
 /**
  * The Ball class provides methods and fields that are common to all balls.
+ * The location, velocity, radius and color of a ball are held in a slot of a {@link BallStore}; the ball itself is a handle
+ * over that slot plus the ball's strategies.
  * @author Peter Dulworth (psd2)
  */
 public class Ball implements IObserver<IBallCmd> {
 
 	/**
-	 * The location of the center of the ball.
+	 * The store that holds the location, velocity, radius and color of the ball.
 	 */
-	private Point p;
+	BallStore store = new BallStore(1);
 
 	/**
-	 * The radius of the ball.
+	 * The slot of the ball in its store.
 	 */
-	private int r;
-
+	int slot = store.allocate(this);
+	
 	/**
-	 * The velocity vector of the ball.
+	 * The interaction criteria offered by the ball's strategies during the current tick of its store.
 	 */
-	private Point v;
+	private List<IInteractCriterion> criteria = new ArrayList<IInteractCriterion>();
 
 	/**
-	 * The color of the ball.
+	 * The tick of the store, see {@link BallStore#getEpoch()}, during which the criteria were offered.
 	 */
-	private Color c;
-	
+	private int criteriaEpoch = -1;
+
 	/**
 	 * The ball most recently interacted with. 
 	 */
@@ -43,7 +48,7 @@ public class Ball implements IObserver<IBallCmd> {
 	 * The component in which the ball lives.
 	 */
 	private Component component;
-	
+
 	/**
 	 * The update strategy of the ball.
 	 */
@@ -87,10 +92,10 @@ public class Ball implements IObserver<IBallCmd> {
 	 */
 	public Ball(Point initialLocation, int radius, Point velocity, Color color, Component component,
 			IUpdateStrategy<IBallCmd> updateStrategy, IPaintStrategy paintStrategy) {
-		this.p = initialLocation;
-		this.r = radius;
-		this.v = velocity;
-		this.c = color;
+		this.setLocation(initialLocation);
+		this.setRadius(radius);
+		this.setVelocity(velocity);
+		this.setColor(color);
 		this.component = component;
 		
 		this.setUpdateStrategy(updateStrategy);
@@ -116,40 +121,22 @@ public class Ball implements IObserver<IBallCmd> {
 	}
 
 	/**
-	 * The following method updates the balls {@link #p location} based on its {@link #v velocity vector}.
+	 * The following method updates the balls {@link #getLocation() location} based on its {@link #getVelocity() velocity vector}.
 	 */
 	public void move() {
-		this.p.translate(v.x, v.y);
+		store.move(slot);
 	}
 
 	/**
-	 * The following method detecting if the edge of the ball is beyond the top/bottom left/right edge of the {@link #component canvas}.
-	 * It updates the {@link #p location} of the ball based on which wall it went past.
+	 * The following method detecting if the edge of the ball is beyond the top/bottom left/right edge of the world, see {@link #getWorldWidth()}.
+	 * It updates the {@link #getLocation() location} of the ball based on which wall it went past.
 	 */
 	public void bounce() {
-		if (p.x + r > component.getWidth()) { // right
-			p.x = p.x - 2 * (p.x - component.getWidth() + r);
-			v.x = (int) Math.round(-1.0 * v.x);
-		}
-
-		if (p.x - r < 0) { // left
-			p.x = p.x + 2 * (-p.x + r);
-			v.x = (int) Math.round(-1.0 * v.x);
-		}
-
-		if (p.y + r > component.getHeight()) { // bottom
-			p.y = p.y - 2 * (p.y - component.getHeight() + r);
-			v.y = (int) Math.round(-1.0 * v.y);
-		}
-
-		if (p.y - r < 0) { // top
-			p.y = p.y + 2 * (-p.y + r);
-			v.y = (int) Math.round(-1.0 * v.y);
-		}
+		store.bounce(slot, getWorldWidth(), getWorldHeight());
 	}
 
 	/**
-	 * The following method paints the ball on the {@link #component canvas} based on its {@link #c color} field, {@link #p location} and its {@link #r radius}. 
+	 * The following method paints the ball on the {@link #component canvas} based on its {@link #getColor() color}, {@link #getLocation() location} and its {@link #getRadius() radius}. 
 	 * 
 	 * @param g This is the {@link java.awt.Graphics Graphics} object that the ball should paint itself on.
 	 */
@@ -164,15 +151,52 @@ public class Ball implements IObserver<IBallCmd> {
 	 * @param interactFirst A boolean denoting whether this is the first in a series (usually two) of interactions.
 	 */
 	public void interactWith(Ball target, IDispatcher<IBallCmd> disp, Boolean interactFirst) {
-		this.interactStrategy.interact(this, target, disp, interactFirst);
+		IInteractStrategy strategy = this.interactStrategy;
+		InteractEvent event = InteractEvent.start();
+		strategy.interact(this, target, disp, interactFirst);
+		event.end(strategy.getClass(), updateStrategy.getClass(), interactFirst);
+	}
+
+	/**
+	 * Offers an interaction criterion for the current tick. The model tests the criterion against the other balls
+	 * once all the balls have updated their state. Criteria strategies call this from their updateState().
+	 * @param criterion The criterion to offer.
+	 */
+	public void offerCriterion(IInteractCriterion criterion) {
+		if (criteriaEpoch != store.getEpoch()) {
+			criteria.clear();
+			criteriaEpoch = store.getEpoch();
+		}
+		if (null == getCriterion(criterion.getClass())) {
+			store.offer(this, criterion);
+		}
+		criteria.add(criterion);
 	}
 
 	/**
-	 * Gets the current velocity.
+	 * Returns the criterion of the given class that the ball offered during the current tick.
+	 * @param key The class of the criterion.
+	 * @return The offered criterion or null if the ball did not offer a criterion of that class.
+	 */
+	IInteractCriterion getCriterion(Class<?> key) {
+		if (criteriaEpoch != store.getEpoch()) {
+			return null;
+		}
+		for (IInteractCriterion c : criteria) {
+			if (c.getClass() == key) {
+				return c;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Gets the current velocity. The returned Point is a view of the ball's velocity in its store: mutating it 
+	 * changes the velocity of the ball, but it should not be held on to across ticks.
 	 * @return current velocity.
 	 */
 	public Point getVelocity() {
-		return this.v;
+		return store.velocity(slot);
 	}
 
 	/**
@@ -180,49 +204,84 @@ public class Ball implements IObserver<IBallCmd> {
 	 * @param v New velocity to set.
 	 */
 	public void setVelocity(Point v) {
-		this.v = v;
+		store.setVelocity(slot, v.x, v.y);
 	}
 
 	/**
-	 * @return the p
+	 * The returned Point is a view of the ball's location in its store: mutating it moves the ball,
+	 * but it should not be held on to across ticks.
+	 * @return the location
 	 */
 	public Point getLocation() {
-		return p;
+		return store.location(slot);
 	}
 
 	/**
-	 * @param p the p to set
+	 * Reads the x-coordinate of the ball without handing out a view. Unlike getLocation() this is safe to call from 
+	 * several threads at once, as long as no thread mutates the ball.
+	 * @return the x-coordinate of the center of the ball.
+	 */
+	public int getX() {
+		return store.locX(slot);
+	}
+
+	/**
+	 * Reads the y-coordinate of the ball, see {@link #getX()}.
+	 * @return the y-coordinate of the center of the ball.
+	 */
+	public int getY() {
+		return store.locY(slot);
+	}
+
+	/**
+	 * Reads the x-component of the velocity of the ball, see {@link #getX()}.
+	 * @return the x-component of the velocity.
+	 */
+	public int getVx() {
+		return store.velX(slot);
+	}
+
+	/**
+	 * Reads the y-component of the velocity of the ball, see {@link #getX()}.
+	 * @return the y-component of the velocity.
+	 */
+	public int getVy() {
+		return store.velY(slot);
+	}
+
+	/**
+	 * @param p the location to set. The ball copies the coordinates and does not keep a reference to p.
 	 */
 	public void setLocation(Point p) {
-		this.p = p;
+		store.setLocation(slot, p.x, p.y);
 	}
 
 	/**
 	 * @return r, the radius.
 	 */
 	public int getRadius() {
-		return r;
+		return store.r[slot];
 	}
 
 	/**
 	 * @param r The radius to set.
 	 */
 	public void setRadius(int r) {
-		this.r = r;
+		store.r[slot] = r;
 	}
 
 	/**
-	 * @return the c
+	 * @return the color
 	 */
 	public Color getColor() {
-		return c;
+		return store.color(slot);
 	}
 
 	/**
-	 * @param c the c to set
+	 * @param c the color to set
 	 */
 	public void setColor(Color c) {
-		this.c = c;
+		store.setColor(slot, c);
 	}
 
 	/**
@@ -239,6 +298,57 @@ public class Ball implements IObserver<IBallCmd> {
 		this.component = component;
 	}
 
+	/**
+	 * The width of the world in which the ball lives. This is the width set on the ball's store by its model, 
+	 * or the width of the ball's {@link #component} for a ball that does not live in a model. 
+	 * @return the width of the world.
+	 */
+	public int getWorldWidth() {
+		if (store.hasBounds() || null == component) {
+			return store.getWidth();
+		}
+		return component.getWidth();
+	}
+
+	/**
+	 * The height of the world in which the ball lives, see {@link #getWorldWidth()}.
+	 * @return the height of the world.
+	 */
+	public int getWorldHeight() {
+		if (store.hasBounds() || null == component) {
+			return store.getHeight();
+		}
+		return component.getHeight();
+	}
+
+	/**
+	 * @return the spatial index of the world in which the ball lives.
+	 */
+	public SpatialGrid getGrid() {
+		return store.getGrid();
+	}
+
+	/**
+	 * @return the continuous collision engine of the world in which the ball lives.
+	 */
+	public CollisionEngine getCollisionEngine() {
+		return store.getCollisionEngine();
+	}
+
+	/**
+	 * @return the Barnes-Hut gravity tree of the world in which the ball lives.
+	 */
+	public GravityTree getGravityTree() {
+		return store.getGravityTree();
+	}
+
+	/**
+	 * @return the store that holds the state of the ball.
+	 */
+	public BallStore getStore() {
+		return store;
+	}
+
 	/**
 	 * @return the strategy
 	 */
@@ -2,22 +2,37 @@ package model;
 
 import java.awt.Color;
 import java.awt.Component;
-import java.awt.Dimension;
 import java.awt.Graphics;
 import java.awt.Point;
-import java.awt.Rectangle;
-
-import javax.swing.Timer;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiPredicate;
+import java.util.stream.IntStream;
 
 import model.strategy.MultiStrategy;
 import model.strategy.SwitcherStrategy;
 import provided.util.dispatcher.IDispatcher;
-import provided.util.dispatcher.impl.SequentialDispatcher;
+import provided.util.dispatcher.IObserver;
+import provided.util.dispatcher.IPairCmd;
+import provided.util.dispatcher.impl.IndexedDispatcher;
 import provided.util.loader.impl.ObjectLoader;
-import util.Randomizer;
+import provided.util.valueGenerator.impl.RandomEngine;
+import util.ConcurrentLatencyHistogram;
+import util.LatencyHistogram;
+import util.MeteredDispatcher;
+import util.jfr.TickPhaseEvent;
 
 /**
  * The class that manages the creation, deletion and animation of the balls.
+ * The simulation runs on its own thread with a fixed timestep; methods called from other threads are queued onto it.
  * @author Peter Dulworth (psd2), Andrew Hadad (aah6)
  */
 public class BallModel {
@@ -27,20 +42,104 @@ public class BallModel {
 	 */
 	private IM2VAdapter m2vAdapter = IM2VAdapter.NULL_OBJECT;
 
+	/**
+	 * The structure-of-arrays store that holds the state of every ball in the model.
+	 */
+	private BallStore store = new BallStore();
+
 	/**
 	 * The dispatcher that keeps track of the balls and sends them commands.
+	 * Balls spawned or removed during a tick are deferred by the dispatcher and applied when the tick's updateAll() returns.
+	 * Every ball added to the dispatcher is adopted by the store, and removed balls are killed in the store so that
+	 * they are skipped by the rest of the tick and their slots are reclaimed at the end of it.
+	 * The dispatcher is metered, see getDispatcherMeter(); inside it the balls are wrapped by the meter.
 	 */
-	private IDispatcher<IBallCmd> myDispatcher = new SequentialDispatcher<IBallCmd>();
+	private MeteredDispatcher<IBallCmd> myDispatcher = new MeteredDispatcher<IBallCmd>(new IndexedDispatcher<IBallCmd>() {
+		@Override
+		public boolean addObserver(IObserver<IBallCmd> obs) {
+			if (MeteredDispatcher.unwrap(obs) instanceof Ball) {
+				store.adopt((Ball) MeteredDispatcher.unwrap(obs));
+			}
+			return super.addObserver(obs);
+		}
+
+		@Override
+		public IObserver<IBallCmd> removeObserver(IObserver<IBallCmd> obs) {
+			IObserver<IBallCmd> foundObs = MeteredDispatcher.unwrap(super.removeObserver(obs));
+			if (foundObs instanceof Ball) {
+				store.kill((Ball) foundObs);
+			}
+			return foundObs;
+		}
+
+		@Override
+		public Set<IObserver<IBallCmd>> removeAllObservers() {
+			store.killAll();
+			return super.removeAllObservers();
+		}
+	});
 
 	/**
-	 * The delay between events for the timer.
+	 * The traffic of the dispatcher during the latest tick.
+	 */
+	private volatile MeteredDispatcher.Sample dispatcherSample = new MeteredDispatcher.Sample();
+
+	/**
+	 * The durations of the ticks.
+	 */
+	private final ConcurrentLatencyHistogram tickTimes = new ConcurrentLatencyHistogram();
+
+	/**
+	 * The durations of painting the frames.
+	 */
+	private final ConcurrentLatencyHistogram frameTimes = new ConcurrentLatencyHistogram();
+
+	/**
+	 * The fixed simulation timestep in milliseconds.
 	 */
 	private int timeSlice = 50; // update every 50 milliseconds
 
 	/**
-	 * The timer. Used to update the GUI every "timeSlice" milliseconds.
+	 * The largest number of ticks that the simulation runs back to back to catch up after falling behind.
+	 * Beyond this the lost time is dropped so that an overloaded simulation slows down instead of never catching up.
+	 */
+	private static final int MAX_CATCH_UP_TICKS = 5;
+
+	/**
+	 * The thread that runs the simulation, or null if the model has not been started.
+	 */
+	private volatile Thread simThread;
+
+	/**
+	 * Control commands from other threads, e.g. the GUI thread, that are run on the simulation thread at the start of the next tick.
+	 */
+	private Queue<Runnable> commands = new ConcurrentLinkedQueue<Runnable>();
+
+	/**
+	 * Whether ticks run in parallel mode, see setParallel().
+	 */
+	private volatile boolean parallel = false;
+
+	/**
+	 * The renderer that paints the snapshots on all cores, or null to paint them on the calling thread, see setTiledRendering().
+	 */
+	private volatile TileRenderer tileRenderer = null;
+
+	/**
+	 * The number of ticks run so far.
+	 */
+	private long ticks = 0;
+
+	/**
+	 * The number of balls made since the seed was last set, which numbers the random stream of each new ball. Only
+	 * touched on the simulation thread.
 	 */
-	private Timer timer = new Timer(timeSlice, (e) -> m2vAdapter.update());
+	private long spawned = 0;
+
+	/**
+	 * The snapshot published by the latest tick.
+	 */
+	private volatile BallSnapshot snapshot = BallSnapshot.EMPTY;
 
 	/**
 	 * Single instance of the switcher strategy shared by all switcher balls.
@@ -65,6 +164,16 @@ public class BallModel {
 	 * or call _errorStrategyFac.make() to create an instance of a beeping error strategy.
 	 */
 	private IPaintStrategyFac _errorPaintStrategyFac = IPaintStrategyFac.NULL;
+
+	/**
+	 * The factories of the indexed update strategies made so far, by short name.
+	 */
+	private final Map<String, IUpdateStrategyFac<IBallCmd>> updateStrategyFacs = new ConcurrentHashMap<String, IUpdateStrategyFac<IBallCmd>>();
+
+	/**
+	 * The factories of the indexed paint strategies made so far, by short name.
+	 */
+	private final Map<String, IPaintStrategyFac> paintStrategyFacs = new ConcurrentHashMap<String, IPaintStrategyFac>();
 	
 	/**
 	 * Object loader that loads IPaintStrategy's.
@@ -79,6 +188,36 @@ public class BallModel {
 		this.m2vAdapter = m2vAdapter;
 	}
 
+	/**
+	 * Headless BallModel constructor. Creates a BallModel whose balls live in a world of the given size without any
+	 * view or AWT component, e.g. to run large simulations on a server or to benchmark ticks without Swing.
+	 * The model can still be painted onto an offscreen Graphics, such as that of a BufferedImage, with paint().
+	 * @param width The width of the world.
+	 * @param height The height of the world.
+	 */
+	public BallModel(int width, int height) {
+		this(new IM2VAdapter() {
+			@Override
+			public void update() {
+			}
+
+			@Override
+			public Integer getPnlHeight() {
+				return height;
+			}
+
+			@Override
+			public Integer getPnlWidth() {
+				return width;
+			}
+
+			@Override
+			public Component getComponent() {
+				return null;
+			}
+		});
+	}
+
 	/**
 	 * The following method returns an instance of an IUpdateStrategy, given a fully qualified class name (package.classname) of
 	 * a class that implements IUpdateStrategy.
@@ -112,23 +251,81 @@ public class BallModel {
 	 * @param paintStrategy An IPaintStrategy for the new ball to use.
 	 */
 	public void makeBall(IUpdateStrategy<IBallCmd> updateStrategy, IPaintStrategy paintStrategy) {
+		commands.add(() -> {
+			// Generate random initial conditions for the ball from its own stream, so that they depend only on the seed and the ball's ordinal.
+			SplittableRandom random = RandomEngine.Singleton.forKey(spawned++);
+			int r = RandomEngine.nextInt(random, 15, 30);
+			Point p = new Point(RandomEngine.nextInt(random, 0, m2vAdapter.getPnlWidth() - (2 * r)),
+					RandomEngine.nextInt(random, 0, m2vAdapter.getPnlHeight() - (2 * r)));
+			p.x += r; // move p to the right by r
+			p.y += r; // move p down by r
+			Point v = new Point(RandomEngine.nextInt(random, -7, 7), RandomEngine.nextInt(random, -7, 7));
+			if (v.x == 0 || v.y == 0) { // Ensure the ball has a non-zero velocity.
+				v.x = 1;
+				v.y = 1;
+			}
+			Color c = new Color(RandomEngine.nextRGB(random));
+			Component pnlCenter = m2vAdapter.getComponent();
 
-		// Generate random initial conditions for the ball.
-		int r = Randomizer.Singleton.randomInt(15, 30);
-		Point p = Randomizer.Singleton
-				.randomLoc(new Dimension(m2vAdapter.getPnlWidth() - (2 * r), m2vAdapter.getPnlHeight() - (2 * r)));
-		p.x += r; // move p to the right by r
-		p.y += r; // move p down by r
-		Point v = Randomizer.Singleton.randomVel(new Rectangle(7, 7));
-		if (v.x == 0 || v.y == 0) { // Ensure the ball has a non-zero velocity.
-			v.x = 1;
-			v.y = 1;
-		}
-		Color c = Randomizer.Singleton.randomColor();
-		Component pnlCenter = m2vAdapter.getComponent();
+			Ball newBall = new Ball(p, r, v, c, pnlCenter, updateStrategy, paintStrategy);
+			myDispatcher.addObserver(newBall); // Add the ball to the dispatcher.
+		});
+	}
 
-		Ball newBall = new Ball(p, r, v, c, pnlCenter, updateStrategy, paintStrategy);
-		myDispatcher.addObserver(newBall); // Add the ball to the dispatcher.
+	/**
+	 * Reseeds the randomness of the simulation, so that a run that makes the same balls in the same order after this
+	 * call is reproduced exactly. The balls made afterwards are numbered again from 0.
+	 * @param seed The new seed.
+	 */
+	public void setSeed(long seed) {
+		commands.add(() -> {
+			RandomEngine.Singleton.setSeed(seed);
+			spawned = 0;
+		});
+	}
+
+	/**
+	 * @return The number of balls as of the latest tick.
+	 */
+	public int getBallCount() {
+		return snapshot.size();
+	}
+
+	/**
+	 * @return The snapshot published by the latest tick. It is never changed, so it may be read from any thread.
+	 */
+	public BallSnapshot getSnapshot() {
+		return snapshot;
+	}
+
+	/**
+	 * @return The durations of the ticks so far, in nanoseconds.
+	 */
+	public LatencyHistogram getTickTimes() {
+		return tickTimes.snapshot();
+	}
+
+	/**
+	 * @return The durations of painting the frames so far, in nanoseconds.
+	 */
+	public LatencyHistogram getFrameTimes() {
+		return frameTimes.snapshot();
+	}
+
+	/**
+	 * @return The meter of the dispatcher of the balls, e.g. for the latency of its updateAll() calls. Its sample() is
+	 * taken by every tick, see getDispatcherSample().
+	 */
+	public MeteredDispatcher<IBallCmd> getDispatcherMeter() {
+		return myDispatcher;
+	}
+
+	/**
+	 * @return The traffic of the dispatcher of the balls during the latest tick, e.g. the nested updateAll() calls of
+	 * balls that broadcast to all the others.
+	 */
+	public MeteredDispatcher.Sample getDispatcherSample() {
+		return dispatcherSample;
 	}
 
 	/**
@@ -136,58 +333,404 @@ public class BallModel {
 	 * @param newStrategy The new strategy to give the switcher.
 	 */
 	public void switchSwitcherStrategy(IUpdateStrategy<IBallCmd> newStrategy) {
-		switcher.setStrategy(newStrategy);
+		commands.add(() -> switcher.setStrategy(newStrategy));
 	}
 
 	/**
 	 * The following method removes all {@link model.Ball ABalls} from the dispatcher.
 	 */
 	public void clearBalls() {
-		myDispatcher.removeAllObservers();
+		commands.add(() -> myDispatcher.removeAllObservers());
 	}
 
 	/**
 	 * This is the method that is called by the view's adapter to the model, i.e. is called by IV2MUpdateAdapter.paint().
-	 * The following method notifies all the balls in the dispatcher (which in turn calls the update method of each ball) and 
-	 * passes each update method the correct {@link java.awt.Graphics Graphics} object to paint on.
+	 * Paints the latest snapshot published by the simulation onto the given {@link java.awt.Graphics Graphics} object.
 	 * @param g The Graphics object from the view's paintComponent() call.
 	 */
-	public void update(Graphics g) {
-		myDispatcher.updateAll((context, disp) -> {
-			context.move();
-			context.bounce();
+	public void paint(Graphics g) {
+		paint(g, snapshot, 0.0);
+	}
+
+	/**
+	 * Paints the latest snapshot with the balls moved ahead along their velocities to the given time, which lets the
+	 * view render frames faster than the simulation ticks. The balls are moved at most one tick ahead.
+	 * @param g The Graphics object to paint on.
+	 * @param nanoTime The time of the frame, as given by System.nanoTime().
+	 */
+	public void paint(Graphics g, long nanoTime) {
+		BallSnapshot snap = snapshot;
+		double ahead = (double) (nanoTime - snap.getNanoTime()) / TimeUnit.MILLISECONDS.toNanos(timeSlice);
+		paint(g, snap, Math.max(0.0, Math.min(1.0, ahead)));
+	}
+
+	/**
+	 * Paints the given snapshot, either directly or by rendering it into a frame with the tile renderer and drawing the frame.
+	 * @param g The Graphics object to paint on.
+	 * @param snap The snapshot to paint.
+	 * @param ahead The fraction of a tick to move the balls ahead by.
+	 */
+	private void paint(Graphics g, BallSnapshot snap, double ahead) {
+		long start = System.nanoTime();
+		TickPhaseEvent phase = TickPhaseEvent.start();
+		TileRenderer renderer = tileRenderer;
+		Component component = m2vAdapter.getComponent();
+		if (null == renderer) {
+			snap.paint(g, component, ahead);
+		} else {
+			Color background = null == component ? Color.BLACK : component.getBackground();
+			g.drawImage(renderer.render(snap, m2vAdapter.getPnlWidth(), m2vAdapter.getPnlHeight(), background, component, ahead), 0, 0, null);
+		}
+		phase.end(snap.getTick(), TickPhaseEvent.PAINT, snap.size());
+		frameTimes.record(System.nanoTime() - start);
+	}
+
+	/**
+	 * Advances the simulation by one timestep: runs the pending control commands, moves every ball, lets every ball
+	 * update its state, makes the pairs of balls that meet an offered interaction criterion interact and finally publishes a new snapshot for the view to paint.
+	 * Called by the simulation thread; must not be called concurrently.
+	 */
+	public void tick() {
+		long start = System.nanoTime();
+		long tick = ticks + 1;
+		TickPhaseEvent phase = TickPhaseEvent.start();
+		Runnable cmd;
+		while ((cmd = commands.poll()) != null) {
+			cmd.run();
+		}
+		phase.end(tick, TickPhaseEvent.COMMANDS, store.size);
+
+		// Move every ball in bulk over the store's arrays, then index them by location so that distance-based
+		// strategies only need to visit their neighbors.
+		store.setBounds(m2vAdapter.getPnlWidth(), m2vAdapter.getPnlHeight());
+		phase = TickPhaseEvent.start();
+		store.getCollisionEngine().step(myDispatcher);
+		phase.end(tick, TickPhaseEvent.COLLISIONS, store.size);
+		phase = TickPhaseEvent.start();
+		store.advance(parallel);
+		phase.end(tick, TickPhaseEvent.MOVE, store.size);
+		phase = TickPhaseEvent.start();
+		store.getGrid().rebuild();
+		phase.end(tick, TickPhaseEvent.INDEX, store.size);
 
+		phase = TickPhaseEvent.start();
+		myDispatcher.updateAll((context, disp) -> {
 			// Variant behavior:
-			context.paint(g);
 			context.updateState(disp);
 		});
+		phase.end(tick, TickPhaseEvent.UPDATE_STATE, store.size);
+		phase = TickPhaseEvent.start();
+		store.getGravityTree().step(parallel);
+		phase.end(tick, TickPhaseEvent.GRAVITY, store.size);
+		phase = TickPhaseEvent.start();
+		interactPairs();
+		phase.end(tick, TickPhaseEvent.INTERACT, store.size);
+
+		// Free the slots of the balls that were removed during the tick.
+		phase = TickPhaseEvent.start();
+		store.reclaim();
+		phase.end(tick, TickPhaseEvent.RECLAIM, store.size);
+
+		phase = TickPhaseEvent.start();
+		snapshot = BallSnapshot.capture(store, myDispatcher, ++ticks);
+		phase.end(tick, TickPhaseEvent.SNAPSHOT, store.size);
+		dispatcherSample = myDispatcher.sample();
+		tickTimes.record(System.nanoTime() - start);
+	}
+
+	/**
+	 * Tests every interaction criterion offered during the tick against each unordered pair of balls once, 
+	 * through the spatial grid for local criteria and from the balls that offered them for the others, and makes the 
+	 * pairs that pass interact. A pair is tested if at least one of its balls offered the criterion.
+	 */
+	private void interactPairs() {
+		for (IInteractCriterion criterion : store.getOfferedCriteria()) {
+			Class<?> key = criterion.getClass();
+			BiPredicate<IObserver<IBallCmd>, IObserver<IBallCmd>> filter = (first, second) -> 
+				null != ((Ball) first).getCriterion(key) || null != ((Ball) second).getCriterion(key);
+			if (criterion instanceof IPairEffect) {
+				interactEffects((IPairEffect) criterion, key, filter);
+				continue;
+			}
+			IPairCmd<IBallCmd> cmd = (first, second, disp) -> {
+				Ball context = contextOf(first, second, key);
+				Ball other = context == first ? (Ball) second : (Ball) first;
+				IInteractCriterion c = context.getCriterion(key);
+				if (c.test(context, other)) {
+					c.interact(context, other, disp);
+				}
+			};
+			if (criterion.isLocal()) {
+				store.getGrid().updatePairs(myDispatcher, filter, cmd);
+			} else {
+				updateOfferedPairs(key, filter, cmd);
+			}
+		}
+		store.expireCriteria();
+	}
+
+	/**
+	 * Applies the command to each unordered pair of balls of which at least one offered a criterion of the given class, 
+	 * once. When K of the N balls offered it, the offering balls are paired with all the others, i.e. about K*N pairs, 
+	 * and a pair of two offering balls is only visited from the one in the lower slot. Only when most of the balls 
+	 * offered it are the N*N/2 pairs of the dispatcher filtered instead. Balls removed by the command are skipped for 
+	 * the rest of the call and balls added by it are not visited, as in IndexedDispatcher.updateAllPairs().
+	 * @param key The class of the criterion.
+	 * @param filter The test that a pair must pass, i.e. one of its balls offered the criterion.
+	 * @param cmd The command to apply to each pair.
+	 */
+	private void updateOfferedPairs(Class<?> key, BiPredicate<IObserver<IBallCmd>, IObserver<IBallCmd>> filter, IPairCmd<IBallCmd> cmd) {
+		List<Ball> offerers = store.getOfferers(key);
+		if (4 * offerers.size() > 3 * store.getCount()) {
+			myDispatcher.updateAllPairs(filter, cmd);
+			return;
+		}
+		Ball[] all = new Ball[store.getCount()];
+		int n = 0;
+		for (int s = 0; s < store.size; s++) {
+			if (store.isLive(s)) {
+				all[n++] = store.owners[s];
+			}
+		}
+		int pairs = 0;
+		for (Ball first : offerers) {
+			for (int i = 0; i < n && store.isLive(first.slot); i++) {
+				Ball second = all[i];
+				if (second == first || !store.isLive(second.slot)
+						|| (second.slot < first.slot && null != second.getCriterion(key))) {
+					continue;
+				}
+				pairs++;
+				cmd.apply(first, second, myDispatcher);
+			}
+		}
+		myDispatcher.countDirect(0, pairs);
+	}
+
+	/**
+	 * Returns the ball of the pair that offered a criterion of the given class, preferring the first one.
+	 * @param first One ball of the pair.
+	 * @param second The other ball of the pair.
+	 * @param key The class of the criterion.
+	 * @return The ball that is the context of the interaction.
+	 */
+	private Ball contextOf(IObserver<IBallCmd> first, IObserver<IBallCmd> second, Class<?> key) {
+		return null != ((Ball) first).getCriterion(key) ? (Ball) first : (Ball) second;
+	}
+
+	/**
+	 * Runs a pairwise effect. In sequential mode the changes of each pair are applied and its interaction is run as soon 
+	 * as it is computed, so every pair sees the results of the pairs before it. In parallel mode it runs in three phases: 
+	 * first the effect of every pair is computed from the current state of the balls without mutating any of them, over 
+	 * bands of grid rows in parallel for a local effect; then all the changes are applied in pair order, scaled down for 
+	 * balls with several contacts; finally the interactions of the pairs are run sequentially in the same order, 
+	 * skipping balls that were removed by an earlier interaction. The order of the pairs does not depend on the number 
+	 * of threads, so the result is deterministic.
+	 * @param effect The offered effect.
+	 * @param key The class of the effect.
+	 * @param filter The test that a pair must pass, i.e. one of its balls offered the effect.
+	 */
+	private void interactEffects(IPairEffect effect, Class<?> key, BiPredicate<IObserver<IBallCmd>, IObserver<IBallCmd>> filter) {
+		store.sync();
+		SpatialGrid grid = store.getGrid();
+		if (!parallel) {
+			PairDelta delta = new PairDelta(false);
+			IPairCmd<IBallCmd> cmd = (first, second, disp) -> {
+				Ball context = contextOf(first, second, key);
+				Ball other = context == first ? (Ball) second : (Ball) first;
+				IPairEffect c = (IPairEffect) context.getCriterion(key);
+				delta.begin(context, other);
+				if (c.effect(context, other, delta)) {
+					delta.applyCurrent();
+					c.interact(context, other, disp);
+				}
+			};
+			if (effect.isLocal()) {
+				grid.updatePairs(myDispatcher, filter, cmd);
+			} else {
+				updateOfferedPairs(key, filter, cmd);
+			}
+			return;
+		}
+		int nBands = effect.isLocal() ? Math.max(1, Math.min(grid.getRows(), 4 * ForkJoinPool.getCommonPoolParallelism())) : 1;
+		PairDelta[] deltas = new PairDelta[nBands];
+		IntStream bands = IntStream.range(0, nBands);
+		(nBands > 1 ? bands.parallel() : bands).forEach((k) -> {
+			PairDelta delta = deltas[k] = new PairDelta();
+			IPairCmd<IBallCmd> cmd = (first, second, disp) -> {
+				Ball context = contextOf(first, second, key);
+				Ball other = context == first ? (Ball) second : (Ball) first;
+				delta.begin(context, other);
+				if (((IPairEffect) context.getCriterion(key)).effect(context, other, delta)) {
+					delta.commit();
+				}
+			};
+			if (!effect.isLocal()) {
+				updateOfferedPairs(key, filter, cmd);
+			} else {
+				int rows = grid.getRows();
+				grid.updatePairs(k * rows / nBands, (k + 1) * rows / nBands, myDispatcher, filter, cmd);
+			}
+		});
+
+		int[] contacts = new int[store.size];
+		for (PairDelta delta : deltas) {
+			delta.countContacts(store, contacts);
+		}
+		for (PairDelta delta : deltas) {
+			delta.apply(store, contacts);
+		}
+		for (PairDelta delta : deltas) {
+			for (int i = 0; i < delta.size(); i++) {
+				Ball context = delta.getContext(i);
+				Ball other = delta.getOther(i);
+				if (context.store == store && store.isLive(context.slot) && other.store == store && store.isLive(other.slot)) {
+					context.getCriterion(key).interact(context, other, myDispatcher);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Turns the parallel tick mode on or off. In parallel mode moving the balls and computing pairwise effects such as 
+	 * collisions, see {@link IPairEffect}, use all cores. Both read the state of the previous phase and write to separate 
+	 * buffers that are merged in a fixed order, so a parallel run gives the same result whatever the number of threads. 
+	 * Since all the effects of a tick then see the same state, a ball's change of velocity is shared between its 
+	 * contacts, which makes collisions in dense clusters differ from sequential mode, where each collision is applied 
+	 * as it comes. The strategies' updateState() and the interactions always run sequentially.
+	 * @param parallel True to run ticks in parallel mode.
+	 */
+	public void setParallel(boolean parallel) {
+		this.parallel = parallel;
 	}
 
 	/**
-	 * The following method starts the model by starting the timer. 
+	 * Sets the opening angle of the Barnes-Hut tree used by the N-body gravity strategy, which trades the accuracy 
+	 * of the attraction between distant balls for speed. See {@link GravityTree}.
+	 * @param theta The opening angle, 0 for the exact O(N^2) sum.
+	 */
+	public void setOpeningAngle(double theta) {
+		store.getGravityTree().setTheta(theta);
+	}
+
+	/**
+	 * Sets the quality knob of the level-of-detail policy, which simplifies small balls and skips hidden ones to keep
+	 * the frame time bounded as the number of balls grows, see LevelOfDetail.
+	 * @param quality The quality, from 0 for the fastest rendering to 1 for the most detailed.
+	 */
+	public void setRenderQuality(double quality) {
+		LevelOfDetail.Singleton.setQuality(quality);
+	}
+
+	/**
+	 * Turns tiled rendering on or off. When it is on, every frame is rendered into an image by a TileRenderer, which
+	 * paints the tiles of the image on all cores, and the image is then drawn onto the view in one blit. This pays off
+	 * for scenes with many thousands of balls; for small scenes the extra blit costs more than it saves.
+	 * @param tiled True to render the frames in tiles on all cores.
+	 */
+	public void setTiledRendering(boolean tiled) {
+		tileRenderer = tiled ? new TileRenderer() : null;
+	}
+
+	/**
+	 * The following method starts the model by starting the simulation thread, which runs a tick every timeSlice
+	 * milliseconds and asks the view to repaint after each one.
 	 */
 	public void start() {
-		timer.start();
+		if (simThread != null) {
+			return;
+		}
+		simThread = new Thread(this::runSimulation, "BallModel simulation");
+		simThread.setDaemon(true);
+		simThread.start();
+	}
+
+	/**
+	 * Stops the simulation thread.
+	 */
+	public void stop() {
+		if (simThread != null) {
+			simThread.interrupt();
+			simThread = null;
+		}
+	}
+
+	/**
+	 * The body of the simulation thread. Runs ticks on a fixed timestep, independent of how fast the view repaints.
+	 * A tick that throws would most likely throw again on every later tick, so the failure is reported once and the
+	 * simulation stops; start() resumes it.
+	 */
+	private void runSimulation() {
+		long dt = TimeUnit.MILLISECONDS.toNanos(timeSlice);
+		long next = System.nanoTime();
+		while (!Thread.currentThread().isInterrupted()) {
+			int n = 0;
+			while (System.nanoTime() - next >= 0 && n < MAX_CATCH_UP_TICKS) {
+				try {
+					tick();
+				} catch (RuntimeException e) {
+					System.err.println("BallModel: tick " + (ticks + 1) + " failed, simulation stopped\n" + e);
+					if (simThread == Thread.currentThread()) {
+						simThread = null;
+					}
+					return;
+				}
+				next += dt;
+				n++;
+			}
+			if (n == MAX_CATCH_UP_TICKS) {
+				next = System.nanoTime() + dt; // drop the time that could not be caught up
+			}
+			if (n > 0) {
+				m2vAdapter.update();
+			}
+			LockSupport.parkNanos(next - System.nanoTime());
+		}
 	}
 
 	/**
 	 * Returns an IUpdateStrategyFac that can instantiate the strategy specified by
-	 * className. Returns a factory for a beeping error strategy if className is null. 
-	 * The toString() of the returned factory is the className.
+	 * className. Returns a factory for a beeping error strategy if className is null
+	 * or names no strategy. The toString() of the returned factory is the className.
+	 * If the strategies are indexed by the StrategyRegistry, the factory comes from a map
+	 * without loading the class; otherwise the class is loaded once to check the name.
 	 * 
 	 * @param className Shortened name of desired strategy.
 	 * @return A factory to make that strategy.
 	 */
 	public IUpdateStrategyFac<IBallCmd> makeUpdateStrategyFac(final String className) {
-		if (null == loadUpdateStrategy(fixName("model.strategy", className, "Strategy")))
+		if (null == className) {
 			return _errorStrategyFac;
+		}
+		StrategyRegistry registry = StrategyRegistry.Singleton;
+		if (registry.isIndexed() && className.indexOf('.') < 0) {
+			String fullName = registry.findUpdateStrategy(className);
+			if (null == fullName) {
+				System.err.println("BallModel: no update strategy named " + className);
+				return _errorStrategyFac;
+			}
+			return updateStrategyFacs.computeIfAbsent(className, (name) -> newUpdateStrategyFac(name, fullName));
+		}
+		String fullName = fixName(StrategyRegistry.UPDATE_PACKAGE, className, "Strategy");
+		if (null == loadUpdateStrategy(fullName))
+			return _errorStrategyFac;
+		return newUpdateStrategyFac(className, fullName);
+	}
+
+	/**
+	 * Makes an IUpdateStrategyFac for a strategy class that is known to exist.
+	 * @param className Shortened name of the strategy, returned by toString().
+	 * @param fullName Fully qualified name of the strategy class.
+	 * @return A factory to make that strategy.
+	 */
+	private IUpdateStrategyFac<IBallCmd> newUpdateStrategyFac(final String className, final String fullName) {
 		return new IUpdateStrategyFac<IBallCmd>() {
 			/**
 			 * Instantiate a strategy corresponding to the given class name.
 			 * @return An IUpdateStrategy instance
 			 */
 			public IUpdateStrategy<IBallCmd> make() {
-				return loadUpdateStrategy(fixName("model.strategy", className, "Strategy"));
+				return loadUpdateStrategy(fullName);
 			}
 
 			/**
@@ -201,24 +744,48 @@ public class BallModel {
 
 	/**
 	 * Returns an IPaintStrategyFac that can instantiate the strategy specified by 
-	 * className. Returns a factory for a beeping error strategy if className is null. 
-	 * The toString() of the returned factory is the className.
+	 * className. Returns the error paint strategy factory if className is null
+	 * or names no strategy. The toString() of the returned factory is the className.
+	 * If the strategies are indexed by the StrategyRegistry, the factory comes from a map
+	 * without loading the class; otherwise the class is loaded once to check the name.
 	 * 
 	 * @param className Shortened name of desired strategy.
 	 * @return A factory to make that strategy.
 	 */
 	public IPaintStrategyFac makePaintStrategyFac(final String className) {
-		if (null == loadPaintStrategy(fixName("model.paint.strategy", className, "PaintStrategy"))) {
-			return null; // TODO: make error paint strategy
-			//			return _errorStrategyFac;
+		if (null == className) {
+			return _errorPaintStrategyFac;
+		}
+		StrategyRegistry registry = StrategyRegistry.Singleton;
+		if (registry.isIndexed() && className.indexOf('.') < 0) {
+			String fullName = registry.findPaintStrategy(className);
+			if (null == fullName) {
+				System.err.println("BallModel: no paint strategy named " + className);
+				return _errorPaintStrategyFac;
+			}
+			return paintStrategyFacs.computeIfAbsent(className, (name) -> newPaintStrategyFac(name, fullName));
 		}
+		String fullName = fixName(StrategyRegistry.PAINT_PACKAGE, className, "PaintStrategy");
+		if (null == loadPaintStrategy(fullName)) {
+			return _errorPaintStrategyFac;
+		}
+		return newPaintStrategyFac(className, fullName);
+	}
+
+	/**
+	 * Makes an IPaintStrategyFac for a strategy class that is known to exist.
+	 * @param className Shortened name of the strategy, returned by toString().
+	 * @param fullName Fully qualified name of the strategy class.
+	 * @return A factory to make that strategy.
+	 */
+	private IPaintStrategyFac newPaintStrategyFac(final String className, final String fullName) {
 		return new IPaintStrategyFac() {
 			/**
 			 * Instantiate a strategy corresponding to the given class name.
-			 * @return An IUpdateStrategy instance
+			 * @return An IPaintStrategy instance
 			 */
 			public IPaintStrategy make() {
-				return loadPaintStrategy(fixName("model.paint.strategy", className, "PaintStrategy"));
+				return loadPaintStrategy(fullName);
 			}
 
 			/**
@@ -230,6 +797,22 @@ public class BallModel {
 		};
 	}
 
+	/**
+	 * @return The short names of all the update strategies indexed by the StrategyRegistry, in alphabetical order,
+	 * each of which can be given to makeUpdateStrategyFac().
+	 */
+	public List<String> getUpdateStrategyNames() {
+		return StrategyRegistry.Singleton.getUpdateStrategyNames();
+	}
+
+	/**
+	 * @return The short names of all the paint strategies indexed by the StrategyRegistry, in alphabetical order,
+	 * each of which can be given to makePaintStrategyFac().
+	 */
+	public List<String> getPaintStrategyNames() {
+		return StrategyRegistry.Singleton.getPaintStrategyNames();
+	}
+
 	/**
 	 * Converts a shortened class name (XXX) to a fully qualified class name (folder.XXXappend).
 	 * @param folder The name of the folder for fully qualified class name.
@@ -0,0 +1,442 @@
+package model;
+
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import provided.util.dispatcher.IDispatcher;
+
+/**
+ * An immutable picture of the balls of a BallModel at the end of a simulation tick. The simulation thread publishes a
+ * new snapshot after every tick and the view paints whichever snapshot is the latest, so a slow frame only drops a frame
+ * instead of slowing down the simulation.
+ *
+ * The snapshot holds copies of the location, velocity, radius and color of every ball, in dispatcher order, together
+ * with the ball's paint strategy and the class of its update strategy. Painting uses a single flyweight Ball that is loaded with each ball's state in turn
+ * before its paint strategy is called, so the paint strategies see the same Ball API as before.
+ *
+ * The balls whose paint strategy is an IBatchPaintStrategy are not filled one by one. Their transformed shapes are
+ * bucketed by strategy class and color and merged into a few paths per bucket, which are filled after all the other
+ * balls have been painted. This saves a color change per ball and most of the fill calls when many balls share a color.
+ * Small and hidden balls are simplified or skipped as set by the LevelOfDetail policy.
+ * @author Peter Dulworth (psd2), Rocky Wu (lw31)
+ */
+public class BallSnapshot {
+
+	/**
+	 * The snapshot of an empty world.
+	 */
+	public static final BallSnapshot EMPTY = new BallSnapshot(0, 0);
+
+	/**
+	 * The maximum number of shapes merged into one path. Java2D sorts the edge crossings of a whole path on every scan
+	 * line, so filling a path of hundreds of overlapping shapes is several times slower than filling them one by one.
+	 */
+	private static final int SHAPES_PER_PATH = 8;
+
+	/**
+	 * The maximum number of overdraw cells in each direction, see findHidden().
+	 */
+	private static final int MAX_CELLS = 4096;
+
+	/**
+	 * The number of the tick that produced this snapshot.
+	 */
+	private final long tick;
+
+	/**
+	 * The time at which the snapshot was captured, as given by System.nanoTime().
+	 */
+	private final long nanoTime;
+
+	/**
+	 * The number of balls in the snapshot.
+	 */
+	private int size = 0;
+
+	/**
+	 * The x and y coordinates of the centers of the balls.
+	 */
+	private int[] x, y;
+
+	/**
+	 * The x and y components of the velocities of the balls.
+	 */
+	private int[] vx, vy;
+
+	/**
+	 * The radii of the balls.
+	 */
+	private int[] r;
+
+	/**
+	 * The colors of the balls.
+	 */
+	private Color[] colors;
+
+	/**
+	 * The paint strategies of the balls.
+	 */
+	private IPaintStrategy[] paintStrategies;
+
+	/**
+	 * The classes of the update strategies of the balls.
+	 */
+	private Class<?>[] updateStrategies;
+
+	/**
+	 * Creates an empty snapshot with room for the given number of balls.
+	 * @param tick The number of the tick that produced the snapshot.
+	 * @param capacity The initial number of balls that fit.
+	 */
+	private BallSnapshot(long tick, int capacity) {
+		this.tick = tick;
+		this.nanoTime = System.nanoTime();
+		x = new int[capacity];
+		y = new int[capacity];
+		vx = new int[capacity];
+		vy = new int[capacity];
+		r = new int[capacity];
+		colors = new Color[capacity];
+		paintStrategies = new IPaintStrategy[capacity];
+		updateStrategies = new Class<?>[capacity];
+	}
+
+	/**
+	 * Captures the state of every ball in the given dispatcher. Must be called on the simulation thread, between ticks.
+	 * @param store The store that holds the state of the balls.
+	 * @param disp The dispatcher whose balls are captured, in the order they are to be painted.
+	 * @param tick The number of the tick that produced the snapshot.
+	 * @return The new snapshot.
+	 */
+	static BallSnapshot capture(BallStore store, IDispatcher<IBallCmd> disp, long tick) {
+		BallSnapshot snap = new BallSnapshot(tick, Math.max(16, store.size));
+		store.sync();
+		disp.updateAll((context, d) -> snap.add(context));
+		return snap;
+	}
+
+	/**
+	 * Appends the state of the given ball.
+	 * @param b The ball to add.
+	 */
+	private void add(Ball b) {
+		if (size == x.length) {
+			int capacity = 2 * size;
+			x = Arrays.copyOf(x, capacity);
+			y = Arrays.copyOf(y, capacity);
+			vx = Arrays.copyOf(vx, capacity);
+			vy = Arrays.copyOf(vy, capacity);
+			r = Arrays.copyOf(r, capacity);
+			colors = Arrays.copyOf(colors, capacity);
+			paintStrategies = Arrays.copyOf(paintStrategies, capacity);
+			updateStrategies = Arrays.copyOf(updateStrategies, capacity);
+		}
+		BallStore s = b.store;
+		int slot = b.slot;
+		x[size] = s.x[slot];
+		y[size] = s.y[slot];
+		vx[size] = s.vx[slot];
+		vy[size] = s.vy[slot];
+		r[size] = s.r[slot];
+		colors[size] = s.color(slot);
+		paintStrategies[size] = b.getPaintStrategy();
+		updateStrategies[size] = b.getUpdateStrategy().getClass();
+		size++;
+	}
+
+	/**
+	 * Paints every ball in the snapshot.
+	 * @param g The Graphics object to paint on.
+	 * @param component The component that is painted on, given to the paint strategies as the ball's container.
+	 */
+	public void paint(Graphics g, Component component) {
+		paint(g, component, 0.0);
+	}
+
+	/**
+	 * Paints every ball in the snapshot, moved ahead along its velocity by the given fraction of a tick. This lets a view
+	 * that renders frames faster than the simulation ticks show smooth motion between two snapshots. A ball that bounces
+	 * during that fraction is drawn slightly past the wall until the next snapshot.
+	 * @param g The Graphics object to paint on.
+	 * @param component The component that is painted on, given to the paint strategies as the ball's container.
+	 * @param ahead The fraction of a tick to move the balls ahead by, normally between 0 and 1.
+	 */
+	public void paint(Graphics g, Component component, double ahead) {
+		paint(g, component, ahead, null, 0, size);
+	}
+
+	/**
+	 * Paints some of the balls in the snapshot, in the given order. Each paint strategy is locked while it paints, since
+	 * the strategies keep their transform in a field, so several threads may paint the same snapshot at the same time,
+	 * e.g. into different tiles of one image, as long as each uses its own Graphics object.
+	 * @param g The Graphics object to paint on.
+	 * @param component The component that is painted on, given to the paint strategies as the ball's container.
+	 * @param ahead The fraction of a tick to move the balls ahead by, normally between 0 and 1.
+	 * @param order The indices of the balls to paint, or null to paint the balls from start to end in snapshot order.
+	 * @param start The first position in order to paint.
+	 * @param end The position in order after the last one to paint.
+	 */
+	void paint(Graphics g, Component component, double ahead, int[] order, int start, int end) {
+		if (start >= end) {
+			return;
+		}
+		LevelOfDetail lod = LevelOfDetail.Singleton;
+		int pixelRadius = lod.getPixelRadius();
+		boolean[] hidden = null;
+		if (size > lod.getHeavyLoad() && g instanceof Graphics2D) {
+			g = g.create();
+			lod.applyFastHints((Graphics2D) g);
+			hidden = findHidden(ahead, order, start, end, lod.getMaxOverdraw());
+		}
+		Ball flyweight = new Ball();
+		flyweight.setContainer(component);
+		BallStore s = flyweight.store;
+		int slot = flyweight.slot;
+		LinkedHashMap<BatchKey, Batch> batches = new LinkedHashMap<BatchKey, Batch>();
+		for (int k = start; k < end; k++) {
+			if (null != hidden && hidden[k - start]) {
+				continue;
+			}
+			int i = null == order ? k : order[k];
+			if (r[i] <= pixelRadius) {
+				int d = Math.max(1, 2 * r[i]);
+				g.setColor(colors[i]);
+				g.fillRect(xAt(i, ahead) - r[i], yAt(i, ahead) - r[i], d, d);
+				continue;
+			}
+			s.setLocation(slot, xAt(i, ahead), yAt(i, ahead));
+			s.setVelocity(slot, vx[i], vy[i]);
+			s.r[slot] = r[i];
+			s.setColor(slot, colors[i]);
+			IPaintStrategy ps = paintStrategies[i];
+			synchronized (ps) {
+				if (ps instanceof IBatchPaintStrategy && g instanceof Graphics2D) {
+					IBatchPaintStrategy bps = (IBatchPaintStrategy) ps;
+					AffineTransform at = bps.batchXfrm(g, flyweight);
+					if (null != at) {
+						BatchKey key = new BatchKey(ps.getClass(), colors[i].getRGB(), at.getDeterminant() < 0);
+						Batch batch = batches.get(key);
+						if (null == batch) {
+							batch = new Batch(colors[i]);
+							batches.put(key, batch);
+						}
+						batch.append(bps.getPrototype().getPathIterator(at));
+						continue;
+					}
+				}
+				ps.paint(g, flyweight);
+			}
+		}
+		for (Batch batch : batches.values()) {
+			g.setColor(batch.color);
+			for (Path2D.Float path : batch.paths) {
+				((Graphics2D) g).fill(path);
+			}
+		}
+		if (null != hidden) {
+			g.dispose();
+		}
+	}
+
+	/**
+	 * Finds the balls that are hidden under many others. Counts, in cells of LevelOfDetail.CELL pixels, how many balls
+	 * painted after each ball overlap each cell, and marks a ball as hidden if every cell that its bounds overlap is
+	 * overlapped by more than the maximum overdraw of them. This is a heuristic: the balls above are not guaranteed
+	 * to cover every pixel of the ball, but with that many of them the odds of a visible gap are small.
+	 * @param ahead The fraction of a tick to move the balls ahead by.
+	 * @param order The indices of the balls to paint, or null for snapshot order.
+	 * @param start The first position in order to paint.
+	 * @param end The position in order after the last one to paint.
+	 * @param maxOverdraw The number of balls above a cell beyond which it is hidden.
+	 * @return Whether the ball at each position from start to end is hidden.
+	 */
+	private boolean[] findHidden(double ahead, int[] order, int start, int end, int maxOverdraw) {
+		int n = end - start;
+		int[] bounds = new int[4 * n];
+		int cols = 1, rows = 1;
+		for (int k = 0; k < n; k++) {
+			int i = null == order ? start + k : order[start + k];
+			int x = xAt(i, ahead);
+			int y = yAt(i, ahead);
+			bounds[4 * k] = Math.max(0, (x - r[i]) / LevelOfDetail.CELL);
+			bounds[4 * k + 1] = Math.min(MAX_CELLS - 1, Math.max(0, (x + r[i]) / LevelOfDetail.CELL));
+			bounds[4 * k + 2] = Math.max(0, (y - r[i]) / LevelOfDetail.CELL);
+			bounds[4 * k + 3] = Math.min(MAX_CELLS - 1, Math.max(0, (y + r[i]) / LevelOfDetail.CELL));
+			cols = Math.max(cols, bounds[4 * k + 1] + 1);
+			rows = Math.max(rows, bounds[4 * k + 3] + 1);
+		}
+		int[] above = new int[cols * rows];
+		boolean[] hidden = new boolean[n];
+		for (int k = n - 1; k >= 0; k--) {
+			boolean covered = true;
+			for (int cy = bounds[4 * k + 2]; cy <= bounds[4 * k + 3]; cy++) {
+				for (int cx = bounds[4 * k]; cx <= bounds[4 * k + 1]; cx++) {
+					covered &= above[cy * cols + cx]++ > maxOverdraw;
+				}
+			}
+			hidden[k] = covered;
+		}
+		return hidden;
+	}
+
+	/**
+	 * @param i The index of a ball.
+	 * @param ahead The fraction of a tick to move the ball ahead by.
+	 * @return The x coordinate of the center of the ball, moved ahead.
+	 */
+	int xAt(int i, double ahead) {
+		return x[i] + (int) Math.round(vx[i] * ahead);
+	}
+
+	/**
+	 * @param i The index of a ball.
+	 * @param ahead The fraction of a tick to move the ball ahead by.
+	 * @return The y coordinate of the center of the ball, moved ahead.
+	 */
+	int yAt(int i, double ahead) {
+		return y[i] + (int) Math.round(vy[i] * ahead);
+	}
+
+	/**
+	 * @param i The index of a ball.
+	 * @return The radius of the ball.
+	 */
+	int radius(int i) {
+		return r[i];
+	}
+
+	/**
+	 * The key of a batch of shapes. Mirrored shapes wind the other way round, so they get their own batch, otherwise
+	 * the overlap of a mirrored and an unmirrored shape would cancel out under the non-zero winding rule.
+	 */
+	private static final class BatchKey {
+
+		/**
+		 * The class of the paint strategy.
+		 */
+		private final Class<?> type;
+
+		/**
+		 * The color, as ARGB.
+		 */
+		private final int argb;
+
+		/**
+		 * Whether the transform mirrors the prototype.
+		 */
+		private final boolean mirrored;
+
+		/**
+		 * Constructor.
+		 * @param type The class of the paint strategy.
+		 * @param argb The color, as ARGB.
+		 * @param mirrored Whether the transform mirrors the prototype.
+		 */
+		BatchKey(Class<?> type, int argb, boolean mirrored) {
+			this.type = type;
+			this.argb = argb;
+			this.mirrored = mirrored;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof BatchKey)) {
+				return false;
+			}
+			BatchKey k = (BatchKey) o;
+			return k.type == type && k.argb == argb && k.mirrored == mirrored;
+		}
+
+		@Override
+		public int hashCode() {
+			return (type.hashCode() * 31 + argb) * 2 + (mirrored ? 1 : 0);
+		}
+	}
+
+	/**
+	 * The merged shapes of the balls of one batch.
+	 */
+	private static final class Batch {
+
+		/**
+		 * The color to fill the path with.
+		 */
+		private final Color color;
+
+		/**
+		 * The transformed shapes of the balls, SHAPES_PER_PATH to a path.
+		 */
+		private final ArrayList<Path2D.Float> paths = new ArrayList<Path2D.Float>();
+
+		/**
+		 * The number of shapes in the last path.
+		 */
+		private int count = SHAPES_PER_PATH;
+
+		/**
+		 * Constructor.
+		 * @param color The color to fill the path with.
+		 */
+		Batch(Color color) {
+			this.color = color;
+		}
+
+		/**
+		 * Appends a shape to the batch, without connecting it to the previous one.
+		 * @param shape The path of the transformed shape.
+		 */
+		void append(PathIterator shape) {
+			if (count == SHAPES_PER_PATH) {
+				paths.add(new Path2D.Float(Path2D.WIND_NON_ZERO));
+				count = 0;
+			}
+			paths.get(paths.size() - 1).append(shape, false);
+			count++;
+		}
+	}
+
+	/**
+	 * Counts the balls of each combination of update strategy class and paint strategy class. The snapshot is never
+	 * changed once published, so this may be called from any thread, e.g. to export the counts, without touching the
+	 * dispatcher.
+	 * @return The number of balls, keyed by the class of their update strategy and then by that of their paint strategy.
+	 */
+	public Map<Class<?>, Map<Class<?>, Integer>> countStrategies() {
+		Map<Class<?>, Map<Class<?>, Integer>> counts = new LinkedHashMap<Class<?>, Map<Class<?>, Integer>>();
+		for (int i = 0; i < size; i++) {
+			counts.computeIfAbsent(updateStrategies[i], (k) -> new LinkedHashMap<Class<?>, Integer>())
+					.merge(paintStrategies[i].getClass(), 1, Integer::sum);
+		}
+		return counts;
+	}
+
+	/**
+	 * @return The number of balls in the snapshot.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return The number of the tick that produced the snapshot.
+	 */
+	public long getTick() {
+		return tick;
+	}
+
+	/**
+	 * @return The time at which the snapshot was captured, as given by System.nanoTime().
+	 */
+	public long getNanoTime() {
+		return nanoTime;
+	}
+}
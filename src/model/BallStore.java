@@ -0,0 +1,779 @@
+package model;
+
+import java.awt.Color;
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Structure-of-arrays storage for the state of a population of balls. The location, velocity, radius and packed ARGB
+ * color of every ball are held in primitive arrays indexed by the ball's slot, so that whole-population operations such
+ * as move and bounce run as tight loops over contiguous memory. A Ball is a thin handle over one slot of a store.
+ *
+ * To stay compatible with the Point-based Ball API, a ball's location and velocity can be "exported" as Point views.
+ * While a view is exported it is the authoritative copy of that value, so strategies that mutate the returned Point,
+ * e.g. getVelocity().translate(dx, dy), keep working. The exported views are folded back into the arrays by sync(),
+ * which is called at the start of every bulk operation, i.e. at the phase boundaries of a tick.
+ *
+ * Every BallModel owns one store. A ball constructed outside of a model lives in its own single-slot store until it is
+ * adopted by a model's store when it is added to the model's dispatcher.
+ * @author Peter Dulworth (psd2), Rocky Wu (lw31)
+ */
+public class BallStore {
+
+	/**
+	 * Flag set while the location of a slot is exported as a Point view.
+	 */
+	private static final byte LOC_OUT = 1;
+
+	/**
+	 * Flag set while the velocity of a slot is exported as a Point view.
+	 */
+	private static final byte VEL_OUT = 2;
+
+	/**
+	 * Flag set when the ball in a slot has been removed from the world but the slot has not yet been reclaimed.
+	 */
+	private static final byte DEAD = 4;
+
+	/**
+	 * Flag set on a slot that has already been moved during the current tick, e.g. by the collision engine, 
+	 * so that advance() leaves it alone. Cleared by advance().
+	 */
+	private static final byte HELD = 8;
+
+	/**
+	 * The x and y coordinates of the centers of the balls.
+	 */
+	int[] x, y;
+
+	/**
+	 * The x and y components of the velocities of the balls.
+	 */
+	int[] vx, vy;
+
+	/**
+	 * The write buffer of advance(), swapped with x, y, vx and vy after every step.
+	 */
+	private int[] nextX = new int[0], nextY = new int[0], nextVx = new int[0], nextVy = new int[0];
+
+	/**
+	 * The radii of the balls.
+	 */
+	int[] r;
+
+	/**
+	 * The colors of the balls, packed as ARGB.
+	 */
+	int[] argb;
+
+	/**
+	 * Cache of the Color objects corresponding to argb, so that getColor() does not allocate.
+	 */
+	private Color[] colors;
+
+	/**
+	 * The ball that owns each slot or null if the slot is free.
+	 */
+	Ball[] owners;
+
+	/**
+	 * The LOC_OUT, VEL_OUT, DEAD and HELD flags of each slot.
+	 */
+	private byte[] flags;
+
+	/**
+	 * The Point views of the locations, allocated lazily.
+	 */
+	private Point[] locViews;
+
+	/**
+	 * The Point views of the velocities, allocated lazily.
+	 */
+	private Point[] velViews;
+
+	/**
+	 * One more than the highest slot ever allocated.
+	 */
+	int size = 0;
+
+	/**
+	 * Stack of freed slots below size that can be reused.
+	 */
+	private int[] free = new int[16];
+
+	/**
+	 * The number of entries in the free stack.
+	 */
+	private int nFree = 0;
+
+	/**
+	 * The slots whose location or velocity is currently exported.
+	 */
+	private int[] exported = new int[16];
+
+	/**
+	 * The number of entries in the exported list.
+	 */
+	private int nExported = 0;
+
+	/**
+	 * The slots that were killed since the last reclaim().
+	 */
+	private int[] killed = new int[16];
+
+	/**
+	 * The number of entries in the killed list.
+	 */
+	private int nKilled = 0;
+
+	/**
+	 * The width and height of the world the balls bounce in.
+	 */
+	private int width = 0, height = 0;
+
+	/**
+	 * The spatial index over the balls of this store.
+	 */
+	private SpatialGrid grid = SpatialGrid.NULL;
+
+	/**
+	 * The continuous collision engine that moves the tracked balls of this store.
+	 */
+	private CollisionEngine engine = CollisionEngine.NULL;
+
+	/**
+	 * The Barnes-Hut tree that makes the tracked balls of this store attract each other.
+	 */
+	private GravityTree gravity = GravityTree.NULL;
+
+	/**
+	 * The number of the current tick, used to expire the criteria offered by the balls in earlier ticks.
+	 */
+	private int epoch = 0;
+
+	/**
+	 * One criterion of each class offered by the balls during the current tick, in the order they were first offered.
+	 */
+	private Map<Class<?>, IInteractCriterion> offered = new LinkedHashMap<Class<?>, IInteractCriterion>();
+
+	/**
+	 * The balls that offered a criterion of each class during the current tick, in the order they offered it.
+	 */
+	private Map<Class<?>, List<Ball>> offerers = new HashMap<Class<?>, List<Ball>>();
+
+	/**
+	 * Creates a store for a whole world of balls, with its own spatial index.
+	 */
+	public BallStore() {
+		this(64);
+		grid = new SpatialGrid(this);
+		engine = new CollisionEngine(this);
+		gravity = new GravityTree(this);
+	}
+
+	/**
+	 * Creates a store with the given initial capacity and no spatial index.
+	 * @param capacity The initial number of slots.
+	 */
+	BallStore(int capacity) {
+		x = new int[capacity];
+		y = new int[capacity];
+		vx = new int[capacity];
+		vy = new int[capacity];
+		r = new int[capacity];
+		argb = new int[capacity];
+		colors = new Color[capacity];
+		owners = new Ball[capacity];
+		flags = new byte[capacity];
+		locViews = new Point[capacity];
+		velViews = new Point[capacity];
+	}
+
+	/**
+	 * @return The spatial index over the balls of this store.
+	 */
+	public SpatialGrid getGrid() {
+		return grid;
+	}
+
+	/**
+	 * @return The continuous collision engine of this store.
+	 */
+	public CollisionEngine getCollisionEngine() {
+		return engine;
+	}
+
+	/**
+	 * @return The Barnes-Hut gravity tree of this store.
+	 */
+	public GravityTree getGravityTree() {
+		return gravity;
+	}
+
+	/**
+	 * Sets the size of the world that the balls bounce in.
+	 * @param width The width of the world.
+	 * @param height The height of the world.
+	 */
+	public void setBounds(int width, int height) {
+		this.width = width;
+		this.height = height;
+	}
+
+	/**
+	 * @return The width of the world, or 0 if no bounds have been set.
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * @return The height of the world, or 0 if no bounds have been set.
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * @return True if the size of the world has been set.
+	 */
+	boolean hasBounds() {
+		return width > 0 || height > 0;
+	}
+
+	/**
+	 * @return The number of the current tick of the store.
+	 */
+	int getEpoch() {
+		return epoch;
+	}
+
+	/**
+	 * Records that a ball of this store offered the given criterion during the current tick. Must be called once per
+	 * ball and class of criterion.
+	 * @param owner The ball that offered the criterion.
+	 * @param criterion The offered criterion.
+	 */
+	void offer(Ball owner, IInteractCriterion criterion) {
+		offered.putIfAbsent(criterion.getClass(), criterion);
+		offerers.computeIfAbsent(criterion.getClass(), (k) -> new ArrayList<Ball>()).add(owner);
+	}
+
+	/**
+	 * @param key The class of a criterion.
+	 * @return The balls that offered a criterion of that class during the current tick, in the order they offered it.
+	 */
+	List<Ball> getOfferers(Class<?> key) {
+		List<Ball> balls = offerers.get(key);
+		return null == balls ? Collections.<Ball>emptyList() : balls;
+	}
+
+	/**
+	 * @return The number of balls in the store, including those killed during the current tick.
+	 */
+	int getCount() {
+		return size - nFree;
+	}
+
+	/**
+	 * @return One criterion of each class that was offered during the current tick, in the order their classes were first offered.
+	 */
+	public List<IInteractCriterion> getOfferedCriteria() {
+		return new ArrayList<IInteractCriterion>(offered.values());
+	}
+
+	/**
+	 * Starts the next tick, so that all the criteria offered so far expire.
+	 */
+	public void expireCriteria() {
+		offered.clear();
+		offerers.clear();
+		epoch++;
+	}
+
+	/**
+	 * Allocates a slot for the given ball.
+	 * @param owner The ball that will own the slot.
+	 * @return The allocated slot.
+	 */
+	int allocate(Ball owner) {
+		int s;
+		if (nFree > 0) {
+			s = free[--nFree];
+		} else {
+			if (size == owners.length) {
+				grow(Math.max(4, 2 * size));
+			}
+			s = size++;
+		}
+		owners[s] = owner;
+		flags[s] = 0;
+		return s;
+	}
+
+	/**
+	 * Returns the slot to the free stack. The slot must not be exported or killed.
+	 * @param s The slot to free.
+	 */
+	private void release(int s) {
+		owners[s] = null;
+		colors[s] = null;
+		locViews[s] = null;
+		velViews[s] = null;
+		flags[s] = 0;
+		if (nFree == free.length) {
+			free = Arrays.copyOf(free, 2 * nFree);
+		}
+		free[nFree++] = s;
+	}
+
+	/**
+	 * Enlarges all the arrays to the given capacity.
+	 * @param capacity The new capacity.
+	 */
+	private void grow(int capacity) {
+		x = Arrays.copyOf(x, capacity);
+		y = Arrays.copyOf(y, capacity);
+		vx = Arrays.copyOf(vx, capacity);
+		vy = Arrays.copyOf(vy, capacity);
+		r = Arrays.copyOf(r, capacity);
+		argb = Arrays.copyOf(argb, capacity);
+		colors = Arrays.copyOf(colors, capacity);
+		owners = Arrays.copyOf(owners, capacity);
+		flags = Arrays.copyOf(flags, capacity);
+		locViews = Arrays.copyOf(locViews, capacity);
+		velViews = Arrays.copyOf(velViews, capacity);
+	}
+
+	/**
+	 * Moves the given ball, which may live in another store, into this store. Its state is preserved and so are any
+	 * Point views that were handed out for it. If the ball was killed in this store and not yet reclaimed, it is revived.
+	 * @param b The ball to adopt.
+	 */
+	public void adopt(Ball b) {
+		BallStore old = b.store;
+		int os = b.slot;
+		if (old == this) {
+			flags[os] &= ~DEAD;
+			return;
+		}
+		old.pull(os);
+		int s = allocate(b);
+		x[s] = old.x[os];
+		y[s] = old.y[os];
+		vx[s] = old.vx[os];
+		vy[s] = old.vy[os];
+		r[s] = old.r[os];
+		argb[s] = old.argb[os];
+		colors[s] = old.colors[os];
+		locViews[s] = old.locViews[os];
+		velViews[s] = old.velViews[os];
+		flags[s] = (byte) (old.flags[os] & (LOC_OUT | VEL_OUT));
+		if (flags[s] != 0) {
+			markExported(s);
+		}
+		old.flags[os] = 0;
+		old.release(os);
+		b.store = this;
+		b.slot = s;
+	}
+
+	/**
+	 * Marks the given ball as removed from the world. The ball is skipped by all bulk operations and neighbor queries,
+	 * but its state stays readable until the next reclaim(), so that an interaction in progress can still use it.
+	 * @param b The ball to kill.
+	 */
+	public void kill(Ball b) {
+		if (b.store != this || (flags[b.slot] & DEAD) != 0) {
+			return;
+		}
+		flags[b.slot] |= DEAD;
+		if (nKilled == killed.length) {
+			killed = Arrays.copyOf(killed, 2 * nKilled);
+		}
+		killed[nKilled++] = b.slot;
+	}
+
+	/**
+	 * Kills every ball in the store.
+	 */
+	public void killAll() {
+		for (int s = 0; s < size; s++) {
+			if (owners[s] != null) {
+				kill(owners[s]);
+			}
+		}
+	}
+
+	/**
+	 * Frees the slots of the balls killed since the last call. A killed ball is moved to a private single-slot store so
+	 * that any remaining references to it stay valid. Must only be called between ticks.
+	 */
+	public void reclaim() {
+		for (int i = 0; i < nKilled; i++) {
+			int s = killed[i];
+			Ball b = owners[s];
+			if (b != null && (flags[s] & DEAD) != 0) {
+				flags[s] &= ~DEAD;
+				new BallStore(1).adopt(b);
+			}
+		}
+		nKilled = 0;
+	}
+
+	/**
+	 * @param s A slot.
+	 * @return True if the slot holds a ball that has not been killed.
+	 */
+	boolean isLive(int s) {
+		return owners[s] != null && (flags[s] & DEAD) == 0;
+	}
+
+	/**
+	 * Records that a view of the given slot has been handed out.
+	 * @param s The exported slot.
+	 */
+	private void markExported(int s) {
+		if (nExported == exported.length) {
+			exported = Arrays.copyOf(exported, 2 * nExported);
+		}
+		exported[nExported++] = s;
+	}
+
+	/**
+	 * Copies any exported views of the given slot into the arrays, without un-exporting them.
+	 * @param s The slot.
+	 */
+	private void pull(int s) {
+		if ((flags[s] & LOC_OUT) != 0) {
+			x[s] = locViews[s].x;
+			y[s] = locViews[s].y;
+		}
+		if ((flags[s] & VEL_OUT) != 0) {
+			vx[s] = velViews[s].x;
+			vy[s] = velViews[s].y;
+		}
+	}
+
+	/**
+	 * Copies the arrays into any exported views of the given slot.
+	 * @param s The slot.
+	 */
+	private void push(int s) {
+		if ((flags[s] & LOC_OUT) != 0) {
+			locViews[s].setLocation(x[s], y[s]);
+		}
+		if ((flags[s] & VEL_OUT) != 0) {
+			velViews[s].setLocation(vx[s], vy[s]);
+		}
+	}
+
+	/**
+	 * Folds every exported Point view back into the arrays and un-exports it. After this call the arrays are
+	 * authoritative until the next getLocation() or getVelocity() call on a ball.
+	 */
+	public void sync() {
+		for (int i = 0; i < nExported; i++) {
+			int s = exported[i];
+			if (owners[s] != null) {
+				pull(s);
+				flags[s] &= ~(LOC_OUT | VEL_OUT);
+			}
+		}
+		nExported = 0;
+	}
+
+	/**
+	 * Returns the location view of the given slot.
+	 * @param s The slot.
+	 * @return A Point that is the location of the ball until the next sync().
+	 */
+	Point location(int s) {
+		if ((flags[s] & LOC_OUT) == 0) {
+			if (locViews[s] == null) {
+				locViews[s] = new Point();
+			}
+			locViews[s].setLocation(x[s], y[s]);
+			if ((flags[s] & VEL_OUT) == 0) {
+				markExported(s);
+			}
+			flags[s] |= LOC_OUT;
+		}
+		return locViews[s];
+	}
+
+	/**
+	 * Returns the velocity view of the given slot.
+	 * @param s The slot.
+	 * @return A Point that is the velocity of the ball until the next sync().
+	 */
+	Point velocity(int s) {
+		if ((flags[s] & VEL_OUT) == 0) {
+			if (velViews[s] == null) {
+				velViews[s] = new Point();
+			}
+			velViews[s].setLocation(vx[s], vy[s]);
+			if ((flags[s] & LOC_OUT) == 0) {
+				markExported(s);
+			}
+			flags[s] |= VEL_OUT;
+		}
+		return velViews[s];
+	}
+
+	/**
+	 * Sets the location of the given slot.
+	 * @param s The slot.
+	 * @param px The x-coordinate.
+	 * @param py The y-coordinate.
+	 */
+	void setLocation(int s, int px, int py) {
+		x[s] = px;
+		y[s] = py;
+		if ((flags[s] & LOC_OUT) != 0) {
+			locViews[s].setLocation(px, py);
+		}
+	}
+
+	/**
+	 * Sets the velocity of the given slot.
+	 * @param s The slot.
+	 * @param px The x-component.
+	 * @param py The y-component.
+	 */
+	void setVelocity(int s, int px, int py) {
+		vx[s] = px;
+		vy[s] = py;
+		if ((flags[s] & VEL_OUT) != 0) {
+			velViews[s].setLocation(px, py);
+		}
+	}
+
+	/**
+	 * @param s The slot.
+	 * @return The color of the slot.
+	 */
+	Color color(int s) {
+		Color c = colors[s];
+		if (c == null) {
+			c = colors[s] = new Color(argb[s], true);
+		}
+		return c;
+	}
+
+	/**
+	 * @param s The slot.
+	 * @param c The color to set.
+	 */
+	void setColor(int s, Color c) {
+		argb[s] = c.getRGB();
+		colors[s] = c;
+	}
+
+	/**
+	 * Marks the given slot as already moved during the current tick, so that the next advance() leaves it alone.
+	 * @param s The slot.
+	 */
+	void hold(int s) {
+		flags[s] |= HELD;
+	}
+
+	/**
+	 * Reads the x-coordinate of the given slot without exporting a view. Safe to call from several threads at once 
+	 * as long as no thread mutates the ball.
+	 * @param s The slot.
+	 * @return The x-coordinate.
+	 */
+	int locX(int s) {
+		return (flags[s] & LOC_OUT) != 0 ? locViews[s].x : x[s];
+	}
+
+	/**
+	 * Reads the y-coordinate of the given slot without exporting a view, see locX().
+	 * @param s The slot.
+	 * @return The y-coordinate.
+	 */
+	int locY(int s) {
+		return (flags[s] & LOC_OUT) != 0 ? locViews[s].y : y[s];
+	}
+
+	/**
+	 * Reads the x-component of the velocity of the given slot without exporting a view, see locX().
+	 * @param s The slot.
+	 * @return The x-component of the velocity.
+	 */
+	int velX(int s) {
+		return (flags[s] & VEL_OUT) != 0 ? velViews[s].x : vx[s];
+	}
+
+	/**
+	 * Reads the y-component of the velocity of the given slot without exporting a view, see locX().
+	 * @param s The slot.
+	 * @return The y-component of the velocity.
+	 */
+	int velY(int s) {
+		return (flags[s] & VEL_OUT) != 0 ? velViews[s].y : vy[s];
+	}
+
+	/**
+	 * Moves a single ball by its velocity.
+	 * @param s The slot.
+	 */
+	void move(int s) {
+		pull(s);
+		x[s] += vx[s];
+		y[s] += vy[s];
+		push(s);
+	}
+
+	/**
+	 * Reflects a single ball off the walls of a w by h world.
+	 * @param s The slot.
+	 * @param w The width of the world.
+	 * @param h The height of the world.
+	 */
+	void bounce(int s, int w, int h) {
+		pull(s);
+		bounceSlot(s, w, h);
+		push(s);
+	}
+
+	/**
+	 * Moves every live ball by its velocity.
+	 */
+	public void moveAll() {
+		sync();
+		int[] x = this.x, y = this.y, vx = this.vx, vy = this.vy;
+		for (int s = 0; s < size; s++) {
+			if (isLive(s)) {
+				x[s] += vx[s];
+				y[s] += vy[s];
+			}
+		}
+	}
+
+	/**
+	 * Reflects every live ball off the walls of the world.
+	 */
+	public void bounceAll() {
+		sync();
+		for (int s = 0; s < size; s++) {
+			if (isLive(s)) {
+				bounceSlot(s, width, height);
+			}
+		}
+	}
+
+	/**
+	 * Moves every live ball that is not held by its velocity and reflects it off the walls of the world, like moveAll() 
+	 * followed by bounceAll(), but double-buffered: the next state of every ball is computed from the read buffer, i.e. the 
+	 * current arrays, into a write buffer that then becomes the current arrays. Each ball only writes its own slot, 
+	 * so the slots can be split across threads.
+	 * @param parallel True to compute the next state on all cores.
+	 */
+	public void advance(boolean parallel) {
+		sync();
+		if (nextX.length < x.length) {
+			nextX = new int[x.length];
+			nextY = new int[x.length];
+			nextVx = new int[x.length];
+			nextVy = new int[x.length];
+		}
+		int chunk = 4096;
+		int nChunks = (size + chunk - 1) / chunk;
+		IntStream chunks = IntStream.range(0, nChunks);
+		(parallel ? chunks.parallel() : chunks).forEach((k) -> advanceRange(k * chunk, Math.min(size, (k + 1) * chunk)));
+
+		int[] t = x;
+		x = nextX;
+		nextX = t;
+		t = y;
+		y = nextY;
+		nextY = t;
+		t = vx;
+		vx = nextVx;
+		nextVx = t;
+		t = vy;
+		vy = nextVy;
+		nextVy = t;
+	}
+
+	/**
+	 * Computes the next state of the given range of slots into the write buffer.
+	 * @param from The first slot.
+	 * @param to One past the last slot.
+	 */
+	private void advanceRange(int from, int to) {
+		int w = width;
+		int h = height;
+		for (int s = from; s < to; s++) {
+			int px = x[s];
+			int py = y[s];
+			int pvx = vx[s];
+			int pvy = vy[s];
+			if ((flags[s] & HELD) != 0) {
+				flags[s] &= ~HELD;
+			} else if (isLive(s)) {
+				int rs = r[s];
+				px += pvx;
+				py += pvy;
+				if (px + rs > w) { // right
+					px = px - 2 * (px - w + rs);
+					pvx = -pvx;
+				}
+				if (px - rs < 0) { // left
+					px = px + 2 * (-px + rs);
+					pvx = -pvx;
+				}
+				if (py + rs > h) { // bottom
+					py = py - 2 * (py - h + rs);
+					pvy = -pvy;
+				}
+				if (py - rs < 0) { // top
+					py = py + 2 * (-py + rs);
+					pvy = -pvy;
+				}
+			}
+			nextX[s] = px;
+			nextY[s] = py;
+			nextVx[s] = pvx;
+			nextVy[s] = pvy;
+		}
+	}
+
+	/**
+	 * If the edge of the ball is beyond an edge of the w by h world, reflects its location and velocity off that wall.
+	 * @param s The slot.
+	 * @param w The width of the world.
+	 * @param h The height of the world.
+	 */
+	private void bounceSlot(int s, int w, int h) {
+		int rs = r[s];
+		if (x[s] + rs > w) { // right
+			x[s] = x[s] - 2 * (x[s] - w + rs);
+			vx[s] = -vx[s];
+		}
+
+		if (x[s] - rs < 0) { // left
+			x[s] = x[s] + 2 * (-x[s] + rs);
+			vx[s] = -vx[s];
+		}
+
+		if (y[s] + rs > h) { // bottom
+			y[s] = y[s] - 2 * (y[s] - h + rs);
+			vy[s] = -vy[s];
+		}
+
+		if (y[s] - rs < 0) { // top
+			y[s] = y[s] + 2 * (-y[s] + rs);
+			vy[s] = -vy[s];
+		}
+	}
+}
@@ -0,0 +1,646 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import provided.util.dispatcher.IDispatcher;
+
+/**
+ * An event-driven continuous collision engine for the balls of a BallStore. Instead of moving the balls a whole tick
+ * and then repairing the overlaps, the engine predicts the exact time, within the tick, of the next collision of each
+ * tracked ball with a wall or with another tracked ball, keeps these events in a priority queue and advances the
+ * world from event to event. Fast, small balls therefore no longer tunnel through each other or through the walls,
+ * and the result does not depend on the length of the tick.
+ *
+ * The state of every tracked ball is kept in double precision, as a location at a time t0 plus a velocity, and a ball
+ * is only brought forward in time when it is involved in an event, so a ball that does not collide costs nothing until
+ * the end of the tick. Each ball has a collision count that is incremented whenever its trajectory changes; an event
+ * remembers the counts of its balls when it was predicted and is discarded when popped if either count has changed since.
+ *
+ * Candidate pairs are found with a uniform grid that is rebuilt every tick and whose cells are large enough that two
+ * balls that can touch during the tick lie in adjacent cells. Balls that speed up beyond what the grid allows are
+ * tested against every tracked ball. Balls that are not tracked are moved by the store as usual and are not obstacles.
+ * @author Peter Dulworth (psd2), Rocky Wu (lw31)
+ */
+public class CollisionEngine {
+
+	/**
+	 * Null engine that does not track any ball. Used by stores that do not belong to a BallModel.
+	 */
+	public static final CollisionEngine NULL = new CollisionEngine(null) {
+		@Override
+		public void track(Ball b) {
+		}
+
+		@Override
+		public void step(IDispatcher<IBallCmd> disp) {
+		}
+	};
+
+	/**
+	 * The factor by which a ball may speed up in collisions during a tick before the grid can miss its partners.
+	 */
+	private static final int SPEEDUP = 2;
+
+	/**
+	 * Upper bound on the number of cells per ball, so that a sparse world does not allocate a huge grid.
+	 */
+	private static final int CELLS_PER_BALL = 4;
+
+	/**
+	 * The number of events per tracked ball that are processed in one tick, so that balls jammed together cannot
+	 * make the tick last forever.
+	 */
+	private static final int EVENTS_PER_BALL = 8;
+
+	/**
+	 * The partner of an event with a vertical wall, which flips the x-component of the velocity.
+	 */
+	private static final int X_WALL = -1;
+
+	/**
+	 * The partner of an event with a horizontal wall, which flips the y-component of the velocity.
+	 */
+	private static final int Y_WALL = -2;
+
+	/**
+	 * A predicted collision of ball a with ball b or with a wall.
+	 */
+	private static final class Event implements Comparable<Event> {
+
+		/**
+		 * The time of the collision, as a fraction of the tick.
+		 */
+		final double time;
+
+		/**
+		 * The slot of the first ball.
+		 */
+		final int a;
+
+		/**
+		 * The slot of the second ball, X_WALL or Y_WALL.
+		 */
+		final int b;
+
+		/**
+		 * The collision counts of the balls when the event was predicted.
+		 */
+		final int countA, countB;
+
+		/**
+		 * Constructor.
+		 * @param time The time of the collision.
+		 * @param a The slot of the first ball.
+		 * @param b The slot of the second ball, X_WALL or Y_WALL.
+		 * @param countA The collision count of the first ball.
+		 * @param countB The collision count of the second ball, ignored for walls.
+		 */
+		Event(double time, int a, int b, int countA, int countB) {
+			this.time = time;
+			this.a = a;
+			this.b = b;
+			this.countA = countA;
+			this.countB = countB;
+		}
+
+		@Override
+		public int compareTo(Event o) {
+			return Double.compare(time, o.time);
+		}
+	}
+
+	/**
+	 * The store whose balls are moved.
+	 */
+	private final BallStore store;
+
+	/**
+	 * The number of the current tick. A ball is tracked in a tick if track() was called for it during the previous tick.
+	 */
+	private long frame = 0;
+
+	/**
+	 * The tick in which each slot was last tracked.
+	 */
+	private long[] trackedFrame = new long[0];
+
+	/**
+	 * The ball that each slot was last tracked for, to detect slots that were reused by another ball.
+	 */
+	private Ball[] trackedOwner = new Ball[0];
+
+	/**
+	 * The tick in which each slot was last moved by the engine.
+	 */
+	private long[] steppedFrame = new long[0];
+
+	/**
+	 * The ball that each slot was last moved for.
+	 */
+	private Ball[] steppedOwner = new Ball[0];
+
+	/**
+	 * The location of each tracked ball at its time t0.
+	 */
+	private double[] px = new double[0], py = new double[0];
+
+	/**
+	 * The velocity of each tracked ball.
+	 */
+	private double[] vx = new double[0], vy = new double[0];
+
+	/**
+	 * The time, as a fraction of the tick, up to which each tracked ball has been moved.
+	 */
+	private double[] t0 = new double[0];
+
+	/**
+	 * The number of times that the trajectory of each ball has changed.
+	 */
+	private int[] count = new int[0];
+
+	/**
+	 * The location and velocity that were last written to the store for each ball, to detect changes made by others.
+	 */
+	private int[] lastX = new int[0], lastY = new int[0], lastVx = new int[0], lastVy = new int[0];
+
+	/**
+	 * The slots of the balls tracked in the current tick.
+	 */
+	private int[] tracked = new int[0];
+
+	/**
+	 * The number of entries in tracked.
+	 */
+	private int nTracked = 0;
+
+	/**
+	 * The balls tracked in the current tick whose speed exceeds what the grid allows.
+	 */
+	private int[] fast = new int[0];
+
+	/**
+	 * The number of entries in fast.
+	 */
+	private int nFast = 0;
+
+	/**
+	 * The tracked slots sorted by cell. The slots of cell c are at indices cellStart[c] to cellStart[c+1]-1.
+	 */
+	private int[] sorted = new int[0];
+
+	/**
+	 * Prefix sums of the cell populations.
+	 */
+	private int[] cellStart = new int[2];
+
+	/**
+	 * The cell of each slot at the start of the tick.
+	 */
+	private int[] cellOf = new int[0];
+
+	/**
+	 * The coordinates of the top left corner of the grid.
+	 */
+	private int minX, minY;
+
+	/**
+	 * The side length of a cell.
+	 */
+	private int cellSize = 1;
+
+	/**
+	 * The number of columns and rows of cells.
+	 */
+	private int cols = 0, rows = 0;
+
+	/**
+	 * The largest speed, per tick, that the grid can handle.
+	 */
+	private double speedLimit = 0;
+
+	/**
+	 * The pending events of the current tick.
+	 */
+	private final PriorityQueue<Event> events = new PriorityQueue<Event>();
+
+	/**
+	 * Creates an engine for the balls of the given store.
+	 * @param store The store whose balls are moved.
+	 */
+	CollisionEngine(BallStore store) {
+		this.store = store;
+	}
+
+	/**
+	 * Asks the engine to move the given ball, starting from the next tick, until track() is no longer called for it
+	 * every tick. Normally called by the update strategy of the ball.
+	 * @param b The ball to track.
+	 */
+	public void track(Ball b) {
+		if (b.store != store) {
+			return;
+		}
+		ensureCapacity(store.owners.length);
+		trackedFrame[b.slot] = frame + 1;
+		trackedOwner[b.slot] = b;
+	}
+
+	/**
+	 * Moves every tracked ball over one tick, colliding it elastically with the walls of the world and with the other
+	 * tracked balls at the exact time of contact, and marks it as held so that the store does not move it again.
+	 * Then runs the interactWith() methods of every pair of balls that collided. Called by the model once per tick,
+	 * before the store advances the other balls.
+	 * @param disp The dispatcher that holds the balls.
+	 */
+	public void step(IDispatcher<IBallCmd> disp) {
+		frame++;
+		store.sync();
+		ensureCapacity(store.owners.length);
+		collectTracked();
+		if (nTracked == 0) {
+			return;
+		}
+		buildGrid();
+
+		// Predict the first events of every ball. Each pair is predicted once, by its ball that comes first.
+		for (int i = 0; i < nTracked; i++) {
+			int s = tracked[i];
+			predictWalls(s);
+			int cx = cellOf[s] % cols;
+			int cy = cellOf[s] / cols;
+			for (int ny = Math.max(0, cy - 1); ny <= Math.min(rows - 1, cy + 1); ny++) {
+				for (int nx = Math.max(0, cx - 1); nx <= Math.min(cols - 1, cx + 1); nx++) {
+					int c = ny * cols + nx;
+					for (int k = cellStart[c]; k < cellStart[c + 1]; k++) {
+						int t = sorted[k];
+						if (t > s) {
+							predictPair(s, t);
+						}
+					}
+				}
+			}
+		}
+
+		// Advance the world from event to event.
+		Set<Long> collided = new HashSet<Long>();
+		List<int[]> pairs = new ArrayList<int[]>();
+		int budget = EVENTS_PER_BALL * nTracked;
+		while (!events.isEmpty() && budget > 0) {
+			Event e = events.poll();
+			if (count[e.a] != e.countA || (e.b >= 0 && count[e.b] != e.countB)) {
+				continue; // one of the balls has changed course since the event was predicted
+			}
+			if (e.b >= 0 && budget <= nTracked) {
+				continue; // nearly out of events, so only keep the balls inside the walls
+			}
+			budget--;
+			drift(e.a, e.time);
+			if (e.b == X_WALL) {
+				vx[e.a] = -vx[e.a];
+			} else if (e.b == Y_WALL) {
+				vy[e.a] = -vy[e.a];
+			} else {
+				drift(e.b, e.time);
+				collide(e.a, e.b);
+				count[e.b]++;
+				long key = ((long) Math.min(e.a, e.b) << 32) | Math.max(e.a, e.b);
+				if (collided.add(key)) {
+					pairs.add(new int[] { e.a, e.b });
+				}
+			}
+			count[e.a]++;
+			repredict(e.a);
+			if (e.b >= 0) {
+				repredict(e.b);
+			}
+		}
+		events.clear();
+
+		// Bring every ball to the end of the tick and hand it back to the store.
+		for (int i = 0; i < nTracked; i++) {
+			int s = tracked[i];
+			drift(s, 1.0);
+			t0[s] = 0.0;
+			confine(s);
+			lastX[s] = (int) Math.round(px[s]);
+			lastY[s] = (int) Math.round(py[s]);
+			lastVx[s] = (int) Math.round(vx[s]);
+			lastVy[s] = (int) Math.round(vy[s]);
+			store.setLocation(s, lastX[s], lastY[s]);
+			store.setVelocity(s, lastVx[s], lastVy[s]);
+			store.hold(s);
+		}
+
+		// Run the post-collision behaviors, which may kill or spawn balls, only once all the balls are in place.
+		for (int[] p : pairs) {
+			Ball a = store.owners[p[0]];
+			Ball b = store.owners[p[1]];
+			if (null != a && null != b && store.isLive(p[0]) && store.isLive(p[1])) {
+				a.interactWith(b, disp, true);
+				if (b.store == store && store.isLive(p[1])) {
+					b.interactWith(a, disp, true);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Collects the slots of the balls tracked in this tick and reloads the state of the balls whose location or
+	 * velocity was changed by someone else since the last tick, or that were not moved by the engine in the last tick.
+	 */
+	private void collectTracked() {
+		nTracked = 0;
+		for (int s = 0; s < store.size; s++) {
+			if (trackedFrame[s] != frame || trackedOwner[s] != store.owners[s] || !store.isLive(s)) {
+				trackedOwner[s] = null;
+				continue;
+			}
+			if (nTracked == tracked.length) {
+				tracked = Arrays.copyOf(tracked, Math.max(16, 2 * nTracked));
+			}
+			tracked[nTracked++] = s;
+			t0[s] = 0.0;
+			if (steppedFrame[s] != frame - 1 || steppedOwner[s] != store.owners[s] || store.x[s] != lastX[s] 
+					|| store.y[s] != lastY[s] || store.vx[s] != lastVx[s] || store.vy[s] != lastVy[s]) {
+				px[s] = store.x[s];
+				py[s] = store.y[s];
+				vx[s] = store.vx[s];
+				vy[s] = store.vy[s];
+				count[s]++;
+			}
+			steppedFrame[s] = frame;
+			steppedOwner[s] = store.owners[s];
+		}
+	}
+
+	/**
+	 * Buckets the tracked balls into cells large enough that two balls that can touch during the tick lie in the same
+	 * or in adjacent cells, and collects the balls that are too fast for the grid.
+	 */
+	private void buildGrid() {
+		double maxSpeed = 0;
+		int maxRadius = 0;
+		int loX = Integer.MAX_VALUE, loY = Integer.MAX_VALUE, hiX = Integer.MIN_VALUE, hiY = Integer.MIN_VALUE;
+		for (int i = 0; i < nTracked; i++) {
+			int s = tracked[i];
+			maxSpeed = Math.max(maxSpeed, Math.hypot(vx[s], vy[s]));
+			maxRadius = Math.max(maxRadius, store.r[s]);
+			loX = Math.min(loX, store.x[s]);
+			loY = Math.min(loY, store.y[s]);
+			hiX = Math.max(hiX, store.x[s]);
+			hiY = Math.max(hiY, store.y[s]);
+		}
+		// Both balls of a pair may move a whole tick at the limit speed, plus a pixel of rounding.
+		speedLimit = SPEEDUP * maxSpeed;
+		cellSize = (int) Math.max(1, Math.ceil(2 * maxRadius + 2 * speedLimit) + 1);
+		minX = loX;
+		minY = loY;
+		long spanX = (long) hiX - loX;
+		long spanY = (long) hiY - loY;
+		while (((spanX / cellSize) + 1) * ((spanY / cellSize) + 1) > Math.max(1024, CELLS_PER_BALL * nTracked)) {
+			cellSize *= 2;
+		}
+		cols = (int) (spanX / cellSize) + 1;
+		rows = (int) (spanY / cellSize) + 1;
+
+		int nCells = cols * rows;
+		if (cellStart.length < nCells + 1) {
+			cellStart = new int[nCells + 1];
+		} else {
+			Arrays.fill(cellStart, 0, nCells + 1, 0);
+		}
+		for (int i = 0; i < nTracked; i++) {
+			int s = tracked[i];
+			int c = ((store.y[s] - minY) / cellSize) * cols + (store.x[s] - minX) / cellSize;
+			cellOf[s] = c;
+			cellStart[c + 1]++;
+		}
+		for (int c = 0; c < nCells; c++) {
+			cellStart[c + 1] += cellStart[c];
+		}
+		if (sorted.length < nTracked) {
+			sorted = new int[tracked.length];
+		}
+		int[] fill = Arrays.copyOf(cellStart, nCells);
+		for (int i = 0; i < nTracked; i++) {
+			int s = tracked[i];
+			sorted[fill[cellOf[s]]++] = s;
+		}
+		nFast = 0;
+	}
+
+	/**
+	 * Predicts the next events of the given ball after its trajectory changed. If the ball became too fast for the
+	 * grid, it is from then on tested against every tracked ball.
+	 * @param s The slot of the ball.
+	 */
+	private void repredict(int s) {
+		predictWalls(s);
+		if (Math.hypot(vx[s], vy[s]) > speedLimit) {
+			boolean known = false;
+			for (int k = 0; k < nFast && !known; k++) {
+				known = fast[k] == s;
+			}
+			if (!known) {
+				if (nFast == fast.length) {
+					fast = Arrays.copyOf(fast, Math.max(16, 2 * nFast));
+				}
+				fast[nFast++] = s;
+			}
+			predictAll(s);
+			return;
+		}
+		int cx = cellOf[s] % cols;
+		int cy = cellOf[s] / cols;
+		for (int ny = Math.max(0, cy - 1); ny <= Math.min(rows - 1, cy + 1); ny++) {
+			for (int nx = Math.max(0, cx - 1); nx <= Math.min(cols - 1, cx + 1); nx++) {
+				int c = ny * cols + nx;
+				for (int k = cellStart[c]; k < cellStart[c + 1]; k++) {
+					predictPair(s, sorted[k]);
+				}
+			}
+		}
+		for (int k = 0; k < nFast; k++) {
+			predictPair(s, fast[k]);
+		}
+	}
+
+	/**
+	 * Predicts the collisions of the given ball with every other tracked ball.
+	 * @param s The slot of the ball.
+	 */
+	private void predictAll(int s) {
+		for (int i = 0; i < nTracked; i++) {
+			predictPair(s, tracked[i]);
+		}
+	}
+
+	/**
+	 * Predicts the next collision of the given ball with each pair of walls that it is moving towards,
+	 * if it happens before the end of the tick. A ball that is already beyond a wall and moving away from the world
+	 * collides with it immediately.
+	 * @param s The slot of the ball.
+	 */
+	private void predictWalls(int s) {
+		if (!store.hasBounds()) {
+			return;
+		}
+		int rs = store.r[s];
+		double dt = Double.POSITIVE_INFINITY;
+		if (vx[s] > 0) {
+			dt = (store.getWidth() - rs - px[s]) / vx[s];
+		} else if (vx[s] < 0) {
+			dt = (rs - px[s]) / vx[s];
+		}
+		schedule(t0[s] + Math.max(0.0, dt), s, X_WALL);
+
+		dt = Double.POSITIVE_INFINITY;
+		if (vy[s] > 0) {
+			dt = (store.getHeight() - rs - py[s]) / vy[s];
+		} else if (vy[s] < 0) {
+			dt = (rs - py[s]) / vy[s];
+		}
+		schedule(t0[s] + Math.max(0.0, dt), s, Y_WALL);
+	}
+
+	/**
+	 * Predicts the time at which two balls first touch, see CollideExactStrategy.collisionTime(), and schedules their
+	 * collision if it happens before the end of the tick. Balls that overlap and are approaching each other collide
+	 * immediately, balls that are moving apart never collide.
+	 * @param s The slot of one ball.
+	 * @param t The slot of the other ball.
+	 */
+	private void predictPair(int s, int t) {
+		if (s == t) {
+			return;
+		}
+		// Both balls at the later of their times.
+		double now = Math.max(t0[s], t0[t]);
+		double dx = (px[t] + vx[t] * (now - t0[t])) - (px[s] + vx[s] * (now - t0[s]));
+		double dy = (py[t] + vy[t] * (now - t0[t])) - (py[s] + vy[s] * (now - t0[s]));
+		double dvx = vx[t] - vx[s];
+		double dvy = vy[t] - vy[s];
+		double dvdx = dvx * dx + dvy * dy;
+		if (dvdx >= 0) {
+			return; // not approaching, which includes two idle balls
+		}
+		double dv2 = dvx * dvx + dvy * dvy;
+		double dx2 = dx * dx + dy * dy;
+		double sigma = store.r[s] + store.r[t];
+		double root2 = dvdx * dvdx - dv2 * (dx2 - sigma * sigma);
+		if (root2 < 0) {
+			return; // they pass each other
+		}
+		double dt = dx2 < sigma * sigma ? 0.0 : -(dvdx + Math.sqrt(root2)) / dv2;
+		schedule(now + dt, s, t);
+	}
+
+	/**
+	 * Adds an event to the queue if it happens before the end of the tick.
+	 * @param time The time of the event.
+	 * @param a The slot of the first ball.
+	 * @param b The slot of the second ball, X_WALL or Y_WALL.
+	 */
+	private void schedule(double time, int a, int b) {
+		if (time <= 1.0) {
+			events.add(new Event(time, a, b, count[a], b >= 0 ? count[b] : 0));
+		}
+	}
+
+	/**
+	 * Moves a ball along its trajectory to the given time.
+	 * @param s The slot of the ball.
+	 * @param time The time to move to, not before t0 of the ball.
+	 */
+	private void drift(int s, double time) {
+		px[s] += vx[s] * (time - t0[s]);
+		py[s] += vy[s] * (time - t0[s]);
+		t0[s] = time;
+	}
+
+	/**
+	 * Reflects a ball that ended the tick beyond a wall, which only happens when the event budget ran out, back into
+	 * the world as the store would.
+	 * @param s The slot of the ball.
+	 */
+	private void confine(int s) {
+		if (!store.hasBounds()) {
+			return;
+		}
+		int rs = store.r[s];
+		if (px[s] + rs > store.getWidth()) {
+			px[s] -= 2 * (px[s] - store.getWidth() + rs);
+			vx[s] = -Math.abs(vx[s]);
+		}
+		if (px[s] - rs < 0) {
+			px[s] += 2 * (rs - px[s]);
+			vx[s] = Math.abs(vx[s]);
+		}
+		if (py[s] + rs > store.getHeight()) {
+			py[s] -= 2 * (py[s] - store.getHeight() + rs);
+			vy[s] = -Math.abs(vy[s]);
+		}
+		if (py[s] - rs < 0) {
+			py[s] += 2 * (rs - py[s]);
+			vy[s] = Math.abs(vy[s]);
+		}
+	}
+
+	/**
+	 * Changes the velocities of two touching balls as in an elastic collision, using the square of the radius as the
+	 * mass of a ball, with the same impulse as CollideStrategy.
+	 * @param s The slot of one ball.
+	 * @param t The slot of the other ball.
+	 */
+	private void collide(int s, int t) {
+		double dx = px[t] - px[s];
+		double dy = py[t] - py[s];
+		double distance = Math.hypot(dx, dy);
+		if (distance == 0) {
+			return; // concentric balls have no normal
+		}
+		double nx = dx / distance;
+		double ny = dy / distance;
+		double ms = (double) store.r[s] * store.r[s];
+		double mt = (double) store.r[t] * store.r[t];
+		double reducedMass = ms * mt / (ms + mt);
+		double dvn = (vx[t] - vx[s]) * nx + (vy[t] - vy[s]) * ny;
+		double impX = 2.0 * reducedMass * dvn * nx;
+		double impY = 2.0 * reducedMass * dvn * ny;
+		vx[s] += impX / ms;
+		vy[s] += impY / ms;
+		vx[t] -= impX / mt;
+		vy[t] -= impY / mt;
+	}
+
+	/**
+	 * Enlarges the per-slot arrays to the given capacity.
+	 * @param capacity The number of slots of the store.
+	 */
+	private void ensureCapacity(int capacity) {
+		if (trackedFrame.length >= capacity) {
+			return;
+		}
+		trackedFrame = Arrays.copyOf(trackedFrame, capacity);
+		trackedOwner = Arrays.copyOf(trackedOwner, capacity);
+		steppedFrame = Arrays.copyOf(steppedFrame, capacity);
+		steppedOwner = Arrays.copyOf(steppedOwner, capacity);
+		px = Arrays.copyOf(px, capacity);
+		py = Arrays.copyOf(py, capacity);
+		vx = Arrays.copyOf(vx, capacity);
+		vy = Arrays.copyOf(vy, capacity);
+		t0 = Arrays.copyOf(t0, capacity);
+		count = Arrays.copyOf(count, capacity);
+		lastX = Arrays.copyOf(lastX, capacity);
+		lastY = Arrays.copyOf(lastY, capacity);
+		lastVx = Arrays.copyOf(lastVx, capacity);
+		lastVy = Arrays.copyOf(lastVy, capacity);
+		cellOf = Arrays.copyOf(cellOf, capacity);
+	}
+}
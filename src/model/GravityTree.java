@@ -0,0 +1,428 @@
+package model;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * A Barnes-Hut quadtree that makes the balls of a BallStore attract each other by gravity, using the square of the
+ * radius as the mass of a ball, in O(N log N) time instead of O(N^2).
+ *
+ * Balls ask to feel gravity every tick with track(). Once all the balls have updated their state, the model calls
+ * step(), which inserts the tracked balls into a quadtree, computes the total mass and the center of mass of every
+ * node bottom-up, and then computes the acceleration of every tracked ball by walking the tree: a node that is small
+ * compared to its distance from the ball, i.e. whose size divided by the distance is below the opening angle theta,
+ * is treated as a single body at its center of mass, otherwise its children are visited. A theta of 0 gives the exact
+ * O(N^2) sum; larger values are faster and less accurate.
+ *
+ * The tree is only read while the accelerations are computed, so that phase can run on all cores. The velocities are
+ * integers, so the fraction of the acceleration that does not make a whole pixel per tick is carried over to the next tick.
+ * @author Peter Dulworth (psd2), Rocky Wu (lw31)
+ */
+public class GravityTree {
+
+	/**
+	 * Null tree that does not track any ball. Used by stores that do not belong to a BallModel.
+	 */
+	public static final GravityTree NULL = new GravityTree(null) {
+		@Override
+		public void track(Ball b) {
+		}
+
+		@Override
+		public void step(boolean parallel) {
+		}
+	};
+
+	/**
+	 * The gravitational constant, in pixels^3 per mass unit per tick^2.
+	 */
+	private static final double G = 0.1;
+
+	/**
+	 * The softening length in pixels, which keeps the force finite when two balls get very close.
+	 */
+	private static final double SOFTENING = 10.0;
+
+	/**
+	 * The depth at which nodes are no longer split, so that balls at the same location share a leaf.
+	 */
+	private static final int MAX_DEPTH = 32;
+
+	/**
+	 * The number of balls whose accelerations are computed by one parallel task.
+	 */
+	private static final int CHUNK = 1024;
+
+	/**
+	 * The store whose balls attract each other.
+	 */
+	private final BallStore store;
+
+	/**
+	 * The opening angle.
+	 */
+	private volatile double theta = 0.5;
+
+	/**
+	 * The number of the current tick. A ball feels gravity in a tick if track() was called for it during that tick.
+	 */
+	private long frame = 0;
+
+	/**
+	 * The tick in which each slot was last tracked.
+	 */
+	private long[] trackedFrame = new long[0];
+
+	/**
+	 * The ball that each slot was last tracked for, to detect slots that were reused by another ball.
+	 */
+	private Ball[] trackedOwner = new Ball[0];
+
+	/**
+	 * The fraction of the acceleration of each slot that has not yet been added to its velocity.
+	 */
+	private double[] carryX = new double[0], carryY = new double[0];
+
+	/**
+	 * The slots of the balls tracked in the current tick.
+	 */
+	private int[] bodies = new int[0];
+
+	/**
+	 * The number of entries in bodies.
+	 */
+	private int nBodies = 0;
+
+	/**
+	 * The next body in the same leaf, indexed like bodies, or -1.
+	 */
+	private int[] next = new int[0];
+
+	/**
+	 * The accelerations of the bodies, indexed like bodies.
+	 */
+	private double[] ax = new double[0], ay = new double[0];
+
+	/**
+	 * The center of the square of each node.
+	 */
+	private double[] centerX = new double[0], centerY = new double[0];
+
+	/**
+	 * Half the side length of the square of each node.
+	 */
+	private double[] half = new double[0];
+
+	/**
+	 * The index of the first of the four children of each node, or -1 for a leaf.
+	 */
+	private int[] firstChild = new int[0];
+
+	/**
+	 * The first body in each leaf, or -1 for an empty leaf or an inner node.
+	 */
+	private int[] head = new int[0];
+
+	/**
+	 * The total mass of each node.
+	 */
+	private double[] mass = new double[0];
+
+	/**
+	 * The center of mass of each node.
+	 */
+	private double[] comX = new double[0], comY = new double[0];
+
+	/**
+	 * The depth of each node, with the root at 0.
+	 */
+	private int[] depth = new int[0];
+
+	/**
+	 * The number of nodes in use.
+	 */
+	private int nNodes = 0;
+
+	/**
+	 * Creates a tree over the balls of the given store.
+	 * @param store The store whose balls attract each other.
+	 */
+	GravityTree(BallStore store) {
+		this.store = store;
+	}
+
+	/**
+	 * Sets the opening angle. May be called from any thread; takes effect at the next step().
+	 * @param theta The opening angle, 0 for the exact sum. Typical values are between 0.3 and 1.
+	 */
+	public void setTheta(double theta) {
+		this.theta = Math.max(0.0, theta);
+	}
+
+	/**
+	 * @return The opening angle.
+	 */
+	public double getTheta() {
+		return theta;
+	}
+
+	/**
+	 * Makes the given ball attract and be attracted by the other tracked balls at the end of the current tick.
+	 * Normally called by the update strategy of the ball.
+	 * @param b The ball to track.
+	 */
+	public void track(Ball b) {
+		if (b.store != store) {
+			return;
+		}
+		if (trackedFrame.length < store.owners.length) {
+			int capacity = store.owners.length;
+			trackedFrame = Arrays.copyOf(trackedFrame, capacity);
+			trackedOwner = Arrays.copyOf(trackedOwner, capacity);
+			carryX = Arrays.copyOf(carryX, capacity);
+			carryY = Arrays.copyOf(carryY, capacity);
+		}
+		int s = b.slot;
+		if (trackedOwner[s] != b) { // a new ball in this slot starts without any carried acceleration
+			carryX[s] = 0.0;
+			carryY[s] = 0.0;
+		}
+		trackedFrame[s] = frame;
+		trackedOwner[s] = b;
+	}
+
+	/**
+	 * Builds the tree over the balls tracked during the current tick and accelerates each of them towards the others.
+	 * Called by the model once per tick, after the balls have updated their state.
+	 * @param parallel True to compute the accelerations on all cores.
+	 */
+	public void step(boolean parallel) {
+		store.sync();
+		collectBodies();
+		frame++;
+		if (nBodies < 2) {
+			return;
+		}
+		build();
+
+		double theta2 = theta * theta;
+		int nChunks = (nBodies + CHUNK - 1) / CHUNK;
+		IntStream chunks = IntStream.range(0, nChunks);
+		(parallel ? chunks.parallel() : chunks).forEach((k) -> {
+			int[] stack = new int[4 * MAX_DEPTH + 4];
+			for (int i = k * CHUNK; i < Math.min(nBodies, (k + 1) * CHUNK); i++) {
+				accelerate(i, theta2, stack);
+			}
+		});
+
+		// Apply in body order, so that the result does not depend on the mode.
+		for (int i = 0; i < nBodies; i++) {
+			int s = bodies[i];
+			carryX[s] += ax[i];
+			carryY[s] += ay[i];
+			int dvx = (int) carryX[s];
+			int dvy = (int) carryY[s];
+			carryX[s] -= dvx;
+			carryY[s] -= dvy;
+			if (dvx != 0 || dvy != 0) {
+				store.setVelocity(s, store.vx[s] + dvx, store.vy[s] + dvy);
+			}
+		}
+	}
+
+	/**
+	 * Collects the slots of the live balls tracked in the current tick.
+	 */
+	private void collectBodies() {
+		nBodies = 0;
+		int n = Math.min(store.size, trackedFrame.length);
+		for (int s = 0; s < n; s++) {
+			if (trackedFrame[s] != frame || trackedOwner[s] != store.owners[s] || !store.isLive(s)) {
+				continue;
+			}
+			if (nBodies == bodies.length) {
+				int capacity = Math.max(16, 2 * nBodies);
+				bodies = Arrays.copyOf(bodies, capacity);
+				next = Arrays.copyOf(next, capacity);
+				ax = Arrays.copyOf(ax, capacity);
+				ay = Arrays.copyOf(ay, capacity);
+			}
+			bodies[nBodies++] = s;
+		}
+	}
+
+	/**
+	 * Inserts every body into a new tree, then computes the mass and the center of mass of every node.
+	 */
+	private void build() {
+		int[] x = store.x, y = store.y;
+		int loX = Integer.MAX_VALUE, loY = Integer.MAX_VALUE, hiX = Integer.MIN_VALUE, hiY = Integer.MIN_VALUE;
+		for (int i = 0; i < nBodies; i++) {
+			int s = bodies[i];
+			loX = Math.min(loX, x[s]);
+			loY = Math.min(loY, y[s]);
+			hiX = Math.max(hiX, x[s]);
+			hiY = Math.max(hiY, y[s]);
+		}
+		nNodes = 0;
+		int root = newNode(0.5 * ((double) loX + hiX), 0.5 * ((double) loY + hiY),
+				0.5 * Math.max(1.0, Math.max((double) hiX - loX, (double) hiY - loY)) + 1.0, 0);
+		for (int i = 0; i < nBodies; i++) {
+			insert(root, i);
+		}
+
+		// Children are always created after their parent, so a reverse sweep visits the children first.
+		int[] r = store.r;
+		for (int n = nNodes - 1; n >= 0; n--) {
+			double m = 0, mx = 0, my = 0;
+			if (firstChild[n] < 0) {
+				for (int i = head[n]; i >= 0; i = next[i]) {
+					int s = bodies[i];
+					double mi = (double) r[s] * r[s];
+					m += mi;
+					mx += mi * x[s];
+					my += mi * y[s];
+				}
+			} else {
+				for (int c = firstChild[n]; c < firstChild[n] + 4; c++) {
+					m += mass[c];
+					mx += mass[c] * comX[c];
+					my += mass[c] * comY[c];
+				}
+			}
+			mass[n] = m;
+			comX[n] = m > 0 ? mx / m : centerX[n];
+			comY[n] = m > 0 ? my / m : centerY[n];
+		}
+	}
+
+	/**
+	 * Inserts a body into the subtree of the given node, splitting the leaf that it falls into if that leaf already
+	 * holds a body.
+	 * @param node The root of the subtree.
+	 * @param i The index of the body.
+	 */
+	private void insert(int node, int i) {
+		int s = bodies[i];
+		int bx = store.x[s];
+		int by = store.y[s];
+		next[i] = -1;
+		while (true) {
+			if (firstChild[node] >= 0) {
+				node = firstChild[node] + quadrant(node, bx, by);
+			} else if (head[node] < 0) {
+				head[node] = i;
+				return;
+			} else if (depth[node] >= MAX_DEPTH) {
+				next[i] = head[node];
+				head[node] = i;
+				return;
+			} else {
+				// split the leaf and push its body down
+				double h = 0.5 * half[node];
+				int first = newNode(centerX[node] - h, centerY[node] - h, h, depth[node] + 1);
+				newNode(centerX[node] + h, centerY[node] - h, h, depth[node] + 1);
+				newNode(centerX[node] - h, centerY[node] + h, h, depth[node] + 1);
+				newNode(centerX[node] + h, centerY[node] + h, h, depth[node] + 1);
+				firstChild[node] = first;
+				int j = head[node];
+				head[node] = -1;
+				int sj = bodies[j];
+				head[first + quadrant(node, store.x[sj], store.y[sj])] = j;
+			}
+		}
+	}
+
+	/**
+	 * @param node A node.
+	 * @param bx The x-coordinate of a point in the node.
+	 * @param by The y-coordinate of a point in the node.
+	 * @return The index, 0 to 3, of the child of the node that contains the point.
+	 */
+	private int quadrant(int node, int bx, int by) {
+		return (bx < centerX[node] ? 0 : 1) + (by < centerY[node] ? 0 : 2);
+	}
+
+	/**
+	 * Allocates an empty leaf.
+	 * @param cx The x-coordinate of the center of its square.
+	 * @param cy The y-coordinate of the center of its square.
+	 * @param h Half the side length of its square.
+	 * @param d Its depth.
+	 * @return The index of the new node.
+	 */
+	private int newNode(double cx, double cy, double h, int d) {
+		if (nNodes == firstChild.length) {
+			int capacity = Math.max(64, 2 * nNodes);
+			centerX = Arrays.copyOf(centerX, capacity);
+			centerY = Arrays.copyOf(centerY, capacity);
+			half = Arrays.copyOf(half, capacity);
+			firstChild = Arrays.copyOf(firstChild, capacity);
+			head = Arrays.copyOf(head, capacity);
+			mass = Arrays.copyOf(mass, capacity);
+			comX = Arrays.copyOf(comX, capacity);
+			comY = Arrays.copyOf(comY, capacity);
+			depth = Arrays.copyOf(depth, capacity);
+		}
+		int n = nNodes++;
+		centerX[n] = cx;
+		centerY[n] = cy;
+		half[n] = h;
+		firstChild[n] = -1;
+		head[n] = -1;
+		depth[n] = d;
+		return n;
+	}
+
+	/**
+	 * Computes the acceleration of a body by walking the tree from the root. Only reads the tree.
+	 * @param i The index of the body.
+	 * @param theta2 The square of the opening angle.
+	 * @param stack Scratch space for the nodes still to visit.
+	 */
+	private void accelerate(int i, double theta2, int[] stack) {
+		int s = bodies[i];
+		double bx = store.x[s];
+		double by = store.y[s];
+		double fx = 0, fy = 0;
+		int top = 0;
+		stack[top++] = 0;
+		while (top > 0) {
+			int n = stack[--top];
+			if (mass[n] == 0) {
+				continue;
+			}
+			if (firstChild[n] < 0) {
+				for (int j = head[n]; j >= 0; j = next[j]) {
+					if (j != i) {
+						int sj = bodies[j];
+						double mj = (double) store.r[sj] * store.r[sj];
+						double dx = store.x[sj] - bx;
+						double dy = store.y[sj] - by;
+						double d2 = dx * dx + dy * dy + SOFTENING * SOFTENING;
+						double f = mj / (d2 * Math.sqrt(d2));
+						fx += f * dx;
+						fy += f * dy;
+					}
+				}
+				continue;
+			}
+			double dx = comX[n] - bx;
+			double dy = comY[n] - by;
+			double d2 = dx * dx + dy * dy;
+			double size = 2 * half[n];
+			if (size * size < theta2 * d2) { // far enough to be a single body
+				d2 += SOFTENING * SOFTENING;
+				double f = mass[n] / (d2 * Math.sqrt(d2));
+				fx += f * dx;
+				fy += f * dy;
+			} else {
+				for (int c = firstChild[n]; c < firstChild[n] + 4; c++) {
+					stack[top++] = c;
+				}
+			}
+		}
+		ax[i] = G * fx;
+		ay[i] = G * fy;
+	}
+}
@@ -0,0 +1,28 @@
+package model;
+
+import java.awt.Graphics;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+
+/**
+ * A paint strategy that paints by filling a transformed prototype shape with the color of the host, and can therefore
+ * be batched: the BallSnapshot merges the transformed shapes of all the balls with the same strategy class and color
+ * into one path and fills it with a single call, instead of setting the color and filling a shape for every ball.
+ * @author Peter Dulworth (psd2), Rocky Wu (lw31)
+ */
+public interface IBatchPaintStrategy extends IPaintStrategy {
+
+	/**
+	 * @return The invariant prototype shape that this strategy fills.
+	 */
+	public Shape getPrototype();
+
+	/**
+	 * Sets up the transform from the prototype to the screen exactly as paint() would, but paints nothing.
+	 * @param g The Graphics context that the batch will be painted on.
+	 * @param host The host ball.
+	 * @return The transform, valid until the next call on this strategy, or null if the host cannot be batched and
+	 * must be painted with paint() instead.
+	 */
+	public AffineTransform batchXfrm(Graphics g, Ball host);
+}
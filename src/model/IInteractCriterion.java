@@ -0,0 +1,45 @@
+package model;
+
+import provided.util.dispatcher.IDispatcher;
+
+/**
+ * A symmetric "criteria for interaction" between two balls. A criteria strategy such as Overlap or Aligned offers 
+ * its criterion to its ball every tick with {@link Ball#offerCriterion(IInteractCriterion)} instead of sending a 
+ * command to every other ball itself. After all the balls have updated their state, the model tests every unordered 
+ * pair of balls in which at least one ball offered the criterion exactly once, and makes the pairs that pass interact.
+ *
+ * Criteria are grouped by class: two balls offering instances of the same class are tested once, using the criterion
+ * of the ball that is visited first.
+ * @author Peter Dulworth (psd2), Rocky Wu (lw31)
+ */
+@FunctionalInterface
+public interface IInteractCriterion {
+
+	/**
+	 * Tests whether the two balls should interact.
+	 * @param context The ball that offered this criterion.
+	 * @param other The other ball of the pair.
+	 * @return True if the balls should interact.
+	 */
+	public boolean test(Ball context, Ball other);
+
+	/**
+	 * Makes the two balls interact. By default the interact strategy of the context ball is run first, then that of the other ball.
+	 * @param context The ball that offered this criterion.
+	 * @param other The other ball of the pair.
+	 * @param disp The dispatcher that holds the balls.
+	 */
+	public default void interact(Ball context, Ball other, IDispatcher<IBallCmd> disp) {
+		context.interactWith(other, disp, true);
+		other.interactWith(context, disp, false);
+	}
+
+	/**
+	 * Whether this criterion can only hold for balls that are in contact, in which case only the pairs of neighboring 
+	 * balls found by the spatial grid need to be tested.
+	 * @return True if the criterion is local, false if every pair of balls must be tested.
+	 */
+	public default boolean isLocal() {
+		return false;
+	}
+}
@@ -0,0 +1,35 @@
+package model;
+
+/**
+ * An interaction criterion whose interaction changes the state of both balls in a way that can be computed from their 
+ * current state alone, such as an elastic collision. In sequential mode the model applies the effect of each pair and 
+ * runs its interaction before it computes the next pair. In parallel mode it computes the effect of every pair first, 
+ * without mutating any ball, then applies all the changes in a deterministic order and only then runs the interactions, 
+ * which lets the effects of local criteria be computed on all cores, see {@link BallModel#setParallel(boolean)}.
+ *
+ * An effect must only read the balls through the methods that are safe to call concurrently, i.e. 
+ * {@link Ball#getX()}, {@link Ball#getY()}, {@link Ball#getVx()}, {@link Ball#getVy()}, {@link Ball#getRadius()} and 
+ * {@link Ball#getColor()}, and must record its changes in the given PairDelta.
+ * @author Peter Dulworth (psd2), Rocky Wu (lw31)
+ */
+public interface IPairEffect extends IInteractCriterion {
+
+	/**
+	 * Computes the effect of the pair on the state of its balls.
+	 * @param context The ball that offered this effect.
+	 * @param other The other ball of the pair.
+	 * @param delta The record to add the changes to the state of the balls to.
+	 * @return True if the balls interact, in which case the changes are applied and interact() is run afterwards.
+	 */
+	public boolean effect(Ball context, Ball other, PairDelta delta);
+
+	/**
+	 * By default a pair passes the criterion if it has an effect.
+	 */
+	@Override
+	public default boolean test(Ball context, Ball other) {
+		PairDelta delta = new PairDelta();
+		delta.begin(context, other);
+		return effect(context, other, delta);
+	}
+}
@@ -0,0 +1,102 @@
+package model;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+
+/**
+ * The level-of-detail policy of the renderer, which trades detail for frame time as the balls get smaller and more
+ * numerous. All the thresholds follow from one quality knob between 0 (fastest) and 1 (most detailed):
+ * <ul>
+ * <li>Balls no larger than the pixel radius are drawn as a filled square in their color, without their paint strategy.</li>
+ * <li>Balls no larger than the simplify radius are painted without rotation and without paintCfg().</li>
+ * <li>Above the heavy load, antialiasing and quality rendering hints are turned off, and the balls whose cells are all
+ * overlapped by more than the maximum overdraw of balls painted after them are skipped, since they can hardly be seen.</li>
+ * </ul>
+ * At full quality the simplify radius equals the pixel radius, so every ball drawn with its paint strategy keeps its
+ * rotation and paintCfg(); only balls of at most one pixel radius are drawn as squares, and the heavy load measures
+ * apply only beyond 20000 balls.
+ * @author Peter Dulworth (psd2), Rocky Wu (lw31)
+ */
+public class LevelOfDetail {
+
+	/**
+	 * Singleton instance of this class.
+	 */
+	public static final LevelOfDetail Singleton = new LevelOfDetail();
+
+	/**
+	 * The width and height of the cells that overdraw is counted in, in pixels.
+	 */
+	public static final int CELL = 16;
+
+	/**
+	 * The quality knob.
+	 */
+	private volatile double quality = 1.0;
+
+	/**
+	 * Private constructor for use by the Singleton only.
+	 */
+	private LevelOfDetail() {
+	}
+
+	/**
+	 * Sets the quality knob.
+	 * @param quality The quality, from 0 for the fastest rendering to 1 for the most detailed. Clamped to that range.
+	 */
+	public void setQuality(double quality) {
+		this.quality = Math.max(0.0, Math.min(1.0, quality));
+	}
+
+	/**
+	 * @return The quality, between 0 and 1.
+	 */
+	public double getQuality() {
+		return quality;
+	}
+
+	/**
+	 * @return The radius at or below which a ball is drawn as a filled square: 1 at full quality, 4 at the lowest.
+	 */
+	public int getPixelRadius() {
+		return (int) Math.round(1 + 3 * (1 - quality));
+	}
+
+	/**
+	 * @return The radius at or below which a ball is painted unrotated and without paintCfg(): 1 at full quality, the same
+	 * as the pixel radius so that no ball painted by its strategy is simplified, and 12 at the lowest.
+	 */
+	public int getSimplifyRadius() {
+		return (int) Math.round(1 + 11 * (1 - quality));
+	}
+
+	/**
+	 * @return The number of balls above which the renderer is under heavy load: 20000 at full quality, 2000 at the lowest.
+	 */
+	public int getHeavyLoad() {
+		return (int) Math.round(2000 + 18000 * quality);
+	}
+
+	/**
+	 * @return The number of balls painted after a ball over each of its cells above which the ball is skipped under heavy
+	 * load: 200 at full quality, 50 at the lowest.
+	 */
+	public int getMaxOverdraw() {
+		return (int) Math.round(50 + 150 * quality);
+	}
+
+	/**
+	 * Turns off antialiasing and asks for speed over quality in the rendering, interpolation and compositing of the
+	 * given Graphics context, for painting under heavy load.
+	 * @param g The Graphics context to paint on.
+	 */
+	public void applyFastHints(Graphics2D g) {
+		g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_OFF);
+		g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_OFF);
+		g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_SPEED);
+		g.setRenderingHint(RenderingHints.KEY_COLOR_RENDERING, RenderingHints.VALUE_COLOR_RENDER_SPEED);
+		g.setRenderingHint(RenderingHints.KEY_ALPHA_INTERPOLATION, RenderingHints.VALUE_ALPHA_INTERPOLATION_SPEED);
+		g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+		g.setRenderingHint(RenderingHints.KEY_DITHERING, RenderingHints.VALUE_DITHER_DISABLE);
+	}
+}
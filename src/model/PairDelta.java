@@ -0,0 +1,226 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Collects the changes that pairwise effects, see {@link IPairEffect}, make to the state of balls, so that the effects can 
+ * be computed without mutating any ball, possibly on several threads at once, and then be applied in one deterministic pass.
+ *
+ * Each record holds the two balls of a pair and the changes to their locations and velocities. An effect adds to the
+ * record of the current pair with the move and accelerate methods. In sequential mode the model instead applies the
+ * record of each pair as soon as it is computed, see isDeferred().
+ * @author Peter Dulworth (psd2), Rocky Wu (lw31)
+ */
+public class PairDelta {
+
+	/**
+	 * The number of ints of changes per record: dx, dy, dvx and dvy of the context ball, then of the other ball.
+	 */
+	private static final int STRIDE = 8;
+
+	/**
+	 * The context ball of each record.
+	 */
+	private Ball[] contexts = new Ball[16];
+
+	/**
+	 * The other ball of each record.
+	 */
+	private Ball[] others = new Ball[16];
+
+	/**
+	 * The changes of each record, STRIDE ints per record.
+	 */
+	private int[] d = new int[16 * STRIDE];
+
+	/**
+	 * The number of committed records. The record at index n is the one being filled.
+	 */
+	private int n = 0;
+
+	/**
+	 * Whether the records are applied only after all of them have been computed.
+	 */
+	private final boolean deferred;
+
+	/**
+	 * Creates a record that is applied after all the pairs have been computed, as in parallel mode.
+	 */
+	public PairDelta() {
+		this(true);
+	}
+
+	/**
+	 * Constructor.
+	 * @param deferred True if the records are applied after all of them have been computed from the same state, false
+	 * if each record is applied with applyCurrent() before the next one is computed.
+	 */
+	PairDelta(boolean deferred) {
+		this.deferred = deferred;
+	}
+
+	/**
+	 * @return True if the changes are only applied once the effects of all the pairs have been computed from the same
+	 * state, as in parallel mode, so that an effect cannot see the changes made by the other pairs; false if the changes
+	 * of each pair are applied before the next pair is computed, as in sequential mode.
+	 */
+	public boolean isDeferred() {
+		return deferred;
+	}
+
+	/**
+	 * Starts a new record for the given pair, discarding any uncommitted record.
+	 * @param context The ball whose effect is computed.
+	 * @param other The other ball of the pair.
+	 */
+	void begin(Ball context, Ball other) {
+		if (n == contexts.length) {
+			contexts = Arrays.copyOf(contexts, 2 * n);
+			others = Arrays.copyOf(others, 2 * n);
+			d = Arrays.copyOf(d, 2 * n * STRIDE);
+		}
+		contexts[n] = context;
+		others[n] = other;
+		Arrays.fill(d, n * STRIDE, (n + 1) * STRIDE, 0);
+	}
+
+	/**
+	 * Keeps the current record.
+	 */
+	void commit() {
+		n++;
+	}
+
+	/**
+	 * Moves the context ball of the current pair.
+	 * @param dx The change in x-coordinate.
+	 * @param dy The change in y-coordinate.
+	 */
+	public void moveContext(int dx, int dy) {
+		d[n * STRIDE] += dx;
+		d[n * STRIDE + 1] += dy;
+	}
+
+	/**
+	 * Changes the velocity of the context ball of the current pair.
+	 * @param dvx The change in the x-component of the velocity.
+	 * @param dvy The change in the y-component of the velocity.
+	 */
+	public void accelerateContext(int dvx, int dvy) {
+		d[n * STRIDE + 2] += dvx;
+		d[n * STRIDE + 3] += dvy;
+	}
+
+	/**
+	 * Moves the other ball of the current pair.
+	 * @param dx The change in x-coordinate.
+	 * @param dy The change in y-coordinate.
+	 */
+	public void moveOther(int dx, int dy) {
+		d[n * STRIDE + 4] += dx;
+		d[n * STRIDE + 5] += dy;
+	}
+
+	/**
+	 * Changes the velocity of the other ball of the current pair.
+	 * @param dvx The change in the x-component of the velocity.
+	 * @param dvy The change in the y-component of the velocity.
+	 */
+	public void accelerateOther(int dvx, int dvy) {
+		d[n * STRIDE + 6] += dvx;
+		d[n * STRIDE + 7] += dvy;
+	}
+
+	/**
+	 * @return The number of committed records.
+	 */
+	int size() {
+		return n;
+	}
+
+	/**
+	 * @param i The index of a record.
+	 * @return The context ball of the record.
+	 */
+	Ball getContext(int i) {
+		return contexts[i];
+	}
+
+	/**
+	 * @param i The index of a record.
+	 * @return The other ball of the record.
+	 */
+	Ball getOther(int i) {
+		return others[i];
+	}
+
+	/**
+	 * Counts, for every ball of the given store, the number of committed records that change its velocity.
+	 * @param store The store of the balls.
+	 * @param counts The counts to increment, indexed by slot.
+	 */
+	void countContacts(BallStore store, int[] counts) {
+		for (int i = 0; i < n; i++) {
+			if (d[i * STRIDE + 2] != 0 || d[i * STRIDE + 3] != 0) {
+				count(store, contexts[i], counts);
+			}
+			if (d[i * STRIDE + 6] != 0 || d[i * STRIDE + 7] != 0) {
+				count(store, others[i], counts);
+			}
+		}
+	}
+
+	/**
+	 * Increments the count of the given ball if it lives in the given store.
+	 * @param store The store of the balls.
+	 * @param b The ball.
+	 * @param counts The counts, indexed by slot.
+	 */
+	private void count(BallStore store, Ball b, int[] counts) {
+		if (b.store == store) {
+			counts[b.slot]++;
+		}
+	}
+
+	/**
+	 * Adds the changes of the current, uncommitted record to the state of its balls, unscaled. Used in sequential mode,
+	 * where each pair sees the changes of the pairs before it.
+	 */
+	void applyCurrent() {
+		applyTo(null, contexts[n], n * STRIDE, null);
+		applyTo(null, others[n], n * STRIDE + 4, null);
+	}
+
+	/**
+	 * Adds the changes of every committed record to the state of its balls, in record order. Used in parallel mode.
+	 * Since all the records were computed from the same state, a ball in contact with several others would receive the 
+	 * full change in velocity of each contact; instead the change in velocity of each record is divided by the ball's
+	 * number of contacts, which keeps dense clusters from gaining energy.
+	 * @param store The store of the balls.
+	 * @param counts The number of contacts of each ball of the store, see countContacts().
+	 */
+	void apply(BallStore store, int[] counts) {
+		for (int i = 0; i < n; i++) {
+			applyTo(store, contexts[i], i * STRIDE, counts);
+			applyTo(store, others[i], i * STRIDE + 4, counts);
+		}
+	}
+
+	/**
+	 * Adds four changes to the state of a ball.
+	 * @param store The store of the balls, or null to apply the changes unscaled.
+	 * @param b The ball.
+	 * @param k The index of the first of the changes.
+	 * @param counts The number of contacts of each ball of the store, or null to apply the changes unscaled.
+	 */
+	private void applyTo(BallStore store, Ball b, int k, int[] counts) {
+		BallStore s = b.store;
+		if (d[k] != 0 || d[k + 1] != 0) {
+			s.setLocation(b.slot, s.locX(b.slot) + d[k], s.locY(b.slot) + d[k + 1]);
+		}
+		if (d[k + 2] != 0 || d[k + 3] != 0) {
+			int contacts = null != counts && s == store ? Math.max(1, counts[b.slot]) : 1;
+			s.setVelocity(b.slot, s.velX(b.slot) + Math.round((float) d[k + 2] / contacts), s.velY(b.slot) + Math.round((float) d[k + 3] / contacts));
+		}
+	}
+}
@@ -0,0 +1,322 @@
+package model;
+
+import java.util.Arrays;
+import java.util.function.BiPredicate;
+
+import provided.util.dispatcher.IDispatcher;
+import provided.util.dispatcher.IObserver;
+import provided.util.dispatcher.IPairCmd;
+import util.MeteredDispatcher;
+
+/**
+ * A uniform-grid spatial index (broadphase) over the balls of a BallStore. The grid is rebuilt once per tick
+ * and lets distance-based strategies such as Overlap and Collide send their command only to the balls that
+ * could possibly be in contact with the context ball instead of to every ball in the dispatcher.
+ *
+ * The slots of the live balls are bucketed by a counting sort into square cells whose side is large enough that any ball that
+ * can touch the context ball during the tick lies in the 3x3 block of cells around it.
+ *
+ * The grid delivers the commands to the balls directly, bypassing the dispatcher; when the dispatcher it is given is a
+ * MeteredDispatcher, the messages and pairs are reported to it so that the traffic still shows up in its counts.
+ * @author Peter Dulworth (psd2), Rocky Wu (lw31)
+ */
+public class SpatialGrid {
+
+	/**
+	 * Null grid that has no spatial information and thus simply broadcasts to the whole dispatcher.
+	 * Used by balls that do not live in a BallModel.
+	 */
+	public static final SpatialGrid NULL = new SpatialGrid(null) {
+		@Override
+		public void rebuild() {
+		}
+
+		@Override
+		public void updateNeighbors(Ball context, IDispatcher<IBallCmd> disp, IBallCmd cmd) {
+			disp.updateAll(cmd);
+		}
+
+		@Override
+		public void updatePairs(IDispatcher<IBallCmd> disp, BiPredicate<IObserver<IBallCmd>, IObserver<IBallCmd>> filter,
+				IPairCmd<IBallCmd> cmd) {
+			disp.updateAllPairs(filter, cmd);
+		}
+	};
+
+	/**
+	 * Upper bound on the number of cells per ball, so that a sparse world does not allocate a huge grid.
+	 */
+	private static final int CELLS_PER_BALL = 4;
+
+	/**
+	 * The column and row offsets of the neighbor cells that are paired with a cell, half of the 3x3 block around it,
+	 * so that each pair of adjacent cells is visited once.
+	 */
+	private static final int[][] FORWARD = { { 1, 0 }, { -1, 1 }, { 0, 1 }, { 1, 1 } };
+
+	/**
+	 * The store whose balls are indexed.
+	 */
+	private final BallStore store;
+
+	/**
+	 * The slots of the live balls at the last rebuild, in slot order.
+	 */
+	private int[] live = new int[64];
+
+	/**
+	 * The slots sorted by the cell they occupy. The slots of cell c are at indices cellStart[c] to cellStart[c+1]-1.
+	 */
+	private int[] sorted = new int[64];
+
+	/**
+	 * The cell index of each live ball, computed during the rebuild.
+	 */
+	private int[] cellOf = new int[64];
+
+	/**
+	 * Prefix sums of the cell populations.
+	 */
+	private int[] cellStart = new int[2];
+
+	/**
+	 * The number of balls in the grid.
+	 */
+	private int count = 0;
+
+	/**
+	 * The coordinates of the top left corner of the grid.
+	 */
+	private int minX, minY;
+
+	/**
+	 * The side length of a cell.
+	 */
+	private int cellSize = 1;
+
+	/**
+	 * The number of columns and rows of cells.
+	 */
+	private int cols = 0, rows = 0;
+
+	/**
+	 * The largest radius of any ball in the grid.
+	 */
+	private int maxRadius = 0;
+
+	/**
+	 * Extra search distance that covers the motion of the balls since the grid was built.
+	 */
+	private int slack = 0;
+
+	/**
+	 * Creates a grid over the balls of the given store.
+	 * @param store The store to index.
+	 */
+	SpatialGrid(BallStore store) {
+		this.store = store;
+	}
+
+	/**
+	 * Buckets all the live balls of the store into their cells. Must be called once per tick, before any query.
+	 */
+	public void rebuild() {
+		store.sync();
+		int[] x = store.x, y = store.y, vx = store.vx, vy = store.vy, r = store.r;
+		if (live.length < store.size) {
+			int n = Math.max(store.size, 2 * live.length);
+			live = new int[n];
+			sorted = new int[n];
+			cellOf = new int[n];
+		}
+		count = 0;
+		cols = rows = 0;
+		maxRadius = 0;
+		slack = 0;
+
+		// Find the live balls and the extents of the population.
+		int maxSpeed = 0;
+		int loX = Integer.MAX_VALUE, loY = Integer.MAX_VALUE, hiX = Integer.MIN_VALUE, hiY = Integer.MIN_VALUE;
+		for (int s = 0; s < store.size; s++) {
+			if (!store.isLive(s)) {
+				continue;
+			}
+			live[count++] = s;
+			loX = Math.min(loX, x[s]);
+			loY = Math.min(loY, y[s]);
+			hiX = Math.max(hiX, x[s]);
+			hiY = Math.max(hiY, y[s]);
+			maxRadius = Math.max(maxRadius, r[s]);
+			maxSpeed = Math.max(maxSpeed, Math.abs(vx[s]) + Math.abs(vy[s]));
+		}
+		if (count == 0) {
+			return;
+		}
+
+		// Both balls of a pair may move once before they are compared, plus a pixel of rounding.
+		slack = 2 * maxSpeed + 1;
+		cellSize = Math.max(1, 2 * maxRadius + slack);
+		minX = loX;
+		minY = loY;
+		long spanX = (long) hiX - loX;
+		long spanY = (long) hiY - loY;
+		while (((spanX / cellSize) + 1) * ((spanY / cellSize) + 1) > Math.max(1024, CELLS_PER_BALL * count)) {
+			cellSize *= 2;
+		}
+		cols = (int) (spanX / cellSize) + 1;
+		rows = (int) (spanY / cellSize) + 1;
+
+		// Counting sort of the slots by cell.
+		int nCells = cols * rows;
+		if (cellStart.length < nCells + 1) {
+			cellStart = new int[nCells + 1];
+		} else {
+			Arrays.fill(cellStart, 0, nCells + 1, 0);
+		}
+		for (int i = 0; i < count; i++) {
+			int s = live[i];
+			int c = ((y[s] - minY) / cellSize) * cols + (x[s] - minX) / cellSize;
+			cellOf[i] = c;
+			cellStart[c + 1]++;
+		}
+		for (int c = 0; c < nCells; c++) {
+			cellStart[c + 1] += cellStart[c];
+		}
+		int[] fill = Arrays.copyOf(cellStart, nCells);
+		for (int i = 0; i < count; i++) {
+			sorted[fill[cellOf[i]]++] = live[i];
+		}
+	}
+
+	/**
+	 * Sends the given command to every ball in the grid that could be in contact with the context ball,
+	 * i.e. that is within the context's radius plus the largest radius in the grid, including the context ball itself.
+	 * Balls killed since the last rebuild are skipped and balls added since the last rebuild are not found.
+	 * The command is processed by each ball exactly as if it had been sent by disp.updateAll(cmd), so a command written
+	 * for updateAll can be used unchanged.
+	 * @param context The ball whose neighbors are desired.
+	 * @param disp The dispatcher that is passed on to the command.
+	 * @param cmd The command to send to the neighbors.
+	 */
+	public void updateNeighbors(Ball context, IDispatcher<IBallCmd> disp, IBallCmd cmd) {
+		if (count == 0) {
+			return;
+		}
+		int reach = context.getRadius() + maxRadius + slack;
+		int x = context.getLocation().x - minX;
+		int y = context.getLocation().y - minY;
+		int cx0 = Math.max(0, Math.floorDiv(x - reach, cellSize));
+		int cx1 = Math.min(cols - 1, Math.floorDiv(x + reach, cellSize));
+		int cy0 = Math.max(0, Math.floorDiv(y - reach, cellSize));
+		int cy1 = Math.min(rows - 1, Math.floorDiv(y + reach, cellSize));
+
+		int messages = 0;
+		for (int cy = cy0; cy <= cy1; cy++) {
+			for (int cx = cx0; cx <= cx1; cx++) {
+				int c = cy * cols + cx;
+				for (int k = cellStart[c]; k < cellStart[c + 1]; k++) {
+					int s = sorted[k];
+					if (store.isLive(s)) {
+						messages++;
+						store.owners[s].update(disp, cmd);
+					}
+				}
+			}
+		}
+		count(disp, messages, 0);
+	}
+
+	/**
+	 * Applies the given command once to every unordered pair of distinct balls in the grid that could be in contact, 
+	 * i.e. that lie in the same or in adjacent cells, and that pass the given filter. Balls killed since the last rebuild 
+	 * are skipped. This is the broadphase counterpart of IDispatcher.updateAllPairs() for local criteria.
+	 * @param disp The dispatcher that is passed on to the command.
+	 * @param filter The test that a pair must pass for the command to be applied.
+	 * @param cmd The command to apply to each pair.
+	 */
+	public void updatePairs(IDispatcher<IBallCmd> disp, BiPredicate<IObserver<IBallCmd>, IObserver<IBallCmd>> filter,
+			IPairCmd<IBallCmd> cmd) {
+		updatePairs(0, rows, disp, filter, cmd);
+	}
+
+	/**
+	 * @return The number of rows of cells, see {@link #updatePairs(int, int, IDispatcher, BiPredicate, IPairCmd)}.
+	 */
+	public int getRows() {
+		return rows;
+	}
+
+	/**
+	 * Like {@link #updatePairs(IDispatcher, BiPredicate, IPairCmd)}, but only visits the pairs whose first ball lies in 
+	 * the given band of rows of cells. Every pair is visited by exactly one band, and the grid itself is only read, 
+	 * so disjoint bands can be visited on different threads as long as the command does not mutate any ball.
+	 * @param row0 The first row of the band.
+	 * @param row1 One past the last row of the band.
+	 * @param disp The dispatcher that is passed on to the command.
+	 * @param filter The test that a pair must pass for the command to be applied.
+	 * @param cmd The command to apply to each pair.
+	 */
+	public void updatePairs(int row0, int row1, IDispatcher<IBallCmd> disp, 
+			BiPredicate<IObserver<IBallCmd>, IObserver<IBallCmd>> filter, IPairCmd<IBallCmd> cmd) {
+		int pairs = 0;
+		for (int cy = row0; cy < Math.min(row1, rows); cy++) {
+			for (int cx = 0; cx < cols; cx++) {
+				int c = cy * cols + cx;
+				for (int k = cellStart[c]; k < cellStart[c + 1]; k++) {
+					int s = sorted[k];
+					// the rest of the same cell
+					for (int k2 = k + 1; k2 < cellStart[c + 1]; k2++) {
+						pairs += pair(s, sorted[k2], disp, filter, cmd);
+					}
+					// the forward neighbor cells
+					for (int[] d : FORWARD) {
+						int nx = cx + d[0];
+						int ny = cy + d[1];
+						if (nx < 0 || nx >= cols || ny >= rows) {
+							continue;
+						}
+						int n = ny * cols + nx;
+						for (int k2 = cellStart[n]; k2 < cellStart[n + 1]; k2++) {
+							pairs += pair(s, sorted[k2], disp, filter, cmd);
+						}
+					}
+				}
+			}
+		}
+		count(disp, 0, pairs);
+	}
+
+	/**
+	 * Applies the command to the balls in the two given slots if both are alive and they pass the filter.
+	 * @param s The slot of one ball.
+	 * @param t The slot of the other ball.
+	 * @param disp The dispatcher that is passed on to the command.
+	 * @param filter The test that the pair must pass.
+	 * @param cmd The command to apply.
+	 * @return 1 if the command was applied, 0 otherwise.
+	 */
+	private int pair(int s, int t, IDispatcher<IBallCmd> disp, BiPredicate<IObserver<IBallCmd>, IObserver<IBallCmd>> filter,
+			IPairCmd<IBallCmd> cmd) {
+		if (store.isLive(s) && store.isLive(t)) {
+			Ball a = store.owners[s];
+			Ball b = store.owners[t];
+			if (filter.test(a, b)) {
+				cmd.apply(a, b, disp);
+				return 1;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Reports the messages and pairs that the grid delivered to the meter of the dispatcher, if it has one.
+	 * @param disp The dispatcher that was passed on to the commands.
+	 * @param messages The number of messages delivered.
+	 * @param pairs The number of pairs that the command was applied to.
+	 */
+	private static void count(IDispatcher<IBallCmd> disp, int messages, int pairs) {
+		if (disp instanceof MeteredDispatcher) {
+			((MeteredDispatcher<IBallCmd>) disp).countDirect(messages, pairs);
+		}
+	}
+}
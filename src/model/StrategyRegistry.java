@@ -0,0 +1,208 @@
+package model;
+
+import java.io.IOException;
+import java.lang.module.ModuleReader;
+import java.lang.module.ResolvedModule;
+import java.lang.reflect.Modifier;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Stream;
+
+/**
+ * An index of the update and paint strategies that can be made from a short name, built once at startup by listing
+ * the classes of the model.strategy and model.paint.strategy packages. A strategy is indexed if its class is public,
+ * concrete, implements the strategy interface and has a public no-parameter constructor.
+ *
+ * The classes are listed from the module of the application when it runs as a named module, otherwise from the
+ * directory or jar file that it was loaded from. If neither can be listed the index is empty and isIndexed() is false,
+ * in which case the BallModel falls back to probing the class loader for each name, as it did before.
+ * @author Peter Dulworth (psd2), Rocky Wu (lw31)
+ */
+public class StrategyRegistry {
+
+	/**
+	 * Singleton instance of this class.
+	 */
+	public static final StrategyRegistry Singleton = new StrategyRegistry();
+
+	/**
+	 * The package of the update strategies.
+	 */
+	public static final String UPDATE_PACKAGE = "model.strategy";
+
+	/**
+	 * The package of the paint strategies.
+	 */
+	public static final String PAINT_PACKAGE = "model.paint.strategy";
+
+	/**
+	 * The update strategy classes, by short name, e.g. "Straight" for model.strategy.StraightStrategy.
+	 */
+	private final Map<String, String> updateStrategies;
+
+	/**
+	 * The paint strategy classes, by short name, e.g. "Ball" for model.paint.strategy.BallPaintStrategy.
+	 */
+	private final Map<String, String> paintStrategies;
+
+	/**
+	 * Whether the strategy packages could be listed.
+	 */
+	private final boolean indexed;
+
+	/**
+	 * Private constructor for use by the Singleton only. Lists and indexes the strategy packages.
+	 */
+	private StrategyRegistry() {
+		List<String> updateClasses = listClasses(UPDATE_PACKAGE);
+		List<String> paintClasses = listClasses(PAINT_PACKAGE);
+		indexed = null != updateClasses && null != paintClasses;
+		updateStrategies = index(updateClasses, "Strategy", IUpdateStrategy.class);
+		paintStrategies = index(paintClasses, "PaintStrategy", IPaintStrategy.class);
+	}
+
+	/**
+	 * @return True if the strategy packages could be listed, so that a name that is not in the index names no strategy.
+	 */
+	public boolean isIndexed() {
+		return indexed;
+	}
+
+	/**
+	 * @param shortName The short name of an update strategy, e.g. "Straight".
+	 * @return The fully qualified name of its class, or null if it is not indexed.
+	 */
+	public String findUpdateStrategy(String shortName) {
+		return updateStrategies.get(shortName);
+	}
+
+	/**
+	 * @param shortName The short name of a paint strategy, e.g. "Ball".
+	 * @return The fully qualified name of its class, or null if it is not indexed.
+	 */
+	public String findPaintStrategy(String shortName) {
+		return paintStrategies.get(shortName);
+	}
+
+	/**
+	 * @return The short names of all the indexed update strategies, in alphabetical order.
+	 */
+	public List<String> getUpdateStrategyNames() {
+		return Collections.unmodifiableList(new ArrayList<String>(updateStrategies.keySet()));
+	}
+
+	/**
+	 * @return The short names of all the indexed paint strategies, in alphabetical order.
+	 */
+	public List<String> getPaintStrategyNames() {
+		return Collections.unmodifiableList(new ArrayList<String>(paintStrategies.keySet()));
+	}
+
+	/**
+	 * Indexes the classes that are instantiable strategies of the given type by their short name.
+	 * @param classNames The fully qualified names of the classes of a package, or null if it could not be listed.
+	 * @param suffix The suffix that the short name leaves off.
+	 * @param type The strategy interface.
+	 * @return The index, sorted by short name.
+	 */
+	private static Map<String, String> index(List<String> classNames, String suffix, Class<?> type) {
+		Map<String, String> index = new TreeMap<String, String>();
+		if (null == classNames) {
+			return index;
+		}
+		for (String className : classNames) {
+			String simpleName = className.substring(className.lastIndexOf('.') + 1);
+			if (!simpleName.endsWith(suffix) || simpleName.length() == suffix.length()) {
+				continue;
+			}
+			try {
+				Class<?> c = Class.forName(className, false, StrategyRegistry.class.getClassLoader());
+				int mod = c.getModifiers();
+				if (Modifier.isPublic(mod) && !Modifier.isAbstract(mod) && !c.isInterface() && type.isAssignableFrom(c)
+						&& Modifier.isPublic(c.getConstructor().getModifiers())) {
+					index.put(simpleName.substring(0, simpleName.length() - suffix.length()), className);
+				}
+			} catch (ReflectiveOperationException | LinkageError e) {
+				// not an instantiable strategy
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * Lists the top-level classes of a package of this application.
+	 * @param pkg The name of the package.
+	 * @return The fully qualified names of the classes, or null if the package could not be listed.
+	 */
+	private static List<String> listClasses(String pkg) {
+		String dir = pkg.replace('.', '/') + "/";
+		try (Stream<String> resources = listResources()) {
+			if (null == resources) {
+				return null;
+			}
+			List<String> classNames = new ArrayList<String>();
+			resources.forEach((name) -> {
+				if (name.startsWith(dir) && name.endsWith(".class") && name.indexOf('/', dir.length()) < 0
+						&& name.indexOf('$') < 0 && !name.endsWith("package-info.class")) {
+					classNames.add(name.substring(0, name.length() - ".class".length()).replace('/', '.'));
+				}
+			});
+			return classNames;
+		} catch (IOException | URISyntaxException | RuntimeException e) {
+			System.err.println("StrategyRegistry: cannot list package " + pkg + "\n" + e);
+			return null;
+		}
+	}
+
+	/**
+	 * Lists the resources of this application, as '/'-separated paths.
+	 * @return The stream of the resource names, which must be closed, or null if they cannot be listed.
+	 * @throws IOException If the module, directory or jar file cannot be read.
+	 * @throws URISyntaxException If the location of the application is not a valid URI.
+	 */
+	private static Stream<String> listResources() throws IOException, URISyntaxException {
+		Module module = StrategyRegistry.class.getModule();
+		if (module.isNamed() && null != module.getLayer()) {
+			Optional<ResolvedModule> resolved = module.getLayer().configuration().findModule(module.getName());
+			if (resolved.isPresent()) {
+				ModuleReader reader = resolved.get().reference().open();
+				return reader.list().onClose(() -> {
+					try {
+						reader.close();
+					} catch (IOException e) {
+						// nothing left to release
+					}
+				});
+			}
+		}
+		CodeSource source = StrategyRegistry.class.getProtectionDomain().getCodeSource();
+		URL location = null == source ? null : source.getLocation();
+		if (null == location || !"file".equals(location.getProtocol())) {
+			return null;
+		}
+		Path root = Paths.get(location.toURI());
+		if (Files.isDirectory(root)) {
+			return Files.walk(root).filter(Files::isRegularFile).map((p) -> root.relativize(p).toString().replace('\\', '/'));
+		}
+		JarFile jar = new JarFile(root.toFile());
+		return jar.stream().map(JarEntry::getName).onClose(() -> {
+			try {
+				jar.close();
+			} catch (IOException e) {
+				// nothing left to release
+			}
+		});
+	}
+}
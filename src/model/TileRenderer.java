@@ -0,0 +1,134 @@
+package model;
+
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Renders a BallSnapshot into a BufferedImage on all cores. The image is split into square tiles and every ball is
+ * assigned to the tiles that its bounds overlap. The tiles are then painted concurrently on the common fork-join pool,
+ * each through its own Graphics object clipped to the tile, so a ball that straddles tiles is painted once into each of
+ * them and the tiles together make up the whole frame.
+ *
+ * Within a tile the balls are painted in snapshot order, so balls overlap the same way as when painting sequentially.
+ * @author Peter Dulworth (psd2), Rocky Wu (lw31)
+ */
+public class TileRenderer {
+
+	/**
+	 * The width and height of a tile, in pixels.
+	 */
+	private static final int TILE = 128;
+
+	/**
+	 * The bounds of a ball reach this many radii from its center. The paint strategies scale a prototype of about unit
+	 * radius by the radius of the ball, but the image strategies with the default fill factor paint an image twice that
+	 * size, whose corners reach almost three radii out when it is rotated.
+	 */
+	private static final int REACH = 3;
+
+	/**
+	 * The frame that the tiles are painted into, reused as long as the size does not change.
+	 */
+	private BufferedImage frame = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+
+	/**
+	 * The first position in order of the balls of each tile, plus one entry for the end of the last tile.
+	 */
+	private int[] tileStart = new int[1];
+
+	/**
+	 * The indices of the balls of every tile, tile by tile.
+	 */
+	private int[] order = new int[0];
+
+	/**
+	 * Renders the given snapshot into the frame. Must only be called from one thread at a time.
+	 * @param snap The snapshot to render.
+	 * @param width The width of the frame.
+	 * @param height The height of the frame.
+	 * @param background The color to clear the frame to.
+	 * @param component The component that the frame is drawn on, given to the paint strategies as the ball's container.
+	 * @param ahead The fraction of a tick to move the balls ahead by, see BallSnapshot.paint().
+	 * @return The rendered frame, valid until the next call.
+	 */
+	public BufferedImage render(BallSnapshot snap, int width, int height, Color background, Component component, double ahead) {
+		width = Math.max(1, width);
+		height = Math.max(1, height);
+		if (frame.getWidth() != width || frame.getHeight() != height) {
+			frame = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		}
+		int cols = (width + TILE - 1) / TILE;
+		int rows = (height + TILE - 1) / TILE;
+		bin(snap, cols, rows, ahead);
+
+		IntStream tiles = IntStream.range(0, cols * rows);
+		(cols * rows > 1 ? tiles.parallel() : tiles).forEach((t) -> {
+			int x0 = (t % cols) * TILE;
+			int y0 = (t / cols) * TILE;
+			Graphics2D g = frame.createGraphics();
+			try {
+				g.clipRect(x0, y0, TILE, TILE);
+				g.setColor(background);
+				g.fillRect(x0, y0, TILE, TILE);
+				snap.paint(g, component, ahead, order, tileStart[t], tileStart[t + 1]);
+			} finally {
+				g.dispose();
+			}
+		});
+		return frame;
+	}
+
+	/**
+	 * Assigns every ball to the tiles that its bounds overlap, in two passes: the first counts the balls of every tile,
+	 * the second fills in their indices in snapshot order.
+	 * @param snap The snapshot to render.
+	 * @param cols The number of columns of tiles.
+	 * @param rows The number of rows of tiles.
+	 * @param ahead The fraction of a tick to move the balls ahead by.
+	 */
+	private void bin(BallSnapshot snap, int cols, int rows, double ahead) {
+		int nTiles = cols * rows;
+		if (tileStart.length < nTiles + 1) {
+			tileStart = new int[nTiles + 1];
+		}
+		Arrays.fill(tileStart, 0, nTiles + 1, 0);
+		int n = snap.size();
+		int[] bounds = new int[4 * n];
+		for (int i = 0; i < n; i++) {
+			int x = snap.xAt(i, ahead);
+			int y = snap.yAt(i, ahead);
+			int reach = REACH * snap.radius(i) + 1;
+			int c0 = Math.max(0, Math.floorDiv(x - reach, TILE));
+			int c1 = Math.min(cols - 1, Math.floorDiv(x + reach, TILE));
+			int r0 = Math.max(0, Math.floorDiv(y - reach, TILE));
+			int r1 = Math.min(rows - 1, Math.floorDiv(y + reach, TILE));
+			bounds[4 * i] = c0;
+			bounds[4 * i + 1] = c1;
+			bounds[4 * i + 2] = r0;
+			bounds[4 * i + 3] = r1;
+			for (int r = r0; r <= r1; r++) {
+				for (int c = c0; c <= c1; c++) {
+					tileStart[r * cols + c + 1]++;
+				}
+			}
+		}
+		for (int t = 0; t < nTiles; t++) {
+			tileStart[t + 1] += tileStart[t];
+		}
+		if (order.length < tileStart[nTiles]) {
+			order = new int[tileStart[nTiles]];
+		}
+		int[] fill = Arrays.copyOf(tileStart, nTiles);
+		for (int i = 0; i < n; i++) {
+			for (int r = bounds[4 * i + 2]; r <= bounds[4 * i + 3]; r++) {
+				for (int c = bounds[4 * i]; c <= bounds[4 * i + 1]; c++) {
+					order[fill[r * cols + c]++] = i;
+				}
+			}
+		}
+	}
+}
@@ -44,6 +44,14 @@ public abstract class ADecoratorPaintStrategy extends APaintStrategy {
 		decoree.paintXfrm(g, host, at);
 	}
 
+	/**
+	 * Default behavior is to simply delegate to the decoree's flatten method.
+	 */
+	@Override
+	protected boolean flatten(PaintLayers.Builder layers) {
+		return decoree.flatten(layers);
+	}
+
 	/**
 	 * Default behavior is to simply delegate to the decoree's init method.
 	 */
@@ -5,6 +5,7 @@ import java.awt.geom.AffineTransform;
 
 import model.Ball;
 import model.IPaintStrategy;
+import model.LevelOfDetail;
 
 /**
  * The top-level affine transform-based paint strategy that provides services for its subclasses, plus default behaviors and abstract behaviors.
@@ -17,6 +18,11 @@ public abstract class APaintStrategy implements IPaintStrategy {
 	 */
 	protected AffineTransform at;
 
+	/**
+	 * Whether this strategy paints through the SpriteCache, see useSpriteCache().
+	 */
+	private boolean spriteCached = false;
+
 	/**
 	 * Constructor that initializes the strategy with an affine transform.
 	 * @param at The AffineTransform for this paint strategy to use.
@@ -25,6 +31,15 @@ public abstract class APaintStrategy implements IPaintStrategy {
 		this.at = at;
 	}
 
+	/**
+	 * Makes this strategy paint by blitting pre-rendered sprites from the SpriteCache instead of rasterizing its 
+	 * prototype for every ball every frame. The sprites are shared by all the instances of the class, so this must only
+	 * be called by the constructors that always build the same prototype, normally the no-parameter constructor.
+	 */
+	protected void useSpriteCache() {
+		spriteCached = true;
+	}
+
 	/**
 	 * By default, do nothing for initialization.
 	 */
@@ -36,18 +51,17 @@ public abstract class APaintStrategy implements IPaintStrategy {
 	 * Paints on the given graphics context using the color, scale and direction provided by the host. 
 	 * This is done by setting up the AffineTransform to rotate then scale then translate. 
 	 * Calls paintXfrm to actually perform the painting, using the set up transform. 
-	 * Calls paintCfg just before calling paintXfrm.
+	 * Calls paintCfg just before calling paintXfrm. 
+	 * If the strategy uses the sprite cache, the cached picture for the transform is blitted instead of calling paintXfrm.
 	 * @param g The Graphics context that will be paint on.
 	 * @param host The host Ball that the required information will be pulled from.
 	 */
 	@Override
 	public void paint(Graphics g, Ball host) {
-		double scale = host.getRadius();
-		at.setToTranslation(host.getLocation().x, host.getLocation().y); // happens third
-		at.scale(scale, scale); // happens second
-		at.rotate(host.getVelocity().x, host.getVelocity().y); // happens first 
-		g.setColor(host.getColor());
-		paintCfg(g, host);
+		setupXfrm(g, host);
+		if (spriteCached && SpriteCache.Singleton.paint(g, host, getClass(), at, this::paintXfrm)) {
+			return;
+		}
 		paintXfrm(g, host, this.at);
 
 		// FOR DEBUGGING:
@@ -84,6 +98,31 @@ public abstract class APaintStrategy implements IPaintStrategy {
 		 */
 	}
 
+	/**
+	 * Sets up the affine transform to rotate then scale then translate as determined by the host, sets the color of
+	 * the Graphics context to the host's and calls paintCfg. Balls no larger than the simplify radius of the
+	 * LevelOfDetail policy are neither rotated nor configured, since the difference cannot be seen at that size.
+	 * @param g The Graphics context that will be paint on.
+	 * @param host The host Ball that the required information will be pulled from.
+	 */
+	protected void setupXfrm(Graphics g, Ball host) {
+		double scale = host.getRadius();
+		at.setToTranslation(host.getLocation().x, host.getLocation().y); // happens third
+		at.scale(scale, scale); // happens second
+		g.setColor(host.getColor());
+		if (host.getRadius() > LevelOfDetail.Singleton.getSimplifyRadius()) {
+			at.rotate(host.getVelocity().x, host.getVelocity().y); // happens first 
+			paintCfg(g, host);
+		}
+	}
+
+	/**
+	 * @return True if this strategy paints through the SpriteCache.
+	 */
+	protected boolean isSpriteCached() {
+		return spriteCached;
+	}
+
 	/**
 	 * Defined by a subclass if additional processing, e.g. staying upright, is required before the actual painting takes place.
 	 * @param g The Graphics context that will be paint on.
@@ -123,6 +162,16 @@ public abstract class APaintStrategy implements IPaintStrategy {
 	 * remain abstract, forcing the subclasses to implement it. 
 	 */
 
+	/**
+	 * Adds the layers that paintXfrm() paints to the given builder, so that a composite containing this strategy can be
+	 * compiled into PaintLayers. By default a strategy cannot be flattened.
+	 * @param layers The builder to add the layers to.
+	 * @return True if the strategy was flattened, false if it paints something other than filled shapes.
+	 */
+	protected boolean flatten(PaintLayers.Builder layers) {
+		return false;
+	}
+
 	/**
 	 * Protected accessor for the internal affine transform.
 	 * @return This instance's affine transform.
@@ -40,4 +40,12 @@ public class FixedColorDecoratorPaintStrategy extends ADecoratorPaintStrategy {
 		super.paintXfrm(g, host, at);
 	}
 
+	/**
+	 * Flattens the decoree with the fixed color set first, as paintXfrm does.
+	 */
+	@Override
+	protected boolean flatten(PaintLayers.Builder layers) {
+		layers.setColor(this.color);
+		return super.flatten(layers);
+	}
 }
@@ -0,0 +1,230 @@
+package model.paint;
+
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.MediaTracker;
+import java.awt.RenderingHints;
+import java.awt.Toolkit;
+import java.awt.image.BufferedImage;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * A process-wide cache of the images painted by the image paint strategies, keyed by the URL of the image resource.
+ * The first request for an image starts decoding it on a background pool and immediately returns a handle whose image
+ * is a placeholder until the decoded image is ready, so creating a ball never blocks on I/O. Every later request for
+ * the same image returns the same handle, so a thousand balls that paint the same image share one decoded copy.
+ *
+ * Still images are decoded into premultiplied ARGB BufferedImages, which are the fastest to draw. Animated GIFs are
+ * loaded as Toolkit images instead, so that they keep animating.
+ * @author Peter Dulworth (psd2), Rocky Wu (lw31)
+ */
+public class ImageCache {
+
+	/**
+	 * Singleton instance of this class.
+	 */
+	public static final ImageCache Singleton = new ImageCache();
+
+	/**
+	 * The image shown while an image is being decoded or if it cannot be decoded: a translucent gray disk.
+	 */
+	private static final BufferedImage PLACEHOLDER = makePlaceholder(32);
+
+	/**
+	 * A handle on a cached image. The image is replaced once, when the decoded image becomes ready.
+	 */
+	public static class Handle {
+
+		/**
+		 * The decoded image or the placeholder.
+		 */
+		private volatile Image image = PLACEHOLDER;
+
+		/**
+		 * Whether the decoded image has replaced the placeholder.
+		 */
+		private volatile boolean ready = false;
+
+		/**
+		 * @return The decoded image if it is ready, otherwise the placeholder. Never null.
+		 */
+		public Image getImage() {
+			return image;
+		}
+
+		/**
+		 * @return True if the decoded image is ready.
+		 */
+		public boolean isReady() {
+			return ready;
+		}
+	}
+
+	/**
+	 * The handles of the requested images.
+	 */
+	private final Map<String, Handle> handles = new ConcurrentHashMap<String, Handle>();
+
+	/**
+	 * The number of requests for an image that was already requested.
+	 */
+	private final LongAdder hits = new LongAdder();
+
+	/**
+	 * The number of requests that started decoding an image.
+	 */
+	private final LongAdder misses = new LongAdder();
+
+	/**
+	 * The pool of daemon threads that decode the images.
+	 */
+	private final ExecutorService pool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), (r) -> {
+		Thread t = new Thread(r, "ImageCache decoder");
+		t.setDaemon(true);
+		return t;
+	});
+
+	/**
+	 * Private constructor for use by the Singleton only.
+	 */
+	private ImageCache() {
+	}
+
+	/**
+	 * Returns the handle on the image at the given URL, starting to decode it if this is the first request for it.
+	 * @param url The URL of the image resource.
+	 * @return The handle on the image. If url is null, a handle that holds the placeholder forever.
+	 */
+	public Handle get(URL url) {
+		if (null == url) {
+			return new Handle();
+		}
+		String key = url.toExternalForm();
+		Handle cached = handles.get(key);
+		if (null != cached) {
+			hits.increment();
+			return cached;
+		}
+		return handles.computeIfAbsent(key, (k) -> {
+			misses.increment();
+			Handle h = new Handle();
+			pool.execute(() -> load(url, h));
+			return h;
+		});
+	}
+
+	/**
+	 * @return The number of requests for an image that was already requested.
+	 */
+	public long getHits() {
+		return hits.sum();
+	}
+
+	/**
+	 * @return The number of requests that started decoding an image.
+	 */
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	/**
+	 * Decodes the image at the given URL and publishes it in the handle. Runs on the pool.
+	 * @param url The URL of the image resource.
+	 * @param h The handle to publish the image in.
+	 */
+	private void load(URL url, Handle h) {
+		try {
+			Image img = isAnimated(url) ? loadAnimated(url) : loadStill(url);
+			if (null == img || img.getWidth(null) <= 0) {
+				throw new IllegalStateException("no image data");
+			}
+			h.image = img;
+			h.ready = true;
+		} catch (Exception e) {
+			System.err.println("ImageCache: Error reading file: " + url + "\n" + e);
+		}
+	}
+
+	/**
+	 * @param url The URL of the image resource.
+	 * @return True if the image has more than one frame.
+	 * @throws Exception If the image cannot be read.
+	 */
+	private boolean isAnimated(URL url) throws Exception {
+		try (InputStream in = url.openStream(); ImageInputStream iis = ImageIO.createImageInputStream(in)) {
+			Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+			if (!readers.hasNext()) {
+				return false;
+			}
+			ImageReader reader = readers.next();
+			try {
+				reader.setInput(iis);
+				return reader.getNumImages(true) > 1;
+			} finally {
+				reader.dispose();
+			}
+		}
+	}
+
+	/**
+	 * Decodes a still image into a premultiplied ARGB BufferedImage.
+	 * @param url The URL of the image resource.
+	 * @return The decoded image.
+	 * @throws Exception If the image cannot be read.
+	 */
+	private Image loadStill(URL url) throws Exception {
+		BufferedImage src = ImageIO.read(url);
+		if (null == src) {
+			return null;
+		}
+		BufferedImage img = new BufferedImage(src.getWidth(), src.getHeight(), BufferedImage.TYPE_INT_ARGB_PRE);
+		Graphics2D g = img.createGraphics();
+		g.drawImage(src, 0, 0, null);
+		g.dispose();
+		return img;
+	}
+
+	/**
+	 * Loads an animated image through the Toolkit and waits until its first frame is ready.
+	 * @param url The URL of the image resource.
+	 * @return The loaded image.
+	 * @throws Exception If waiting is interrupted.
+	 */
+	private Image loadAnimated(URL url) throws Exception {
+		Image img = Toolkit.getDefaultToolkit().createImage(url);
+		MediaTracker mt = new MediaTracker(new Component() {
+			private static final long serialVersionUID = 4468306346711236871L;
+		});
+		mt.addImage(img, 1);
+		mt.waitForAll();
+		return mt.isErrorAny() ? null : img;
+	}
+
+	/**
+	 * Draws the placeholder image.
+	 * @param size The width and height of the placeholder.
+	 * @return The placeholder.
+	 */
+	private static BufferedImage makePlaceholder(int size) {
+		BufferedImage img = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB_PRE);
+		Graphics2D g = img.createGraphics();
+		g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+		g.setColor(new Color(128, 128, 128, 96));
+		g.fillOval(0, 0, size, size);
+		g.dispose();
+		return img;
+	}
+}
@@ -6,13 +6,13 @@ import java.awt.geom.AffineTransform;
 import java.awt.Image;
 import java.awt.image.ImageObserver;
 import java.lang.String;
-import java.awt.Toolkit;
-import java.awt.MediaTracker;
 
 import model.Ball;
 
 /**
  * Paint strategy that paints an image from a file, scaled to the host Ball's radius.
+ * The image is shared through the ImageCache, so it is only decoded once however many balls paint it, and a 
+ * placeholder is painted until it has been decoded.
  * Note that this class cannot be used by the BallWar system directly as it is lacking a no-parameter constructor.
  * 
  * @author sgj1
@@ -27,9 +27,9 @@ public class ImagePaintStrategy extends APaintStrategy {
 	private double fillFactor = 0.5;
 
 	/**
-	 * The image to paint. Set in constructor.
+	 * The handle on the cached image to paint. Set in constructor.
 	 */
-	private Image image;
+	private ImageCache.Handle image;
 
 	/**
 	 * ImageObserver needed for some image operations. Set in init().
@@ -41,11 +41,6 @@ public class ImagePaintStrategy extends APaintStrategy {
 	 */
 	protected AffineTransform localAT = new AffineTransform();
 
-	/**
-	 * Ratio of the unit radius circle to the effective radius size of the image. Set in init().
-	 */
-	private double scaleFactor;
-
 	/**
 	 * Constructor that takes an external AffineTransform, the filename of the image to paint and a fill factor of the image.
 	 * @param at The AffineTransform to use internally.
@@ -54,11 +49,7 @@ public class ImagePaintStrategy extends APaintStrategy {
 	 */
 	public ImagePaintStrategy(AffineTransform at, String filename, double fillFactor) {
 		super(at);
-		try {
-			image = Toolkit.getDefaultToolkit().getImage(this.getClass().getResource("images" + filename));
-		} catch (Exception e) {
-			System.err.println("ImagePaintStrategy: Error reading file: " + filename + "\n" + e);
-		}
+		image = ImageCache.Singleton.get(this.getClass().getResource("images" + filename));
 	}
 
 	/**
@@ -71,43 +62,44 @@ public class ImagePaintStrategy extends APaintStrategy {
 	 */
 	protected ImagePaintStrategy(String filename, double fillFactor) {
 		super(new AffineTransform());
-		try {
-			image = Toolkit.getDefaultToolkit().getImage(this.getClass().getResource("images/" + filename));
-		} catch (Exception e) {
-			System.err.println("ImagePaintStrategy: Error reading file: " + filename + "\n" + e);
-		}
-
+		image = ImageCache.Singleton.get(this.getClass().getResource("images/" + filename));
 	}
 
 	/**
-	 * Draws the image on the given Graphics context using the given affine transform in combination with the local affine transform.
+	 * Draws the image, or its placeholder while it is being decoded, on the given Graphics context using the given 
+	 * affine transform in combination with the local affine transform. The image is scaled so that the average of its 
+	 * width and height times the fill factor is the unit diameter.
 	 * @param g The graphics context to paint on.
 	 * @param host The host Ball.
 	 * @param at The AffineTransform to use.
 	 */
 	@Override
 	public void paintXfrm(Graphics g, Ball host, AffineTransform at) {
+		Image img = image.getImage();
+		double w = img.getWidth(imageObs);
+		double h = img.getHeight(imageObs);
+		double scaleFactor = 2.0 / (fillFactor * (w + h) / 2.0);
+		if (at.getShearX() == 0.0 && at.getShearY() == 0.0 && at.getScaleX() > 0.0 && at.getScaleY() > 0.0) {
+			// Neither rotated nor mirrored, e.g. a small ball, see LevelOfDetail: a scaled blit is cheaper than a transformed one.
+			double dw = w * scaleFactor * at.getScaleX();
+			double dh = h * scaleFactor * at.getScaleY();
+			g.drawImage(img, (int) Math.round(at.getTranslateX() - dw / 2.0), (int) Math.round(at.getTranslateY() - dh / 2.0),
+					Math.max(1, (int) Math.round(dw)), Math.max(1, (int) Math.round(dh)), imageObs);
+			return;
+		}
 		localAT.setToScale(scaleFactor, scaleFactor);
-		localAT.translate(-image.getWidth(imageObs) / 2.0, -image.getHeight(imageObs) / 2.0);
+		localAT.translate(-w / 2.0, -h / 2.0);
 		localAT.preConcatenate(at);
-		((Graphics2D) g).drawImage(image, localAT, imageObs);
+		((Graphics2D) g).drawImage(img, localAT, imageObs);
 	}
 
 	/**
-	 * Initializes the internal ImageObserver reference from the host Ball.
-	 * Also calculates the net scale factor for the image.
+	 * Initializes the internal ImageObserver reference from the host Ball, which repaints animated images. 
+	 * Does not wait for the image to be decoded.
 	 * @param host The host Ball.
 	 */
 	@Override
 	public void init(Ball host) {
 		imageObs = host.getContainer();
-		MediaTracker mt = new MediaTracker(host.getContainer());
-		mt.addImage(image, 1);
-		try {
-			mt.waitForAll();
-		} catch (Exception e) {
-			System.out.println("ImagePaintStrategy.init(): Error waiting for image.  Exception = " + e);
-		}
-		scaleFactor = 2.0 / (fillFactor * (image.getWidth(imageObs) + image.getHeight(imageObs)) / 2.0);
 	}
 }
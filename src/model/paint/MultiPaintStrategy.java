@@ -17,13 +17,17 @@ public class MultiPaintStrategy extends APaintStrategy {
 	 */
 	private APaintStrategy[] pstrats;
 
+	/**
+	 * The composite compiled into layers, or null if some paint strategy of the composite cannot be flattened.
+	 */
+	private PaintLayers layers;
+
 	/**
 	 * Constructor that takes the paint strategies that will part of the composite. An AffineTransform is instantiated for internal use.
 	 * @param pstrats Vararg parameter that are the paint strategies that will make up the composite.
 	 */
 	public MultiPaintStrategy(APaintStrategy... pstrats) {
-		super(new AffineTransform());
-		this.pstrats = pstrats;
+		this(new AffineTransform(), pstrats);
 	}
 
 	/**
@@ -34,6 +38,7 @@ public class MultiPaintStrategy extends APaintStrategy {
 	public MultiPaintStrategy(AffineTransform at, APaintStrategy... pstrats) {
 		super(at);
 		this.pstrats = pstrats;
+		this.layers = PaintLayers.compile(this);
 	}
 
 	/**
@@ -48,12 +53,29 @@ public class MultiPaintStrategy extends APaintStrategy {
 
 	/**
 	 * Delegates to all the IPaintStrategies in the composite. Paints using given Graphics context using the supplied AffineTransform. Called by the inherited paint method.
+	 * If the composite could be compiled into layers, paints the layers instead, which gives the same picture.
 	 */
 	@Override
 	public void paintXfrm(Graphics g, Ball host, AffineTransform at) {
+		if (null != layers) {
+			layers.paint(g, at);
+			return;
+		}
 		for (int i = 0; i < pstrats.length; i++) {
 			pstrats[i].paintXfrm(g, host, at);
 		}
 	}
 
+	/**
+	 * Flattens all the paint strategies in the composite, in order.
+	 */
+	@Override
+	protected boolean flatten(PaintLayers.Builder layers) {
+		for (int i = 0; i < pstrats.length; i++) {
+			if (!pstrats[i].flatten(layers)) {
+				return false;
+			}
+		}
+		return true;
+	}
 }
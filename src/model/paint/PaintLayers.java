@@ -0,0 +1,125 @@
+package model.paint;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Path2D;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A composite paint strategy compiled into a flat list of layers, each a prototype shape and the color to fill it with.
+ * Painting the layers transforms each prototype into one reused path and fills it, instead of walking the tree of
+ * composites and decorators and allocating a transformed shape for every layer of every ball. The transform is not
+ * set on the Graphics2D instead, because Java2D rasterizes the edges of a shape filled through a scaled Graphics
+ * slightly differently from the same shape transformed beforehand.
+ *
+ * The layers reproduce the colors of the tree exactly: a layer painted by a FixedColorDecoratorPaintStrategy gets that
+ * color, and every other layer gets whatever color the Graphics context has at that point, which is the color at the
+ * start of painting until the first fixed color is set.
+ * @author Peter Dulworth (psd2), Rocky Wu (lw31)
+ */
+public class PaintLayers {
+
+	/**
+	 * The prototype shapes, in painting order.
+	 */
+	private final Shape[] shapes;
+
+	/**
+	 * The color of each layer, or null for the color that the Graphics context has when painting starts.
+	 */
+	private final Color[] colors;
+
+	/**
+	 * The path that each layer is transformed into before it is filled, reused for every layer.
+	 */
+	private final Path2D.Double path = new Path2D.Double();
+
+	/**
+	 * Collects the layers of a paint strategy tree, see APaintStrategy.flatten().
+	 */
+	public static class Builder {
+
+		/**
+		 * The layers collected so far.
+		 */
+		private final List<Shape> shapes = new ArrayList<Shape>();
+
+		/**
+		 * The colors of the layers collected so far.
+		 */
+		private final List<Color> colors = new ArrayList<Color>();
+
+		/**
+		 * The color that the Graphics context would have at this point, or null for its color at the start.
+		 */
+		private Color color = null;
+
+		/**
+		 * Package-private constructor for use by compile() only.
+		 */
+		Builder() {
+		}
+
+		/**
+		 * Adds a layer that fills the given prototype in the current color.
+		 * @param shape The prototype shape.
+		 */
+		public void addShape(Shape shape) {
+			shapes.add(shape);
+			colors.add(color);
+		}
+
+		/**
+		 * Sets the current color, as a call to Graphics.setColor() in the tree would.
+		 * @param color The new current color.
+		 */
+		public void setColor(Color color) {
+			this.color = color;
+		}
+	}
+
+	/**
+	 * Constructor.
+	 * @param b The builder holding the layers.
+	 */
+	private PaintLayers(Builder b) {
+		shapes = b.shapes.toArray(new Shape[0]);
+		colors = b.colors.toArray(new Color[0]);
+	}
+
+	/**
+	 * Compiles the given paint strategy into layers.
+	 * @param strategy The root of the paint strategy tree.
+	 * @return The layers, or null if some strategy of the tree cannot be flattened, e.g. an image strategy.
+	 */
+	public static PaintLayers compile(APaintStrategy strategy) {
+		Builder b = new Builder();
+		return strategy.flatten(b) ? new PaintLayers(b) : null;
+	}
+
+	/**
+	 * Fills the layers on the given Graphics context using the given transform, leaving the Graphics context in the
+	 * color of the last layer, as painting the tree would. Must not be called from several threads at once.
+	 * @param g The Graphics context to paint on.
+	 * @param at The transform from the prototypes to the screen.
+	 */
+	public void paint(Graphics g, AffineTransform at) {
+		Graphics2D g2 = (Graphics2D) g;
+		Color start = g2.getColor();
+		Color current = start;
+		for (int i = 0; i < shapes.length; i++) {
+			Color c = null == colors[i] ? start : colors[i];
+			if (c != current) {
+				g2.setColor(c);
+				current = c;
+			}
+			path.reset();
+			path.append(shapes[i].getPathIterator(at), false);
+			g2.fill(path);
+		}
+	}
+}
@@ -6,13 +6,15 @@ import java.awt.Shape;
 import java.awt.geom.AffineTransform;
 
 import model.Ball;
+import model.IBatchPaintStrategy;
 
 /**
  * Concrete class that defines invariant painting behaviors to paint Shape objects for all its subclasses. 
+ * The shapes can be batched: balls of the same class and color are filled together as one path.
  * Note: This cannot be directly instantiated by the BallWorld system because it lacks a no-parameter constructor.
  * @author Peter
  */
-public class ShapePaintStrategy extends APaintStrategy {
+public class ShapePaintStrategy extends APaintStrategy implements IBatchPaintStrategy {
 
 	/**
 	 * The Shape to be painted.
@@ -45,4 +47,32 @@ public class ShapePaintStrategy extends APaintStrategy {
 		((Graphics2D) g).fill(at.createTransformedShape(this.shape));
 	}
 
+	/**
+	 * Flattens into a single layer that fills the prototype shape.
+	 */
+	@Override
+	protected boolean flatten(PaintLayers.Builder layers) {
+		layers.addShape(shape);
+		return true;
+	}
+
+	/**
+	 * @return The prototype shape.
+	 */
+	@Override
+	public Shape getPrototype() {
+		return shape;
+	}
+
+	/**
+	 * Sets up the transform as the inherited paint method does. Strategies that use the sprite cache are not batched.
+	 */
+	@Override
+	public AffineTransform batchXfrm(Graphics g, Ball host) {
+		if (isSpriteCached()) {
+			return null;
+		}
+		setupXfrm(g, host);
+		return at;
+	}
 }
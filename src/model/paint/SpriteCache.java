@@ -0,0 +1,319 @@
+package model.paint;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import model.Ball;
+
+/**
+ * A process-wide cache of pre-rendered sprites for the paint strategies whose prototype is the same for every instance
+ * of their class. Instead of transforming and rasterizing the prototype shape for every ball every frame, the strategy
+ * is rasterized once per bucket of (class, radius, rotation, flip, color) into a small image that is then simply
+ * blitted at the ball's location. The rotation is quantized into ROTATIONS buckets and every channel of the color to
+ * COLOR_BITS bits, so that balls of nearly the same color share a sprite.
+ *
+ * Every sprite is its own premultiplied ARGB image, cropped to the pixels that the strategy paints, rather than a region
+ * of one packed atlas, so that evicting a sprite frees its memory without fragmenting anything, and antialiased edges
+ * keep their partial alpha. The cache holds at most MAX_PIXELS pixels and evicts the least recently used sprites beyond
+ * that. Only the lookup and the insertion of a sprite hold the lock of the cache; the blit and the rendering of a missing
+ * sprite do not, so threads painting at once do not wait on each other's draws.
+ * @author Peter Dulworth (psd2), Rocky Wu (lw31)
+ */
+public class SpriteCache {
+
+	/**
+	 * Singleton instance of this class.
+	 */
+	public static final SpriteCache Singleton = new SpriteCache();
+
+	/**
+	 * The number of rotation buckets in a full turn.
+	 */
+	private static final int ROTATIONS = 64;
+
+	/**
+	 * Balls with a larger radius are painted directly, since their sprites would be large and few.
+	 */
+	private static final int MAX_RADIUS = 64;
+
+	/**
+	 * The number of bits kept of each channel of a color. Random colors then fall into 2^15 opaque buckets instead of
+	 * 2^24, a difference that cannot be seen on the small sprites.
+	 */
+	private static final int COLOR_BITS = 5;
+
+	/**
+	 * The total number of pixels of all the sprites in the cache, 64 MB of ARGB. The balls usually all have different
+	 * colors, so this must hold a sprite for each of several thousand balls, otherwise the LRU order makes every paint miss.
+	 */
+	private static final long MAX_PIXELS = 1 << 24;
+
+	/**
+	 * Paints the prototype of a strategy with a given transform.
+	 */
+	@FunctionalInterface
+	public interface ISpriteSource {
+		/**
+		 * Paints the prototype, as paintXfrm() does.
+		 * @param g The Graphics context to paint on, set to the color of the host.
+		 * @param host The host ball.
+		 * @param at The transform from the prototype to the sprite.
+		 */
+		public void paintSprite(Graphics g, Ball host, AffineTransform at);
+	}
+
+	/**
+	 * The key of a sprite.
+	 */
+	private static final class Key {
+
+		/**
+		 * The class of the paint strategy.
+		 */
+		private final Class<?> type;
+
+		/**
+		 * The radius, rotation bucket, flip and color of the sprite, packed.
+		 */
+		private final long bucket;
+
+		/**
+		 * Constructor.
+		 * @param type The class of the paint strategy.
+		 * @param radius The radius.
+		 * @param rotation The rotation bucket.
+		 * @param flipped Whether the prototype is mirrored.
+		 * @param argb The quantized color, see quantize().
+		 */
+		Key(Class<?> type, int radius, int rotation, boolean flipped, int argb) {
+			this.type = type;
+			this.bucket = ((long) radius << 40) | ((long) rotation << 33) | ((flipped ? 1L : 0L) << 32) | (argb & 0xFFFFFFFFL);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof Key && ((Key) o).type == type && ((Key) o).bucket == bucket;
+		}
+
+		@Override
+		public int hashCode() {
+			return type.hashCode() * 31 + Long.hashCode(bucket);
+		}
+	}
+
+	/**
+	 * A pre-rendered sprite.
+	 */
+	private static final class Sprite {
+
+		/**
+		 * The image.
+		 */
+		private final BufferedImage image;
+
+		/**
+		 * The offset of the top left corner of the image from the ball's location.
+		 */
+		private final int dx, dy;
+
+		/**
+		 * Constructor.
+		 * @param image The image.
+		 * @param dx The x offset of the image from the ball's location.
+		 * @param dy The y offset of the image from the ball's location.
+		 */
+		Sprite(BufferedImage image, int dx, int dy) {
+			this.image = image;
+			this.dx = dx;
+			this.dy = dy;
+		}
+	}
+
+	/**
+	 * The sprites, in least recently used order.
+	 */
+	private final LinkedHashMap<Key, Sprite> sprites = new LinkedHashMap<Key, Sprite>(256, 0.75f, true);
+
+	/**
+	 * The total number of pixels of the sprites. Guarded by the lock of the cache.
+	 */
+	private long pixels = 0;
+
+	/**
+	 * The number of paints that found their sprite in the cache. Read without the lock of the cache.
+	 */
+	private final LongAdder hits = new LongAdder();
+
+	/**
+	 * The number of paints that had to render their sprite.
+	 */
+	private final LongAdder misses = new LongAdder();
+
+	/**
+	 * The image that each thread renders sprites into before they are cropped, reused as long as it is large enough.
+	 */
+	private final ThreadLocal<BufferedImage[]> scratch = ThreadLocal
+			.withInitial(() -> new BufferedImage[] { new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB_PRE) });
+
+	/**
+	 * Private constructor for use by the Singleton only.
+	 */
+	private SpriteCache() {
+	}
+
+	/**
+	 * Paints a ball by blitting the sprite that matches the given transform, rendering the sprite first if it is not
+	 * cached. The transform is the one that the strategy would give to paintXfrm(): a translation to the ball's
+	 * location, a scaling by its radius, a rotation and optionally a mirroring.
+	 * @param g The Graphics context to paint on.
+	 * @param host The host ball.
+	 * @param type The class of the strategy. All the strategies of that class must paint the same prototype.
+	 * @param at The transform from the prototype to the screen.
+	 * @param source Paints the prototype when the sprite must be rendered.
+	 * @return False if the ball is too large to be cached, in which case nothing was painted.
+	 */
+	public boolean paint(Graphics g, Ball host, Class<?> type, AffineTransform at, ISpriteSource source) {
+		int radius = host.getRadius();
+		if (radius <= 0 || radius > MAX_RADIUS) {
+			return false;
+		}
+		// The first column of the linear part is the rotated x-axis, which a mirroring about the x-axis does not change.
+		double angle = Math.atan2(at.getShearY(), at.getScaleX());
+		int rotation = Math.floorMod((int) Math.round(angle * ROTATIONS / (2 * Math.PI)), ROTATIONS);
+		boolean flipped = at.getDeterminant() < 0;
+		int argb = quantize(host.getColor().getRGB());
+		Key key = new Key(type, radius, rotation, flipped, argb);
+
+		Sprite sprite;
+		synchronized (this) {
+			sprite = sprites.get(key);
+		}
+		if (null == sprite) {
+			misses.increment();
+			Sprite rendered = render(host, radius, rotation, flipped, new Color(argb, true), source);
+			synchronized (this) {
+				// Another thread may have rendered the same sprite meanwhile; keep the one that is already cached.
+				sprite = sprites.putIfAbsent(key, rendered);
+				if (null == sprite) {
+					sprite = rendered;
+					pixels += (long) sprite.image.getWidth() * sprite.image.getHeight();
+					evict();
+				}
+			}
+		} else {
+			hits.increment();
+		}
+		g.drawImage(sprite.image, (int) Math.round(at.getTranslateX()) + sprite.dx,
+				(int) Math.round(at.getTranslateY()) + sprite.dy, null);
+		return true;
+	}
+
+	/**
+	 * @return The number of paints that found their sprite in the cache.
+	 */
+	public long getHits() {
+		return hits.sum();
+	}
+
+	/**
+	 * @return The number of paints that had to render their sprite.
+	 */
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	/**
+	 * Keeps the COLOR_BITS high bits of each channel of a color and spreads them back over the 8 bits of the channel, so
+	 * that a fully saturated channel stays 255.
+	 * @param argb A color.
+	 * @return The color of its bucket.
+	 */
+	private static int quantize(int argb) {
+		int result = 0;
+		for (int shift = 0; shift < 32; shift += 8) {
+			int q = ((argb >>> shift) & 0xFF) >>> (8 - COLOR_BITS);
+			result |= ((q << (8 - COLOR_BITS)) | (q >>> (2 * COLOR_BITS - 8))) << shift;
+		}
+		return result;
+	}
+
+	/**
+	 * Renders a sprite into the scratch image of the calling thread with room for twice the radius around the center, then crops it to the
+	 * pixels that were painted, keeping their premultiplied alpha.
+	 * @param host The host ball.
+	 * @param radius The radius.
+	 * @param rotation The rotation bucket.
+	 * @param flipped Whether the prototype is mirrored.
+	 * @param color The color of the host.
+	 * @param source Paints the prototype.
+	 * @return The sprite.
+	 */
+	private Sprite render(Ball host, int radius, int rotation, boolean flipped, Color color, ISpriteSource source) {
+		int c = 2 * radius + 2;
+		int side = 2 * c;
+		BufferedImage[] holder = scratch.get();
+		if (holder[0].getWidth() < side) {
+			holder[0] = new BufferedImage(side, side, BufferedImage.TYPE_INT_ARGB_PRE);
+		}
+		BufferedImage scratch = holder[0];
+		Graphics2D g = scratch.createGraphics();
+		g.setComposite(AlphaComposite.Clear);
+		g.fillRect(0, 0, side, side);
+		g.setComposite(AlphaComposite.SrcOver);
+		g.setColor(color);
+		AffineTransform at = AffineTransform.getTranslateInstance(c, c);
+		at.scale(radius, radius);
+		at.rotate(rotation * 2 * Math.PI / ROTATIONS);
+		if (flipped) {
+			at.scale(1.0, -1.0);
+		}
+		source.paintSprite(g, host, at);
+		g.dispose();
+
+		int[] data = ((DataBufferInt) scratch.getRaster().getDataBuffer()).getData();
+		int stride = scratch.getWidth();
+		int x0 = side, y0 = side, x1 = -1, y1 = -1;
+		for (int y = 0; y < side; y++) {
+			for (int x = 0; x < side; x++) {
+				if ((data[y * stride + x] >>> 24) != 0) {
+					x0 = Math.min(x0, x);
+					y0 = Math.min(y0, y);
+					x1 = Math.max(x1, x);
+					y1 = Math.max(y1, y);
+				}
+			}
+		}
+		if (x1 < 0) { // nothing was painted
+			x0 = y0 = x1 = y1 = c;
+		}
+		int w = x1 - x0 + 1;
+		int h = y1 - y0 + 1;
+		BufferedImage image = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB_PRE);
+		int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+		for (int y = 0; y < h; y++) {
+			System.arraycopy(data, (y0 + y) * stride + x0, pixels, y * w, w);
+		}
+		return new Sprite(image, x0 - c, y0 - c);
+	}
+
+	/**
+	 * Removes the least recently used sprites until the cache is within its budget. Must hold the lock of the cache.
+	 */
+	private void evict() {
+		Iterator<Map.Entry<Key, Sprite>> iter = sprites.entrySet().iterator();
+		while (pixels > MAX_PIXELS && iter.hasNext()) {
+			Sprite s = iter.next().getValue();
+			pixels -= (long) s.image.getWidth() * s.image.getHeight();
+			iter.remove();
+		}
+	}
+}
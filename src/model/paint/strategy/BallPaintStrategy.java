@@ -2,19 +2,21 @@ package model.paint.strategy;
 
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.Shape;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Ellipse2D;
 
 import model.Ball;
-import model.IPaintStrategy;
+import model.IBatchPaintStrategy;
+import model.LevelOfDetail;
 import model.paint.shape.EllipseShapeFactory;
 
 /**
  * Paint strategy that paints a filled circle with the Ball's radius. This functionality is duplicated by the EllipsePaintStrategy. 
- * The class demonstrates a direct implementation of IPaintStrategy.
+ * The class demonstrates a direct implementation of IPaintStrategy, and of IBatchPaintStrategy so that balls are batched.
  * @author Peter
  */
-public class BallPaintStrategy implements IPaintStrategy {
+public class BallPaintStrategy implements IBatchPaintStrategy {
 
 	/**
 	 * The AffineTransformed used for internal calculations.
@@ -55,12 +57,31 @@ public class BallPaintStrategy implements IPaintStrategy {
 	 */
 	@Override
 	public void paint(Graphics g, Ball host) {
+		paintXfrm(g, host, batchXfrm(g, host));
+	}
+
+	/**
+	 * @return The prototype circle.
+	 */
+	@Override
+	public Shape getPrototype() {
+		return ball;
+	}
+
+	/**
+	 * Sets up the transform to scale then translate, as paint does, and sets the color of the Graphics context. 
+	 * Small balls are not rotated, see LevelOfDetail.
+	 */
+	@Override
+	public AffineTransform batchXfrm(Graphics g, Ball host) {
 		double scale = host.getRadius();
 		at.setToTranslation(host.getLocation().x, host.getLocation().y); // happens third
 		at.scale(scale, scale); // happens second
-		at.rotate(host.getVelocity().x, host.getVelocity().y); // happens first 
+		if (host.getRadius() > LevelOfDetail.Singleton.getSimplifyRadius()) {
+			at.rotate(host.getVelocity().x, host.getVelocity().y); // happens first 
+		}
 		g.setColor(host.getColor());
-		paintXfrm(g, host, this.at);
+		return at;
 	}
 
 	/**
@@ -18,6 +18,7 @@ public class NiceFishPaintStrategy extends UprightMultiPaintStrategy {
 	 */
 	public NiceFishPaintStrategy() {
 		this(new AffineTransform());
+		useSpriteCache();
 	}
 
 	/**
@@ -2,6 +2,7 @@ package model.strategy;
 
 import model.Ball;
 import model.IBallCmd;
+import model.IInteractCriterion;
 import provided.util.dispatcher.IDispatcher;
 
 /**
@@ -16,20 +17,17 @@ public class AlignedStrategy extends AUpdateStrategy<IBallCmd> {
 	 * The error margin.
 	 */
 	private final double epsilon = 2 * Math.PI * 0.05; // 5 percent error margin over 360 degrees
+
+	/**
+	 * The criterion: the directions of the velocities of the balls differ by less than epsilon.
+	 */
+	private final IInteractCriterion aligned = (context, other) -> 
+		Math.abs(Math.atan2(context.getVelocity().getY(), context.getVelocity().getX()) -
+				Math.atan2(other.getVelocity().getY(), other.getVelocity().getX())) < epsilon;
 				
 	@Override
 	public void updateState(Ball context, IDispatcher<IBallCmd> dispatcher) {
-		dispatcher.updateAll((other, disp) -> {
-			// check if you are receiving your own command 
-			if (context != other) {
-				// if the balls are overlapping
-				if (Math.abs(Math.atan2(context.getVelocity().getY(), context.getVelocity().getX()) -
-						Math.atan2(other.getVelocity().getY(), other.getVelocity().getX())) < epsilon) {
-					// invoke the interaction strategies of the two interacting balls 
-					context.interactWith(other, dispatcher, true);
-					other.interactWith(context, dispatcher, false);
-				}
-			}
-		});
+		// the model tests the criterion against every other ball
+		context.offerCriterion(aligned);
 	}
 }
@@ -15,7 +15,8 @@ public class CollideExactStrategy extends AUpdateStrategy<IBallCmd> {
 
 	@Override
 	public void updateState(final Ball context, IDispatcher<IBallCmd> dispatcher) {
-		dispatcher.updateAll(new IBallCmd() {
+		// only the balls near the context can be colliding with it
+		context.getGrid().updateNeighbors(context, dispatcher, new IBallCmd() {
 
 			@Override
 			public void apply(Ball other, IDispatcher<IBallCmd> disp) {
@@ -75,7 +76,7 @@ public class CollideExactStrategy extends AUpdateStrategy<IBallCmd> {
 		double deltaX2 = deltaX.distanceSq(0.0, 0.0);
 		double deltaV2 = deltaV.distanceSq(0.0, 0.0);
 		double R2 = minSeparation*minSeparation;
-		double dvdx = deltaV.x * deltaX.x + deltaV.y + deltaX.y;
+		double dvdx = deltaV.x * deltaX.x + deltaV.y * deltaX.y;
 
 		double root2 = dvdx * dvdx - deltaV2 * (deltaX2 - R2);
 
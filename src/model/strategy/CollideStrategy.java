@@ -5,6 +5,8 @@ import java.awt.geom.Point2D;
 
 import model.Ball;
 import model.IBallCmd;
+import model.IPairEffect;
+import model.PairDelta;
 import provided.util.dispatcher.IDispatcher;
 
 /**
@@ -13,37 +15,68 @@ import provided.util.dispatcher.IDispatcher;
  */
 public class CollideStrategy extends AUpdateStrategy<IBallCmd> {
 	
+	/**
+	 * The collision of two overlapping balls. The changes to their locations and velocities are computed from their 
+	 * current state only, so the model can compute all the collisions of a tick in parallel before applying them.
+	 */
+	private final IPairEffect collision = new IPairEffect() {
+		@Override
+		public boolean effect(Ball context, Ball other, PairDelta delta) {
+			Point lSource = new Point(context.getX(), context.getY());
+			Point lTarget = new Point(other.getX(), other.getY());
+			double radiusDistance = lSource.distance(lTarget);
+			// if the balls are overlapping
+			if ((context.getRadius() + other.getRadius()) <= radiusDistance) {
+				return false;
+			}
+			// Calculate the reduced mass of the two-ball system using the square of the radius as the mass of the ball (mass is proportional to the size of the ball).
+			double rm = reducedMass(Math.pow(context.getRadius(), 2), Math.pow(other.getRadius(), 2));
+
+			// The minimum allowed separation(sum of the ball radii) minus the actual separation(distance between ball centers). Should be a 
+			// * positive value. This is the amount of overlap of the balls as measured along the line between their centers.
+			double deltaR = (context.getRadius() + other.getRadius()) - (radiusDistance);
+
+			// Use the reduced mass and other parameters to calculate the impulse of the collision. The position of the source ball will be "nudged" out of collision distance during this calculation.
+			Point2D.Double imp = impulse(lSource, new Point(context.getVx(), context.getVy()), lTarget, 
+					new Point(other.getVx(), other.getVy()), rm, radiusDistance, deltaR);
+			delta.moveContext(lSource.x - context.getX(), lSource.y - context.getY());
+
+			// The impulse points along the normal from source to target when the balls are already moving apart. In parallel
+			// mode all the collisions of a tick are computed from the same velocities, so such a pair must not be pulled back
+			// together there; sequential mode applies every collision as it comes, as it always did.
+			if (delta.isDeferred() && imp.x * (lTarget.x - context.getX()) + imp.y * (lTarget.y - context.getY()) > 0) {
+				return true;
+			}
+
+			// Update the velocities of each ball by taking the impulse divided by the mass (square of the radius).
+			// Note that the same method can be used to update either the source or target balls simply by switching the parameters and negating the impulse.    
+			int mContext = context.getRadius() * context.getRadius();
+			int mOther = other.getRadius() * other.getRadius();
+			delta.accelerateContext((int) Math.round(imp.x / mContext), (int) Math.round(imp.y / mContext));
+			delta.accelerateOther((int) Math.round(-imp.x / mOther), (int) Math.round(-imp.y / mOther));
+			return true;
+		}
+
+		/**
+		 * Calls the post-collision interaction behavior of each ball (the interactWith method of the Ball), 
+		 * from each ball's perspective.
+		 */
+		@Override
+		public void interact(Ball context, Ball other, IDispatcher<IBallCmd> disp) {
+			context.interactWith(other, disp, true);
+			other.interactWith(context, disp, true);
+		}
+
+		@Override
+		public boolean isLocal() {
+			return true;
+		}
+	};
+
 	@Override
 	public void updateState(final Ball context, IDispatcher<IBallCmd> dispatcher) {
-		dispatcher.updateAll(new IBallCmd() {
-
-			@Override
-			public void apply(Ball other, IDispatcher<IBallCmd> disp) {
-				// check if you are receiving your own command 
-				if (context != other) {
-					double radiusDistance = context.getLocation().distance(other.getLocation());
-					// if the balls are overlapping
-					if ((context.getRadius() + other.getRadius()) > radiusDistance) {
-						// Calculate the reduced mass of the two-ball system using the square of the radius as the mass of the ball (mass is proportional to the size of the ball).
-						double rm = reducedMass(Math.pow(context.getRadius(), 2), Math.pow(other.getRadius(), 2));
-						
-						// The minimum allowed separation(sum of the ball radii) minus the actual separation(distance between ball centers). Should be a 
-						// * positive value. This is the amount of overlap of the balls as measured along the line between their centers.
-						double deltaR = (context.getRadius() + other.getRadius()) - (radiusDistance);
-						
-						// Use the reduced mass and other parameters to calculate the impulse of the collision. The position of the source ball will be "nudged" out of collision distance during this calculation.
-						Point2D.Double imp = impulse(context.getLocation(), context.getVelocity(), other.getLocation(), other.getVelocity(), rm, radiusDistance, deltaR);
-						
-						// Update the velocities of each ball by taking the impulse divided by the mass (square of the radius) and call its post-collision 
-						// interaction behavior (the interactWith method of the Ball).   
-						// Note that the same method can be used to update either the source or target balls simply by switching the parameters and negating the impulse.    
-						// Careful here! This is simpler than it looks! Use all the resources available to you!
-						updateCollision(context, other, imp.x, imp.y, disp);
-						updateCollision(other, context, -imp.x, -imp.y, disp);
-					}
-				}
-			}
-		});
+		// the model computes the collisions with all the balls that could be colliding with the context
+		context.offerCriterion(collision);
 	}
 
 	/**
@@ -110,25 +143,4 @@ public class CollideStrategy extends AUpdateStrategy<IBallCmd> {
 
 		return new Point2D.Double(2.0 * reducedMass * dvn * nx, 2.0 * reducedMass * dvn * ny);
 	}
-
-	/**
-	 * Updates the velocity of the source ball, given an impulse, then uses the
-	 * context's interactWith method to determine the post collision behavior, from the context
-	 * ball's perspective. The change in velocity is the impulse divided by the (source) ball's mass. To change
-	 * the velocity of the target ball, switch the source and target input
-	 * parameters and negate the impulse values.   This will also run the post collision behavior from 
-	 * the other perspective.
-	 * 
-	 * @param context The ball to update
-	 * @param target The ball being collided with
-	 * @param impX x-coordinate of the impulse
-	 * @param impY y-coordinate of the impulse
-	 * @param dispatcher The dispatcher
-	 */
-	protected void updateCollision(Ball context, Ball target, double impX, double impY, IDispatcher<IBallCmd> dispatcher) {
-		int mContext = context.getRadius() * context.getRadius();
-
-		context.getVelocity().translate((int) Math.round(impX / mContext),(int) Math.round(impY / mContext));
-		context.interactWith(target, dispatcher, true);
-	}
-}
\ No newline at end of file
+}
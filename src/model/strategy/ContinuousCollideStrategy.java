@@ -0,0 +1,21 @@
+package model.strategy;
+
+import model.Ball;
+import model.IBallCmd;
+import provided.util.dispatcher.IDispatcher;
+
+/**
+ * Elastic collisions detected continuously: the ball is handed to the collision engine of its world, which moves it
+ * from collision to collision at the exact times of contact with the walls and with the other balls that use this
+ * strategy, so that even small, fast balls never pass through each other. The post-collision behavior is delegated
+ * to the interactWith methods of the individual balls.
+ * @author Peter Dulworth (psd2), Rocky Wu (lw31)
+ */
+public class ContinuousCollideStrategy extends AUpdateStrategy<IBallCmd> {
+
+	@Override
+	public void updateState(Ball context, IDispatcher<IBallCmd> dispatcher) {
+		// the engine moves the ball during the next tick instead of the model
+		context.getCollisionEngine().track(context);
+	}
+}
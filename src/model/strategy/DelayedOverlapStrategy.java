@@ -2,6 +2,7 @@ package model.strategy;
 
 import model.Ball;
 import model.IBallCmd;
+import model.IInteractCriterion;
 import provided.util.dispatcher.IDispatcher;
 
 /**
@@ -11,6 +12,22 @@ import provided.util.dispatcher.IDispatcher;
  * @author Peter Dulworth (psd2), Rocky Wu (lw31)
  */
 public class DelayedOverlapStrategy extends AUpdateStrategy<IBallCmd> {
+
+	/**
+	 * The criterion shared by all delayed overlap balls: the balls are overlapping.
+	 */
+	private static final IInteractCriterion IN_CONTACT = new IInteractCriterion() {
+		@Override
+		public boolean test(Ball context, Ball other) {
+			double radiusDistance = context.getLocation().distance(other.getLocation());
+			return (context.getRadius() + other.getRadius()) > radiusDistance;
+		}
+
+		@Override
+		public boolean isLocal() {
+			return true;
+		}
+	};
 	
 	/**
 	 * Tick counter that counts out the delay before another ball can be spawned.
@@ -25,21 +42,9 @@ public class DelayedOverlapStrategy extends AUpdateStrategy<IBallCmd> {
 	@Override
 	public void updateState(Ball context, IDispatcher<IBallCmd> dispatcher) {
 		if (count++ > delay) { // evaluates count > delay then increments count
-			// send a command to all balls
-			dispatcher.updateAll((other, disp) -> {
-				// check if you are receiving your own command 
-				if (context != other) {
-					double radiusDistance = context.getLocation().distance(other.getLocation());
-					// if the balls are overlapping
-					Boolean inContact = (context.getRadius() + other.getRadius()) > radiusDistance; 
-					if (inContact) {
-						// invoke the interaction strategies of the two interacting balls 
-						context.interactWith(other, dispatcher, true);
-						other.interactWith(context, dispatcher, false); 
-					}
-					count = 0;
-				}
-			});
+			// the model tests the criterion against all the balls that could be overlapping
+			context.offerCriterion(IN_CONTACT);
+			count = 0;
 		}
 	}
 }
@@ -0,0 +1,20 @@
+package model.strategy;
+
+import model.Ball;
+import model.IBallCmd;
+import provided.util.dispatcher.IDispatcher;
+
+/**
+ * Newtonian gravity between balls: every ball with this strategy attracts every other ball with this strategy in 
+ * proportion to its mass, the square of its radius, and inversely to the square of their distance. The model computes
+ * all the attractions of a tick at once with a Barnes-Hut tree, so the cost grows as N log N in the number of balls.
+ * @author Peter Dulworth (psd2), Rocky Wu (lw31)
+ */
+public class NBodyStrategy extends AUpdateStrategy<IBallCmd> {
+
+	@Override
+	public void updateState(Ball context, IDispatcher<IBallCmd> dispatcher) {
+		// the model accelerates the ball at the end of the tick
+		context.getGravityTree().track(context);
+	}
+}
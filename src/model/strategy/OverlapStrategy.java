@@ -2,6 +2,7 @@ package model.strategy;
 
 import model.Ball;
 import model.IBallCmd;
+import model.IInteractCriterion;
 import model.IUpdateStrategy;
 import provided.util.dispatcher.IDispatcher;
 
@@ -13,6 +14,33 @@ import provided.util.dispatcher.IDispatcher;
  */
 public class OverlapStrategy implements IUpdateStrategy<IBallCmd> {
 
+	/**
+	 * The criterion shared by all overlap balls: the balls are overlapping and the other ball isn't the most recent
+	 * ball that the context ball interacted with.
+	 */
+	private static final IInteractCriterion OVERLAP = new IInteractCriterion() {
+		@Override
+		public boolean test(Ball context, Ball other) {
+			double radiusDistance = context.getLocation().distance(other.getLocation());
+			return context.getRadius() + other.getRadius() > radiusDistance && context.getPrevInteraction() != other;
+		}
+
+		@Override
+		public void interact(Ball context, Ball other, IDispatcher<IBallCmd> disp) {
+			// invoke the interaction strategies of the two interacting balls 
+			IInteractCriterion.super.interact(context, other, disp);
+
+			// set the previous interaction fields of each ball 
+			context.setPrevInteraction(other);
+			other.setPrevInteraction(context);
+		}
+
+		@Override
+		public boolean isLocal() {
+			return true;
+		}
+	};
+
 	/**
 	 * Initialize the previous interaction of the context ball to be itself.
 	 * We do this because every time a ball sends a command, it checks to make sure
@@ -25,30 +53,7 @@ public class OverlapStrategy implements IUpdateStrategy<IBallCmd> {
 
 	@Override
 	public void updateState(Ball context, IDispatcher<IBallCmd> dispatcher) {
-		
-		// send a command to all balls
-		dispatcher.updateAll((other, disp) -> {
-
-			// check if you are receiving your own command 
-			if (context != other) {
-				double radiusDistance = context.getLocation().distance(other.getLocation());
-				Boolean isOverlapping = context.getRadius() + other.getRadius() > radiusDistance; 
-				
-				// if the balls are overlapping
-				if (isOverlapping) {
-					
-					// if the other ball isn't the most recent ball that the context ball interacted with 
-					if (context.getPrevInteraction() != other) {
-						// invoke the interaction strategies of the two interacting balls 
-						context.interactWith(other, dispatcher, true);
-						other.interactWith(context, dispatcher, false);
-
-						// set the previous interaction fields of each ball 
-						context.setPrevInteraction(other);
-						other.setPrevInteraction(context);
-					}
-				}
-			}
-		});
+		// the model tests the criterion against all the balls that could be overlapping
+		context.offerCriterion(OVERLAP);
 	}
 }
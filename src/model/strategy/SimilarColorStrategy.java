@@ -4,6 +4,7 @@ import java.awt.Color;
 
 import model.Ball;
 import model.IBallCmd;
+import model.IInteractCriterion;
 import model.IUpdateStrategy;
 import provided.util.dispatcher.IDispatcher;
 
@@ -15,6 +16,11 @@ import provided.util.dispatcher.IDispatcher;
  */
 public class SimilarColorStrategy implements IUpdateStrategy<IBallCmd> {
 
+	/**
+	 * The criterion: the balls have similar colors.
+	 */
+	private final IInteractCriterion similarColor = (context, other) -> areSimilarColors(context.getColor(), other.getColor());
+
 	/**
 	 * Initialize the previous interaction of the context ball to be itself.
 	 * We do this because every time a ball sends a command, it checks to make sure
@@ -26,21 +32,9 @@ public class SimilarColorStrategy implements IUpdateStrategy<IBallCmd> {
 	}
 
 	@Override
-	public void updateState(Ball context, IDispatcher<IBallCmd> dispatcher) {		
-		// send a command to all balls
-		dispatcher.updateAll((other, disp) -> {
-			// check if you are receiving your own command 
-			if (context != other) {
-				Color c1 = context.getColor();
-				Color c2 = other.getColor();
-				
-				if (areSimilarColors(c1, c2)) {
-					// invoke the interaction strategies of the two interacting balls 
-					context.interactWith(other, dispatcher, true);
-					other.interactWith(context, dispatcher, false);
-				}
-			}
-		});
+	public void updateState(Ball context, IDispatcher<IBallCmd> dispatcher) {
+		// the model tests the criterion against every other ball
+		context.offerCriterion(similarColor);
 	}
 	
 	/**
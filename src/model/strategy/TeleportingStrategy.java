@@ -29,8 +29,8 @@ public class TeleportingStrategy extends AUpdateStrategy<IBallCmd> {
 		counter += 1;
 		if (counter % teleportPeriod == 0) {
 			Point p = Randomizer.Singleton
-					.randomLoc(new Dimension(context.getContainer().getWidth() - (2 * context.getRadius()),
-							context.getContainer().getHeight() - (2 * context.getRadius())));
+					.randomLoc(new Dimension(context.getWorldWidth() - (2 * context.getRadius()),
+							context.getWorldHeight() - (2 * context.getRadius())));
 			p.x += context.getRadius(); // move p to the right by r
 			p.y += context.getRadius(); // move p down by r
 			context.setLocation(p);
@@ -16,8 +16,8 @@ public class ZoneStrategy extends AUpdateStrategy<IBallCmd> {
 	public void updateState(Ball context, IDispatcher<IBallCmd> disp) {
 		int x = context.getLocation().x;
 		int y = context.getLocation().y;
-		int w = context.getContainer().getWidth();
-		int h = context.getContainer().getHeight();
+		int w = context.getWorldWidth();
+		int h = context.getWorldHeight();
 
 		// top left
 		if (x > 0 && x <= w / 2 && y > 0 && y <= h / 2) {
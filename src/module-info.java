@@ -8,4 +8,7 @@
  */
 module HW05 {
 	requires java.desktop;
+	requires jdk.management;
+	requires jdk.jfr;
+	requires jdk.httpserver;
 }
\ No newline at end of file
@@ -1,6 +1,9 @@
 package provided.util.dispatcher;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
+import java.util.function.BiPredicate;
 
 /**
  * Top-level abstraction of a Dispatcher which is the Observable in the 
@@ -58,4 +61,33 @@ public interface IDispatcher<TMsg> {
 	 * @param msg   The IMsg to send to all the observers
 	 */
 	public void updateAll(TMsg msg);
+
+	/**
+	 * Applies the given command to every unordered pair of distinct observers in the dispatcher exactly once,
+	 * i.e. N*(N-1)/2 times for N observers instead of the N*N times of two nested updateAll() calls.
+	 * @param cmd  The command to apply to each pair
+	 */
+	public default void updateAllPairs(IPairCmd<TMsg> cmd) {
+		updateAllPairs((first, second) -> true, cmd);
+	}
+
+	/**
+	 * Applies the given command to every unordered pair of distinct observers in the dispatcher that passes the 
+	 * given filter, visiting each pair exactly once. The filter is a cheap broadphase test that is evaluated 
+	 * before the command, e.g. a bounding box check.
+	 * The default implementation works on a copy of the observers, so observers removed by the command are still visited.
+	 * Implementations may override this to skip them.
+	 * @param filter  The test that a pair must pass for the command to be applied
+	 * @param cmd  The command to apply to each pair that passes the filter
+	 */
+	public default void updateAllPairs(BiPredicate<IObserver<TMsg>, IObserver<TMsg>> filter, IPairCmd<TMsg> cmd) {
+		List<IObserver<TMsg>> observers = new ArrayList<IObserver<TMsg>>(getAllObservers());
+		for (int i = 0; i < observers.size(); i++) {
+			for (int j = i + 1; j < observers.size(); j++) {
+				if (filter.test(observers.get(i), observers.get(j))) {
+					cmd.apply(observers.get(i), observers.get(j), this);
+				}
+			}
+		}
+	}
 }
@@ -0,0 +1,19 @@
+package provided.util.dispatcher;
+
+/**
+ * A command that is applied to an unordered pair of observers of a dispatcher, see IDispatcher.updateAllPairs().
+ * @author Peter Dulworth (psd2), Rocky Wu (lw31)
+ *
+ * @param <TMsg>  The type of message that the observers of the dispatcher receive.
+ */
+@FunctionalInterface
+public interface IPairCmd<TMsg> {
+
+	/**
+	 * Processes one pair of observers. The order of the two observers carries no meaning.
+	 * @param first One observer of the pair.
+	 * @param second The other observer of the pair.
+	 * @param disp The dispatcher that holds the observers.
+	 */
+	public void apply(IObserver<TMsg> first, IObserver<TMsg> second, IDispatcher<TMsg> disp);
+}
@@ -0,0 +1,251 @@
+package provided.util.dispatcher.impl;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiPredicate;
+
+import provided.util.dispatcher.IDispatcher;
+import provided.util.dispatcher.IObserver;
+import provided.util.dispatcher.IPairCmd;
+
+/**
+ * A sequential dispatcher that holds its observers in a dense array. Every observer is given a stable integer id when
+ * it is added, adding and removing observers are O(1) (removal swaps the last observer into the hole) and updateAll()
+ * is a plain indexed loop over the array. The iteration order is therefore the order of addition, perturbed by removals,
+ * rather than the hashCode order of ADispatcher.
+ *
+ * Structural changes made while updateAll() is running, e.g. by an observer that spawns or kills other observers, are
+ * deferred: an observer removed during updateAll() is skipped for the rest of that call, an observer removed and added
+ * back is simply revived, and an observer added during updateAll() is first updated by the next call. The deferred
+ * removals are applied in one pass when the outermost updateAll() returns.
+ *
+ * This dispatcher is NOT thread-safe and must only be used from one thread at a time.
+ * @author Peter Dulworth (psd2), Rocky Wu (lw31)
+ *
+ * @param <TMsg>  The type of message being sent to the observers.
+ */
+public class IndexedDispatcher<TMsg> implements IDispatcher<TMsg> {
+
+	/**
+	 * The observers. Only the first size entries are used.
+	 */
+	private IObserver<TMsg>[] observers = newArray(16);
+
+	/**
+	 * The id of each observer in the observers array.
+	 */
+	private int[] ids = new int[16];
+
+	/**
+	 * Marks the observers whose removal has been deferred.
+	 */
+	private boolean[] removed = new boolean[16];
+
+	/**
+	 * The number of entries in use in the observers array.
+	 */
+	private int size = 0;
+
+	/**
+	 * The number of observers visited by updateAll(). Observers at or beyond this index were added during the current updateAll().
+	 */
+	private int visible = 0;
+
+	/**
+	 * The index of every observer in the observers array.
+	 */
+	private Map<IObserver<TMsg>, Integer> index = new HashMap<IObserver<TMsg>, Integer>();
+
+	/**
+	 * The indices of the observers whose removal has been deferred.
+	 */
+	private int[] removedList = new int[16];
+
+	/**
+	 * The number of entries in removedList.
+	 */
+	private int nRemoved = 0;
+
+	/**
+	 * The id to give to the next added observer.
+	 */
+	private int nextId = 0;
+
+	/**
+	 * The nesting depth of updateAll() calls. Removals are only applied at depth zero.
+	 */
+	private int depth = 0;
+
+	/**
+	 * Allocates an array of observers.
+	 * @param <T> The type of message of the observers.
+	 * @param length The length of the array.
+	 * @return The new array.
+	 */
+	@SuppressWarnings("unchecked")
+	private static <T> IObserver<T>[] newArray(int length) {
+		return (IObserver<T>[]) new IObserver<?>[length];
+	}
+
+	/**
+	 * Returns the id that was given to the observer when it was added. The id does not change while the observer
+	 * stays in the dispatcher and is never given to another observer.
+	 * @param obs The observer, as determined by equals().
+	 * @return The id of the observer or -1 if it is not in the dispatcher.
+	 */
+	public int getId(IObserver<TMsg> obs) {
+		Integer i = index.get(obs);
+		if (null == i || removed[i]) {
+			return -1;
+		}
+		return ids[i];
+	}
+
+	@Override
+	public boolean addObserver(IObserver<TMsg> obs) {
+		Integer i = index.get(obs);
+		if (null != i) {
+			if (removed[i]) { // removal was deferred, so simply revive it
+				removed[i] = false;
+				return true;
+			}
+			return false;
+		}
+		if (size == observers.length) {
+			int capacity = 2 * size;
+			observers = Arrays.copyOf(observers, capacity);
+			ids = Arrays.copyOf(ids, capacity);
+			removed = Arrays.copyOf(removed, capacity);
+		}
+		observers[size] = obs;
+		ids[size] = nextId++;
+		index.put(obs, size);
+		size++;
+		if (depth == 0) {
+			visible = size;
+		}
+		return true;
+	}
+
+	@Override
+	public IObserver<TMsg> removeObserver(IObserver<TMsg> obs) {
+		Integer i = index.get(obs);
+		if (null == i || removed[i]) {
+			return null;
+		}
+		// Note that equality does not guarantee that two objects are identically the same entity,
+		// so must retrieve the actual entity in the collection.
+		IObserver<TMsg> foundObs = observers[i];
+		if (depth > 0 && i < visible) {
+			// The loop in updateAll() may not have reached this observer yet, so it cannot be moved.
+			removed[i] = true;
+			if (nRemoved == removedList.length) {
+				removedList = Arrays.copyOf(removedList, 2 * nRemoved);
+			}
+			removedList[nRemoved++] = i;
+		} else {
+			swapRemove(i);
+		}
+		return foundObs;
+	}
+
+	/**
+	 * Removes the observer at the given index by moving the last observer into its place.
+	 * @param i The index of the observer to remove.
+	 */
+	private void swapRemove(int i) {
+		index.remove(observers[i]);
+		int last = --size;
+		if (i != last) {
+			observers[i] = observers[last];
+			ids[i] = ids[last];
+			removed[i] = removed[last];
+			index.put(observers[i], i);
+		}
+		observers[last] = null;
+		removed[last] = false;
+		if (depth == 0) {
+			visible = size;
+		}
+	}
+
+	@Override
+	public Set<IObserver<TMsg>> getAllObservers() {
+		Set<IObserver<TMsg>> result = new LinkedHashSet<IObserver<TMsg>>();
+		for (int i = 0; i < size; i++) {
+			if (!removed[i]) {
+				result.add(observers[i]);
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public Set<IObserver<TMsg>> removeAllObservers() {
+		Set<IObserver<TMsg>> original_set = this.getAllObservers();
+		for (int i = size - 1; i >= 0; i--) {
+			if (!removed[i]) {
+				removeObserver(observers[i]);
+			}
+		}
+		return original_set;
+	}
+
+	@Override
+	public void updateAll(TMsg msg) {
+		depth++;
+		try {
+			int n = visible;
+			for (int i = 0; i < n; i++) {
+				if (!removed[i]) {
+					observers[i].update(this, msg);
+				}
+			}
+		} finally {
+			if (--depth == 0) {
+				flush();
+			}
+		}
+	}
+
+	/**
+	 * Visits each unordered pair of observers once with an indexed double loop. Observers removed by the command are
+	 * skipped for the rest of the call, and observers added by it are not visited, as in updateAll().
+	 */
+	@Override
+	public void updateAllPairs(BiPredicate<IObserver<TMsg>, IObserver<TMsg>> filter, IPairCmd<TMsg> cmd) {
+		depth++;
+		try {
+			int n = visible;
+			for (int i = 0; i < n; i++) {
+				for (int j = i + 1; j < n && !removed[i]; j++) {
+					if (!removed[j] && filter.test(observers[i], observers[j])) {
+						cmd.apply(observers[i], observers[j], this);
+					}
+				}
+			}
+		} finally {
+			if (--depth == 0) {
+				flush();
+			}
+		}
+	}
+
+	/**
+	 * Applies the deferred removals and makes the observers added during updateAll() visible.
+	 */
+	private void flush() {
+		// Removing from the highest index down guarantees that the observer swapped into a hole is never itself pending removal.
+		Arrays.sort(removedList, 0, nRemoved);
+		for (int k = nRemoved - 1; k >= 0; k--) {
+			if (removed[removedList[k]]) { // skip observers that were added back
+				swapRemove(removedList[k]);
+			}
+		}
+		nRemoved = 0;
+		visible = size;
+	}
+}
@@ -1,17 +1,24 @@
 package provided.util.loader.impl;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.*;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 
 import provided.util.loader.IObjectLoader;
 
 
 /**
- * Factory that dynamically class loads and instantiates an object of type ReturnT
+ * Factory that dynamically class loads and instantiates an object of type ReturnT.
+ * The constructor found for a class name and the classes of the arguments is cached as a MethodHandle, so only the 
+ * first instantiation pays for the class lookup and the constructor search, and the following ones cost little more 
+ * than a direct new.
  * @author Stephen Wong
  *
  * @param <ReturnT>  The type of object to be created.
@@ -48,6 +55,52 @@ public class ObjectLoader<ReturnT> implements IObjectLoader<ReturnT> {
 		}
 	};
 	
+	/**
+	 * The constructors found so far, keyed by class name and argument classes. Each one is adapted to take its 
+	 * arguments as an Object[] and return an Object, so that all of them can be called with invokeExact().
+	 */
+	private Map<ConstructorKey, MethodHandle> constructors = new ConcurrentHashMap<ConstructorKey, MethodHandle>();
+
+	/**
+	 * The key of a cached constructor: a class name plus the classes of the arguments it was looked up with.
+	 */
+	private static final class ConstructorKey {
+
+		/**
+		 * The fully-qualified class name.
+		 */
+		private final String className;
+
+		/**
+		 * The classes of the arguments.
+		 */
+		private final Class<?>[] argTypes;
+
+		/**
+		 * Constructor.
+		 * @param className The fully-qualified class name.
+		 * @param args The arguments, none of which may be null.
+		 */
+		ConstructorKey(String className, Object[] args) {
+			this.className = className;
+			this.argTypes = new Class<?>[args.length];
+			for (int idx = 0; idx < args.length; idx++) {
+				argTypes[idx] = args[idx].getClass();
+			}
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof ConstructorKey && ((ConstructorKey) o).className.equals(className)
+					&& Arrays.equals(((ConstructorKey) o).argTypes, argTypes);
+		}
+
+		@Override
+		public int hashCode() {
+			return className.hashCode() * 31 + Arrays.hashCode(argTypes);
+		}
+	}
+
 	/**
 	 * Lambda function to return an error object of type ReturnT
 	 */
@@ -70,14 +123,46 @@ public class ObjectLoader<ReturnT> implements IObjectLoader<ReturnT> {
 	@SuppressWarnings("unchecked")
 	public ReturnT loadInstance(String className, Object... args) { 
 		try {
-			return (ReturnT) getConstructor(Class.forName(className), args).newInstance(args);
+			return (ReturnT) getConstructorHandle(className, args).invokeExact(args);
 		
-		} catch (Exception ex) {
+		} catch (Error err) {
+			throw err;
+		} catch (Throwable ex) {
 			System.err.println("ObjectLoader.loadInstance(" + className + ", " +(new ArrayList<Object>(Arrays.asList(args)))+ "):\n   Exception = " + ex);
 			return errorFac.apply(args); // Make the error object
 		}
 	}
 
+	/**
+	 * Returns the cached handle on the constructor of the given class that accepts the given arguments, finding and 
+	 * caching it first if this is the first request for that class name and those argument classes.
+	 * 
+	 * @param className
+	 *            The fully-qualified name of the class to instantiate.
+	 * @param args
+	 *            a list of input values for the constructor
+	 * @return a MethodHandle of type (Object[])Object that calls the constructor with the elements of its argument.
+	 * @throws Exception
+	 *             when the class cannot be loaded or no constructor can be found that would accept the given
+	 *             parameters.
+	 */
+	private MethodHandle getConstructorHandle(String className, Object[] args) throws Exception {
+		for (Object arg : args) {
+			if (null == arg) {
+				throw new IllegalArgumentException("Cannot match a constructor to a null argument.");
+			}
+		}
+		ConstructorKey key = new ConstructorKey(className, args);
+		MethodHandle handle = constructors.get(key);
+		if (null == handle) {
+			handle = MethodHandles.lookup().unreflectConstructor(getConstructor(Class.forName(className), args))
+					.asSpreader(Object[].class, args.length)
+					.asType(MethodType.methodType(Object.class, Object[].class));
+			constructors.put(key, handle);
+		}
+		return handle;
+	}
+
 	/**
 	 * Proper form of Class.getConstructor(Class&lt;?&gt;[] parameterTypes) that
 	 * returns a constructor that will return a constructor of the given class
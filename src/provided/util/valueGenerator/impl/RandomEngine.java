@@ -0,0 +1,176 @@
+package provided.util.valueGenerator.impl;
+
+import java.util.SplittableRandom;
+
+/**
+ * The source of randomness behind the randomizers, which hands out independent SplittableRandom streams that all
+ * derive from one seed instead of sharing the single synchronized generator of Math.random():
+ * <ul>
+ * <li>current() is the stream of the calling thread, computed from the seed and the name of the thread, so that
+ * threads drawing numbers in parallel never contend and each thread, e.g. the GUI thread or the simulation thread,
+ * draws the same numbers in every run with the same seed, whichever thread draws first.</li>
+ * <li>forKey() is the stream of a key such as the ordinal of a ball, computed from the seed and the key alone, so that
+ * it is the same whichever thread asks for it and in whatever order.</li>
+ * </ul>
+ * Setting the seed makes a run reproducible: every stream handed out afterwards derives from it.
+ * @author Peter Dulworth (psd2), Rocky Wu (lw31)
+ */
+public class RandomEngine {
+
+	/**
+	 * Singleton instance of this class.
+	 */
+	public static final RandomEngine Singleton = new RandomEngine();
+
+	/**
+	 * The odd constant that spaces the seeds of the keyed streams apart, the golden ratio in 64-bit fixed point.
+	 */
+	private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+	/**
+	 * The seed of the thread streams and the keyed streams.
+	 */
+	private volatile long seed;
+
+	/**
+	 * The number of times the seed was set, which tells the thread streams computed from an older seed to start over.
+	 */
+	private volatile int generation = 0;
+
+	/**
+	 * The stream of each thread, with the generation of the seed it was computed from.
+	 */
+	private final ThreadLocal<ThreadStream> threadStream = new ThreadLocal<ThreadStream>();
+
+	/**
+	 * The stream of a thread, tagged with the generation of the seed it was computed from.
+	 */
+	private static class ThreadStream {
+
+		/**
+		 * The generation of the seed the stream was computed from.
+		 */
+		private final int generation;
+
+		/**
+		 * The stream.
+		 */
+		private final SplittableRandom random;
+
+		/**
+		 * Constructor.
+		 * @param generation The generation of the seed the stream was computed from.
+		 * @param random The stream.
+		 */
+		private ThreadStream(int generation, SplittableRandom random) {
+			this.generation = generation;
+			this.random = random;
+		}
+	}
+
+	/**
+	 * Private constructor for use by the Singleton only. Seeds the engine from the clock, so that runs differ unless a seed is set.
+	 */
+	private RandomEngine() {
+		seed = mix(System.nanoTime() ^ System.currentTimeMillis() * GOLDEN_GAMMA);
+	}
+
+	/**
+	 * Reseeds the engine. Every thread starts its stream over from the new seed the next time it draws a number, and
+	 * the keyed streams handed out afterwards derive from the new seed.
+	 * @param seed The new seed.
+	 */
+	public synchronized void setSeed(long seed) {
+		this.seed = seed;
+		generation++;
+	}
+
+	/**
+	 * @return The current seed.
+	 */
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * Returns the stream of the calling thread, which depends only on the seed and the name of the thread, e.g.
+	 * "AWT-EventQueue-0" or "BallModel simulation", not on the order in which the threads first draw. Threads with the
+	 * same name draw the same numbers, so threads that draw at the same time must be named apart. The stream must only
+	 * be used by this thread.
+	 * @return The stream of the calling thread.
+	 */
+	public SplittableRandom current() {
+		ThreadStream ts = threadStream.get();
+		int gen = generation;
+		if (null == ts || ts.generation != gen) {
+			ts = new ThreadStream(gen, forName(Thread.currentThread().getName()));
+			threadStream.set(ts);
+		}
+		return ts.random;
+	}
+
+	/**
+	 * Returns a new stream for the given thread name, which depends only on the seed and the name.
+	 * @param name The name of a thread.
+	 * @return A new stream.
+	 */
+	private SplittableRandom forName(String name) {
+		long h = 0;
+		for (int i = 0; i < name.length(); i++) {
+			h = 31 * h + name.charAt(i);
+		}
+		// Mixed twice, so that the streams of the names are unrelated to those of the small keys of forKey().
+		return new SplittableRandom(mix(seed ^ mix(h + GOLDEN_GAMMA)));
+	}
+
+	/**
+	 * Returns a new stream for the given key, which depends only on the seed and the key.
+	 * @param key The key, e.g. the ordinal of a ball.
+	 * @return A new stream, to be used by one thread at a time.
+	 */
+	public SplittableRandom forKey(long key) {
+		return new SplittableRandom(mix(seed + (key + 1) * GOLDEN_GAMMA));
+	}
+
+	/**
+	 * Returns a random integer greater than or equal to min and less than or equal to max.
+	 * @param random The stream to draw from.
+	 * @param min The minimum allowed value.
+	 * @param max The maximum allowed value. If less than min, min is returned.
+	 * @return An int subject to the given bounds.
+	 */
+	public static int nextInt(SplittableRandom random, int min, int max) {
+		return max <= min ? min : (int) random.nextLong(min, (long) max + 1);
+	}
+
+	/**
+	 * Returns a random double greater than or equal to min and less than max.
+	 * @param random The stream to draw from.
+	 * @param min The minimum allowed value.
+	 * @param max The maximum allowed value. If not greater than min, min is returned.
+	 * @return A double subject to the given bounds.
+	 */
+	public static double nextDouble(SplittableRandom random, double min, double max) {
+		return max <= min ? min : random.nextDouble(min, max);
+	}
+
+	/**
+	 * Returns a random opaque color as an RGB int, without allocating a Color.
+	 * @param random The stream to draw from.
+	 * @return The color, as 0xFFRRGGBB.
+	 */
+	public static int nextRGB(SplittableRandom random) {
+		return 0xFF000000 | random.nextInt(0x1000000);
+	}
+
+	/**
+	 * Scrambles the bits of the given value, the finalizer of MurmurHash3, so that nearby keys give unrelated seeds.
+	 * @param z The value.
+	 * @return The scrambled value.
+	 */
+	private static long mix(long z) {
+		z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+		z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+		return z ^ (z >>> 33);
+	}
+}
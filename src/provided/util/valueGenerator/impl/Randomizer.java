@@ -5,7 +5,7 @@ import java.awt.*;
 import provided.util.valueGenerator.IRandomizer;
 
 /**
- * Concrete implementation of IRandomizer
+ * Concrete implementation of IRandomizer, which draws from the stream of the calling thread, see RandomEngine.
  */
 public class Randomizer implements IRandomizer {
 	
@@ -34,12 +34,12 @@ public class Randomizer implements IRandomizer {
 
 	@Override
 	public int randomInt(int min, int max) {
-		return (int)Math.floor((Math.random()*(1+max-min))+min);
+		return RandomEngine.nextInt(RandomEngine.Singleton.current(), min, max);
 	}
 
 	@Override
 	public double randomDouble(double min, double max) {
-		return (Math.random()*(max-min))+min;
+		return RandomEngine.nextDouble(RandomEngine.Singleton.current(), min, max);
 	}
 
 	@Override
@@ -60,12 +60,12 @@ public class Randomizer implements IRandomizer {
 
 	@Override
 	public Color randomColor() {
-		return new Color( randomInt(0,255),randomInt(0,255),randomInt(0,255));
+		return new Color(RandomEngine.nextRGB(RandomEngine.Singleton.current()));
 	}
 
 	@Override
 	public Object randomChoice(Object x, Object y, double probX) {
-		return (Math.random()<probX) ? x: y;
+		return (RandomEngine.Singleton.current().nextDouble() < probX) ? x : y;
 
 	}
 }
@@ -0,0 +1,73 @@
+package util;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A LatencyHistogram that many threads can record into at once without serializing on a lock or a shared counter:
+ * every bucket is a LongAdder, created the first time a value falls in it. Reading the histogram takes a snapshot,
+ * which is consistent with the values recorded before the call but may miss some recorded during it.
+ * @author Peter Dulworth (psd2), Rocky Wu (lw31)
+ */
+public class ConcurrentLatencyHistogram {
+
+	/**
+	 * The counts of the buckets, in the layout of LatencyHistogram, or null for the buckets that are still empty.
+	 */
+	private final AtomicReferenceArray<LongAdder> counts = new AtomicReferenceArray<LongAdder>(LatencyHistogram.BUCKETS);
+
+	/**
+	 * The sum of the values recorded.
+	 */
+	private final DoubleAdder sum = new DoubleAdder();
+
+	/**
+	 * The sum of the squares of the values recorded.
+	 */
+	private final DoubleAdder sumSquares = new DoubleAdder();
+
+	/**
+	 * The smallest value recorded.
+	 */
+	private final LongAccumulator min = new LongAccumulator(Math::min, Long.MAX_VALUE);
+
+	/**
+	 * The largest value recorded.
+	 */
+	private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+	/**
+	 * Records a value. Safe to call from any thread.
+	 * @param nanos The value, in nanoseconds. Negative values are recorded as 0.
+	 */
+	public void record(long nanos) {
+		long v = Math.max(0, nanos);
+		int bucket = LatencyHistogram.bucketOf(v);
+		LongAdder adder = counts.get(bucket);
+		if (null == adder) {
+			counts.compareAndSet(bucket, null, new LongAdder());
+			adder = counts.get(bucket);
+		}
+		adder.increment();
+		sum.add(v);
+		sumSquares.add((double) v * v);
+		min.accumulate(v);
+		max.accumulate(v);
+	}
+
+	/**
+	 * @return A copy of the values recorded so far, to read the percentiles from.
+	 */
+	public LatencyHistogram snapshot() {
+		long[] bucketCounts = new long[LatencyHistogram.BUCKETS];
+		for (int i = 0; i < bucketCounts.length; i++) {
+			LongAdder adder = counts.get(i);
+			bucketCounts[i] = null == adder ? 0 : adder.sum();
+		}
+		LatencyHistogram copy = new LatencyHistogram();
+		copy.add(bucketCounts, sum.sum(), sumSquares.sum(), min.get(), max.get());
+		return copy;
+	}
+}
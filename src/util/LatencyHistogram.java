@@ -0,0 +1,247 @@
+package util;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+
+/**
+ * A histogram of latencies in nanoseconds with a fixed relative precision, for reporting percentiles of tick times.
+ * Values are counted in log-linear buckets: each power of two is split into SUB_BUCKETS / 2 linear buckets, so a value
+ * is known to within 2/SUB_BUCKETS of itself whatever its magnitude, with a fixed amount of memory and no allocation
+ * per recorded value. Not thread-safe.
+ * @author Peter Dulworth (psd2), Rocky Wu (lw31)
+ */
+public class LatencyHistogram {
+
+	/**
+	 * The log2 of SUB_BUCKETS.
+	 */
+	private static final int SUB_BITS = 7;
+
+	/**
+	 * The number of linear buckets below which each value has its own bucket. Values are known to within 2/SUB_BUCKETS, i.e. 1.6%.
+	 */
+	public static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+	/**
+	 * The number of buckets. Values below SUB_BUCKETS each have their own bucket; above that, each power of two has
+	 * SUB_BUCKETS / 2 buckets, since the top bit of the value is always set.
+	 */
+	static final int BUCKETS = SUB_BUCKETS + (64 - SUB_BITS) * (SUB_BUCKETS / 2);
+
+	/**
+	 * The counts of the buckets.
+	 */
+	private final long[] counts = new long[BUCKETS];
+
+	/**
+	 * The number of values recorded.
+	 */
+	private long count = 0;
+
+	/**
+	 * The sum of the values recorded.
+	 */
+	private double sum = 0;
+
+	/**
+	 * The sum of the squares of the values recorded.
+	 */
+	private double sumSquares = 0;
+
+	/**
+	 * The smallest value recorded.
+	 */
+	private long min = Long.MAX_VALUE;
+
+	/**
+	 * The largest value recorded.
+	 */
+	private long max = 0;
+
+	/**
+	 * Records a value.
+	 * @param nanos The value, in nanoseconds. Negative values are recorded as 0.
+	 */
+	public void record(long nanos) {
+		long v = Math.max(0, nanos);
+		counts[bucketOf(v)]++;
+		count++;
+		sum += v;
+		sumSquares += (double) v * v;
+		min = Math.min(min, v);
+		max = Math.max(max, v);
+	}
+
+	/**
+	 * Adds the values counted elsewhere in buckets of the same layout, e.g. by a ConcurrentLatencyHistogram.
+	 * @param bucketCounts The count of each bucket.
+	 * @param sum The sum of the values.
+	 * @param sumSquares The sum of the squares of the values.
+	 * @param min The smallest value.
+	 * @param max The largest value.
+	 */
+	void add(long[] bucketCounts, double sum, double sumSquares, long min, long max) {
+		long added = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			counts[i] += bucketCounts[i];
+			added += bucketCounts[i];
+		}
+		if (0 == added) {
+			return;
+		}
+		count += added;
+		this.sum += sum;
+		this.sumSquares += sumSquares;
+		this.min = Math.min(this.min, min);
+		this.max = Math.max(this.max, max);
+	}
+
+	/**
+	 * Forgets all the values recorded.
+	 */
+	public void reset() {
+		Arrays.fill(counts, 0);
+		count = 0;
+		sum = 0;
+		sumSquares = 0;
+		min = Long.MAX_VALUE;
+		max = 0;
+	}
+
+	/**
+	 * @return The number of values recorded.
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * @return The smallest value recorded, or 0 if there is none.
+	 */
+	public long getMin() {
+		return 0 == count ? 0 : min;
+	}
+
+	/**
+	 * @return The largest value recorded.
+	 */
+	public long getMax() {
+		return max;
+	}
+
+	/**
+	 * @return The sum of the values recorded.
+	 */
+	public double getSum() {
+		return sum;
+	}
+
+	/**
+	 * @return The mean of the values recorded, or 0 if there is none.
+	 */
+	public double getMean() {
+		return 0 == count ? 0 : sum / count;
+	}
+
+	/**
+	 * @return The standard deviation of the values recorded, or 0 if there is none.
+	 */
+	public double getStdDeviation() {
+		if (0 == count) {
+			return 0;
+		}
+		double mean = sum / count;
+		return Math.sqrt(Math.max(0, sumSquares / count - mean * mean));
+	}
+
+	/**
+	 * Returns the value below or at which the given percentage of the values recorded fall, to within the precision of
+	 * the histogram.
+	 * @param percentile The percentage, from 0 to 100, e.g. 99.9.
+	 * @return The value at the percentile, or 0 if no value was recorded.
+	 */
+	public long getValueAtPercentile(double percentile) {
+		if (0 == count) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * count));
+		long seen = 0;
+		for (int i = 0; i < counts.length; i++) {
+			seen += counts[i];
+			if (seen >= rank) {
+				return Math.min(max, Math.max(min, highestValueOf(i)));
+			}
+		}
+		return max;
+	}
+
+	/**
+	 * Returns the number of values recorded that are at most the given value, to within the precision of the histogram,
+	 * e.g. for the cumulative buckets of a Prometheus histogram.
+	 * @param nanos The value.
+	 * @return The number of values below or at the value.
+	 */
+	public long getCountAtOrBelow(long nanos) {
+		if (nanos < 0) {
+			return 0;
+		}
+		int last = bucketOf(nanos);
+		long seen = 0;
+		for (int i = 0; i <= last; i++) {
+			seen += counts[i];
+		}
+		return seen;
+	}
+
+	/**
+	 * Writes the distribution of the values recorded as a table of percentiles, one line per non-empty bucket, in the
+	 * layout of the percentile distribution files of HdrHistogram, so that runs can be compared with its plotter or a
+	 * spreadsheet. The values are written in milliseconds.
+	 * @param out The stream to write to.
+	 */
+	public void writePercentiles(PrintStream out) {
+		out.printf("%12s %14s %10s %14s%n%n", "Value", "Percentile", "TotalCount", "1/(1-Percentile)");
+		long seen = 0;
+		for (int i = 0; i < counts.length; i++) {
+			if (0 == counts[i]) {
+				continue;
+			}
+			seen += counts[i];
+			double fraction = (double) seen / count;
+			double value = Math.min(max, highestValueOf(i)) / 1e6;
+			if (seen < count) {
+				out.printf("%12.3f %14.12f %10d %14.2f%n", value, fraction, seen, 1 / (1 - fraction));
+			} else {
+				out.printf("%12.3f %14.12f %10d%n", value, fraction, seen);
+			}
+		}
+		out.printf("#[Mean    = %12.3f, StdDeviation   = %12.3f]%n", getMean() / 1e6, getStdDeviation() / 1e6);
+		out.printf("#[Max     = %12.3f, Total count    = %12d]%n", max / 1e6, count);
+		out.printf("#[Buckets = %12d, SubBuckets     = %12d]%n", counts.length, SUB_BUCKETS);
+	}
+
+	/**
+	 * @param v A non-negative value.
+	 * @return The index of the bucket that the value is counted in.
+	 */
+	static int bucketOf(long v) {
+		if (v < SUB_BUCKETS) {
+			return (int) v;
+		}
+		int shift = 63 - Long.numberOfLeadingZeros(v) - (SUB_BITS - 1);
+		return SUB_BUCKETS + (shift - 1) * (SUB_BUCKETS / 2) + (int) (v >>> shift) - SUB_BUCKETS / 2;
+	}
+
+	/**
+	 * @param bucket The index of a bucket.
+	 * @return The largest value that is counted in the bucket.
+	 */
+	private static long highestValueOf(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		int shift = (bucket - SUB_BUCKETS) / (SUB_BUCKETS / 2) + 1;
+		long sub = (bucket - SUB_BUCKETS) % (SUB_BUCKETS / 2) + SUB_BUCKETS / 2;
+		return ((sub + 1) << shift) - 1;
+	}
+}
@@ -0,0 +1,480 @@
+package util;
+
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiPredicate;
+
+import provided.util.dispatcher.IDispatcher;
+import provided.util.dispatcher.IObserver;
+import provided.util.dispatcher.IPairCmd;
+import util.jfr.UpdateAllEvent;
+
+/**
+ * A decorator that meters the traffic of any dispatcher, e.g. a SequentialDispatcher or a ParallelDispatcher: the
+ * messages delivered, the updateAll() calls and their latency, the updateAll() calls made by observers while they
+ * handle a message (the N*N fan-out of e.g. the spawn strategy) with their deepest nesting, the updateAllPairs() calls,
+ * their latency and the pairs they visit, and the observers added and removed. All the counters are LongAdders, so
+ * metering does not serialize a parallel dispatch.
+ *
+ * Code that delivers messages or pair commands to the observers directly, without the decorated dispatcher, such as a
+ * spatial index that only visits the neighbors of a ball, reports them with countDirect() so that they are counted too.
+ *
+ * Every updateAll() call is also recorded as an UpdateAllEvent, tagged with the class of the decorated dispatcher, so
+ * that the dispatchers themselves need no instrumentation.
+ *
+ * Observers are handed to the decorated dispatcher wrapped in a forwarder, which counts each message and passes the
+ * observer this decorator instead of the decorated dispatcher, so that the calls an observer makes back, such as a
+ * nested updateAll() or removing itself, are metered too. Outside of the decorated dispatcher only the original
+ * observers are ever seen; a subclass of the decorated dispatcher that needs them can get them with unwrap().
+ *
+ * The nesting depth of an updateAll() call is the number of updateAll() and updateAllPairs() calls running on the
+ * calling thread, itself included. A call made by an observer of a parallel dispatch runs on a worker thread that does not see the calls
+ * running on the others, so it is counted as nested, at depth 2, when another call is running on any thread. The depth
+ * is only tracked once per updateAll() call; each message costs a single uncontended LongAdder increment.
+ * @author Peter Dulworth (psd2), Rocky Wu (lw31)
+ *
+ * @param <TMsg>  The type of message being sent to the observers.
+ */
+public class MeteredDispatcher<TMsg> implements IDispatcher<TMsg> {
+
+	/**
+	 * The decorated dispatcher.
+	 */
+	private final IDispatcher<TMsg> inner;
+
+	/**
+	 * The forwarder of each observer.
+	 */
+	private final Map<IObserver<TMsg>, Forwarder<TMsg>> forwarders = new ConcurrentHashMap<IObserver<TMsg>, Forwarder<TMsg>>();
+
+	/**
+	 * The number of updateAll() and updateAllPairs() calls running on each thread.
+	 */
+	private final ThreadLocal<int[]> running = ThreadLocal.withInitial(() -> new int[1]);
+
+	/**
+	 * The number of updateAll() and updateAllPairs() calls running on all the threads.
+	 */
+	private final AtomicInteger active = new AtomicInteger();
+
+	/**
+	 * The number of messages delivered to observers.
+	 */
+	private final LongAdder messages = new LongAdder();
+
+	/**
+	 * The number of updateAll() calls.
+	 */
+	private final LongAdder updateAllCalls = new LongAdder();
+
+	/**
+	 * The number of updateAll() calls made by an observer while it handled a message.
+	 */
+	private final LongAdder nestedCalls = new LongAdder();
+
+	/**
+	 * The number of updateAllPairs() calls.
+	 */
+	private final LongAdder pairCalls = new LongAdder();
+
+	/**
+	 * The number of pairs that a pair command was applied to.
+	 */
+	private final LongAdder pairs = new LongAdder();
+
+	/**
+	 * The deepest nesting of updateAll() calls since the last sample.
+	 */
+	private final LongAccumulator maxDepth = new LongAccumulator(Math::max, 0);
+
+	/**
+	 * The number of observers added.
+	 */
+	private final LongAdder adds = new LongAdder();
+
+	/**
+	 * The number of observers removed.
+	 */
+	private final LongAdder removes = new LongAdder();
+
+	/**
+	 * The latencies of the outermost updateAll() calls.
+	 */
+	private final ConcurrentLatencyHistogram latency = new ConcurrentLatencyHistogram();
+
+	/**
+	 * The latencies of the outermost updateAllPairs() calls.
+	 */
+	private final ConcurrentLatencyHistogram pairLatency = new ConcurrentLatencyHistogram();
+
+	/**
+	 * The totals at the last sample, see sample().
+	 */
+	private Sample last = new Sample();
+
+	/**
+	 * Counts of the traffic of the dispatcher, either since it was made or between two samples.
+	 */
+	public static class Sample {
+
+		/**
+		 * The number of messages delivered to observers.
+		 */
+		private long messages;
+
+		/**
+		 * The number of updateAll() calls.
+		 */
+		private long updateAllCalls;
+
+		/**
+		 * The number of updateAll() calls made by an observer while it handled a message.
+		 */
+		private long nestedCalls;
+
+		/**
+		 * The number of updateAllPairs() calls.
+		 */
+		private long pairCalls;
+
+		/**
+		 * The number of pairs that a pair command was applied to.
+		 */
+		private long pairs;
+
+		/**
+		 * The deepest nesting of updateAll() calls, 1 if no call was nested and 0 if there was no call.
+		 */
+		private long maxDepth;
+
+		/**
+		 * The number of observers added.
+		 */
+		private long adds;
+
+		/**
+		 * The number of observers removed.
+		 */
+		private long removes;
+
+		/**
+		 * The number of observers at the time of the sample.
+		 */
+		private long observers;
+
+		/**
+		 * @return The number of messages delivered to observers.
+		 */
+		public long getMessages() {
+			return messages;
+		}
+
+		/**
+		 * @return The number of updateAll() calls.
+		 */
+		public long getUpdateAllCalls() {
+			return updateAllCalls;
+		}
+
+		/**
+		 * @return The number of updateAll() calls made by an observer while it handled a message.
+		 */
+		public long getNestedCalls() {
+			return nestedCalls;
+		}
+
+		/**
+		 * @return The number of updateAllPairs() calls.
+		 */
+		public long getPairCalls() {
+			return pairCalls;
+		}
+
+		/**
+		 * @return The number of pairs that a pair command was applied to.
+		 */
+		public long getPairs() {
+			return pairs;
+		}
+
+		/**
+		 * @return The deepest nesting of updateAll() calls, 1 if no call was nested and 0 if there was no call.
+		 */
+		public long getMaxDepth() {
+			return maxDepth;
+		}
+
+		/**
+		 * @return The number of observers added.
+		 */
+		public long getAdds() {
+			return adds;
+		}
+
+		/**
+		 * @return The number of observers removed.
+		 */
+		public long getRemoves() {
+			return removes;
+		}
+
+		/**
+		 * @return The number of observers at the time of the sample.
+		 */
+		public long getObservers() {
+			return observers;
+		}
+
+		@Override
+		public String toString() {
+			return "messages=" + messages + " updateAll=" + updateAllCalls + " nested=" + nestedCalls + " updateAllPairs="
+					+ pairCalls + " pairs=" + pairs + " maxDepth=" + maxDepth + " adds=" + adds + " removes=" + removes + " observers=" + observers;
+		}
+	}
+
+	/**
+	 * Wraps an observer in the decorated dispatcher: counts the messages it gets and passes it the decorator.
+	 * @param <TMsg> The type of message being sent to the observers.
+	 */
+	private static class Forwarder<TMsg> implements IObserver<TMsg> {
+
+		/**
+		 * The decorator.
+		 */
+		private final MeteredDispatcher<TMsg> meter;
+
+		/**
+		 * The wrapped observer.
+		 */
+		private final IObserver<TMsg> obs;
+
+		/**
+		 * Constructor.
+		 * @param meter The decorator.
+		 * @param obs The observer to wrap.
+		 */
+		private Forwarder(MeteredDispatcher<TMsg> meter, IObserver<TMsg> obs) {
+			this.meter = meter;
+			this.obs = obs;
+		}
+
+		@Override
+		public void update(IDispatcher<TMsg> disp, TMsg msg) {
+			meter.messages.increment();
+			obs.update(meter, msg);
+		}
+
+		/**
+		 * Hashes like the wrapped observer, so that dispatchers that order their observers by hashCode, such as
+		 * ADispatcher, keep the order they would have without the decorator.
+		 */
+		@Override
+		public int hashCode() {
+			return obs.hashCode();
+		}
+
+		/**
+		 * Equals the forwarders of equal observers, so that an observer removed and added back during updateAll() is
+		 * revived by dispatchers that defer removals, such as IndexedDispatcher, as it would be without the decorator.
+		 */
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof Forwarder && obs.equals(((Forwarder<?>) o).obs);
+		}
+	}
+
+	/**
+	 * Constructor.
+	 * @param inner The dispatcher to meter. Its observers must only be added and removed through the decorator.
+	 */
+	public MeteredDispatcher(IDispatcher<TMsg> inner) {
+		this.inner = inner;
+	}
+
+	/**
+	 * Returns the observer that the given observer of the decorated dispatcher stands for.
+	 * @param <TMsg> The type of message being sent to the observers.
+	 * @param obs An observer of the decorated dispatcher.
+	 * @return The observer that was added to the decorator, or obs itself if it is not a forwarder.
+	 */
+	public static <TMsg> IObserver<TMsg> unwrap(IObserver<TMsg> obs) {
+		return obs instanceof Forwarder ? ((Forwarder<TMsg>) obs).obs : obs;
+	}
+
+	/**
+	 * @param set Observers of the decorated dispatcher.
+	 * @return The observers that they stand for, in the same order.
+	 */
+	private Set<IObserver<TMsg>> unwrapAll(Set<IObserver<TMsg>> set) {
+		Set<IObserver<TMsg>> result = new LinkedHashSet<IObserver<TMsg>>();
+		for (IObserver<TMsg> obs : set) {
+			result.add(unwrap(obs));
+		}
+		return result;
+	}
+
+	@Override
+	public boolean addObserver(IObserver<TMsg> obs) {
+		Forwarder<TMsg> forwarder = new Forwarder<TMsg>(this, obs);
+		if (null != forwarders.putIfAbsent(obs, forwarder)) {
+			return false;
+		}
+		adds.increment();
+		return inner.addObserver(forwarder);
+	}
+
+	@Override
+	public IObserver<TMsg> removeObserver(IObserver<TMsg> obs) {
+		Forwarder<TMsg> forwarder = forwarders.remove(obs);
+		if (null == forwarder) {
+			return null;
+		}
+		removes.increment();
+		return unwrap(inner.removeObserver(forwarder));
+	}
+
+	@Override
+	public Set<IObserver<TMsg>> getAllObservers() {
+		return unwrapAll(inner.getAllObservers());
+	}
+
+	@Override
+	public Set<IObserver<TMsg>> removeAllObservers() {
+		Set<IObserver<TMsg>> removed = unwrapAll(inner.removeAllObservers());
+		forwarders.keySet().removeAll(removed);
+		removes.add(removed.size());
+		return removed;
+	}
+
+	@Override
+	public void updateAll(TMsg msg) {
+		int[] depth = running.get();
+		boolean nested = enter(depth);
+		updateAllCalls.increment();
+		UpdateAllEvent event = UpdateAllEvent.start();
+		try {
+			if (nested) {
+				nestedCalls.increment();
+				inner.updateAll(msg);
+			} else {
+				long start = System.nanoTime();
+				inner.updateAll(msg);
+				latency.record(System.nanoTime() - start);
+			}
+			event.end(inner.getClass(), forwarders.size());
+		} finally {
+			exit(depth);
+		}
+	}
+
+	@Override
+	public void updateAllPairs(BiPredicate<IObserver<TMsg>, IObserver<TMsg>> filter, IPairCmd<TMsg> cmd) {
+		int[] depth = running.get();
+		boolean nested = enter(depth);
+		pairCalls.increment();
+		try {
+			long start = System.nanoTime();
+			inner.updateAllPairs((first, second) -> filter.test(unwrap(first), unwrap(second)), (first, second, disp) -> {
+				pairs.increment();
+				cmd.apply(unwrap(first), unwrap(second), this);
+			});
+			if (!nested) {
+				pairLatency.record(System.nanoTime() - start);
+			}
+		} finally {
+			exit(depth);
+		}
+	}
+
+	/**
+	 * Counts the messages and pair commands that the caller delivered to observers of the decorated dispatcher
+	 * directly, e.g. a spatial index that only visits the neighbors of a ball, as if the decorated dispatcher had
+	 * delivered them. May be called from several threads at once.
+	 * @param messages The number of messages delivered.
+	 * @param pairCount The number of pairs that a pair command was applied to.
+	 */
+	public void countDirect(long messages, long pairCount) {
+		this.messages.add(messages);
+		pairs.add(pairCount);
+	}
+
+	/**
+	 * Tracks the start of an updateAll() or updateAllPairs() call.
+	 * @param depth The number of calls running on the calling thread.
+	 * @return True if the call is nested in another one.
+	 */
+	private boolean enter(int[] depth) {
+		boolean nested = depth[0]++ > 0 || active.getAndIncrement() > 0;
+		maxDepth.accumulate(Math.max(depth[0], nested ? 2 : 1));
+		return nested;
+	}
+
+	/**
+	 * Tracks the end of an updateAll() or updateAllPairs() call.
+	 * @param depth The number of calls running on the calling thread.
+	 */
+	private void exit(int[] depth) {
+		if (--depth[0] == 0) {
+			active.decrementAndGet();
+		}
+	}
+
+	/**
+	 * @return The traffic since the decorator was made. The deepest nesting is that since the last sample.
+	 */
+	public Sample getTotals() {
+		Sample totals = new Sample();
+		totals.messages = messages.sum();
+		totals.updateAllCalls = updateAllCalls.sum();
+		totals.nestedCalls = nestedCalls.sum();
+		totals.pairCalls = pairCalls.sum();
+		totals.pairs = pairs.sum();
+		totals.maxDepth = maxDepth.get();
+		totals.adds = adds.sum();
+		totals.removes = removes.sum();
+		totals.observers = forwarders.size();
+		return totals;
+	}
+
+	/**
+	 * Returns the traffic since the previous call, e.g. during the last tick. Must not be called from several threads
+	 * at once, and is exact only if no message is being dispatched meanwhile.
+	 * @return The traffic since the previous sample.
+	 */
+	public synchronized Sample sample() {
+		Sample totals = getTotals();
+		totals.maxDepth = maxDepth.getThenReset();
+		Sample delta = new Sample();
+		delta.messages = totals.messages - last.messages;
+		delta.updateAllCalls = totals.updateAllCalls - last.updateAllCalls;
+		delta.nestedCalls = totals.nestedCalls - last.nestedCalls;
+		delta.pairCalls = totals.pairCalls - last.pairCalls;
+		delta.pairs = totals.pairs - last.pairs;
+		delta.maxDepth = totals.maxDepth;
+		delta.adds = totals.adds - last.adds;
+		delta.removes = totals.removes - last.removes;
+		delta.observers = totals.observers;
+		last = totals;
+		return delta;
+	}
+
+	/**
+	 * @return The latencies of the outermost updateAll() calls so far. Nested calls are not timed, since their time is
+	 * part of the call they are nested in.
+	 */
+	public LatencyHistogram getLatency() {
+		return latency.snapshot();
+	}
+
+	/**
+	 * @return The latencies of the outermost updateAllPairs() calls so far.
+	 */
+	public LatencyHistogram getPairLatency() {
+		return pairLatency.snapshot();
+	}
+}
@@ -2,8 +2,11 @@ package util;
 
 import java.awt.*;
 
+import provided.util.valueGenerator.impl.RandomEngine;
+
 /**
- * Utility class that supplies  class routines for generating various random values
+ * Utility class that supplies  class routines for generating various random values, drawn from the stream of the
+ * calling thread, see RandomEngine.
  */
 public class Randomizer implements IRandomizer {
 	/**
@@ -42,7 +45,7 @@ public class Randomizer implements IRandomizer {
 	 * @return an int subject to the given bounds
 	 */
 	public int randomInt(int min, int max) {
-		return (int) Math.floor((Math.random() * (1 + max - min)) + min);
+		return RandomEngine.nextInt(RandomEngine.Singleton.current(), min, max);
 	}
 
 	/**
@@ -52,7 +55,7 @@ public class Randomizer implements IRandomizer {
 	 * @return a double subject to the given bounds
 	 */
 	public double randomDouble(double min, double max) {
-		return (Math.random() * (max - min)) + min;
+		return RandomEngine.nextDouble(RandomEngine.Singleton.current(), min, max);
 	}
 
 	/**
@@ -91,7 +94,7 @@ public class Randomizer implements IRandomizer {
 	 * @return a random Color object
 	 */
 	public Color randomColor() {
-		return new Color(randomInt(0, 255), randomInt(0, 255), randomInt(0, 255));
+		return new Color(RandomEngine.nextRGB(RandomEngine.Singleton.current()));
 	}
 
 	/**
@@ -103,7 +106,7 @@ public class Randomizer implements IRandomizer {
 	 * @return Either x or y as per the probability of choosing them. 
 	 */
 	public Object randomChoice(Object x, Object y, double probX) {
-		return (Math.random() < probX) ? x : y;
+		return (RandomEngine.Singleton.current().nextDouble() < probX) ? x : y;
 
 	}
 }
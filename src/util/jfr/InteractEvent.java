@@ -0,0 +1,86 @@
+package util.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * A JFR event for one interaction of a ball with another, tagged by the class of the interact strategy that ran it and
+ * by the class of the update strategy of the ball.
+ * There can be thousands of interactions per tick, so by default only those of at least 100 us are recorded; a
+ * recording can lower the threshold to see them all.
+ *
+ * Usage: start() the event before the interaction and end() it after. When no recording enables the event, start()
+ * returns a shared inert event instead of allocating one, since escape analysis does not remove it, and end() does
+ * nothing.
+ * @author Peter Dulworth (psd2), Rocky Wu (lw31)
+ */
+@Name("ballworld.Interact")
+@Label("Ball Interaction")
+@Category({ "Ball World", "Model" })
+@Description("One interaction of a ball with another, through its interact strategy.")
+@StackTrace(false)
+@Threshold("100 us")
+public class InteractEvent extends Event {
+
+	/**
+	 * The type of this event, which tells whether a recording enables it.
+	 */
+	private static final EventType TYPE = EventType.getEventType(InteractEvent.class);
+
+	/**
+	 * The event that start() returns while the event is disabled. It is never begun nor committed.
+	 */
+	private static final InteractEvent DISABLED = new InteractEvent();
+
+	/**
+	 * The class of the interact strategy.
+	 */
+	@Label("Strategy")
+	private Class<?> strategy;
+
+	/**
+	 * The class of the update strategy of the ball.
+	 */
+	@Label("Update Strategy")
+	private Class<?> updateStrategy;
+
+	/**
+	 * Whether the ball interacted first, see Ball.interactWith().
+	 */
+	@Label("Interact First")
+	private boolean interactFirst;
+
+	/**
+	 * Creates the event and starts timing it, unless no recording enables the event.
+	 * @return The event, or a shared inert event if it is disabled.
+	 */
+	public static InteractEvent start() {
+		if (!TYPE.isEnabled()) {
+			return DISABLED;
+		}
+		InteractEvent event = new InteractEvent();
+		event.begin();
+		return event;
+	}
+
+	/**
+	 * Stops timing the event and commits it if a recording wants it.
+	 * @param strategy The class of the interact strategy.
+	 * @param updateStrategy The class of the update strategy of the ball.
+	 * @param interactFirst Whether the ball interacted first.
+	 */
+	public void end(Class<?> strategy, Class<?> updateStrategy, boolean interactFirst) {
+		if (this != DISABLED && shouldCommit()) {
+			this.strategy = strategy;
+			this.updateStrategy = updateStrategy;
+			this.interactFirst = interactFirst;
+			commit();
+		}
+	}
+}
@@ -0,0 +1,132 @@
+package util.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A JFR event for one phase of a tick of the BallModel, e.g. moving the balls or running their interactions, so that a
+ * recording shows which phase a slow tick spent its time in. Painting a snapshot is recorded as a phase too.
+ *
+ * Usage: start() the event before the phase and end() it after. When no recording enables the event, start() returns
+ * a shared inert event instead of allocating one, since escape analysis does not remove the ten events of a tick, and
+ * end() does nothing.
+ * @author Peter Dulworth (psd2), Rocky Wu (lw31)
+ */
+@Name("ballworld.TickPhase")
+@Label("Tick Phase")
+@Category({ "Ball World", "Model" })
+@Description("One phase of a tick of the ball model.")
+@StackTrace(false)
+public class TickPhaseEvent extends Event {
+
+	/**
+	 * Running the control commands queued by other threads, e.g. making balls.
+	 */
+	public static final String COMMANDS = "commands";
+
+	/**
+	 * Running the continuous collision engine.
+	 */
+	public static final String COLLISIONS = "collisions";
+
+	/**
+	 * Moving and bouncing every ball.
+	 */
+	public static final String MOVE = "move";
+
+	/**
+	 * Rebuilding the spatial grid.
+	 */
+	public static final String INDEX = "index";
+
+	/**
+	 * Running the update strategy of every ball.
+	 */
+	public static final String UPDATE_STATE = "updateState";
+
+	/**
+	 * Stepping the gravity tree.
+	 */
+	public static final String GRAVITY = "gravity";
+
+	/**
+	 * Testing the interaction criteria and running the interactions.
+	 */
+	public static final String INTERACT = "interact";
+
+	/**
+	 * Freeing the slots of the removed balls.
+	 */
+	public static final String RECLAIM = "reclaim";
+
+	/**
+	 * Capturing the snapshot for the view.
+	 */
+	public static final String SNAPSHOT = "snapshot";
+
+	/**
+	 * Painting a snapshot.
+	 */
+	public static final String PAINT = "paint";
+
+	/**
+	 * The type of this event, which tells whether a recording enables it.
+	 */
+	private static final EventType TYPE = EventType.getEventType(TickPhaseEvent.class);
+
+	/**
+	 * The event that start() returns while the event is disabled. It is never begun nor committed.
+	 */
+	private static final TickPhaseEvent DISABLED = new TickPhaseEvent();
+
+	/**
+	 * The number of the tick.
+	 */
+	@Label("Tick")
+	private long tick;
+
+	/**
+	 * The name of the phase, one of the constants of this class.
+	 */
+	@Label("Phase")
+	private String phase;
+
+	/**
+	 * The number of balls in the store or snapshot at the end of the phase.
+	 */
+	@Label("Balls")
+	private int balls;
+
+	/**
+	 * Creates the event and starts timing it, unless no recording enables the event.
+	 * @return The event, or a shared inert event if it is disabled.
+	 */
+	public static TickPhaseEvent start() {
+		if (!TYPE.isEnabled()) {
+			return DISABLED;
+		}
+		TickPhaseEvent event = new TickPhaseEvent();
+		event.begin();
+		return event;
+	}
+
+	/**
+	 * Stops timing the event and commits it if a recording wants it.
+	 * @param tick The number of the tick.
+	 * @param phase The name of the phase, one of the constants of this class.
+	 * @param balls The number of balls at the end of the phase.
+	 */
+	public void end(long tick, String phase, int balls) {
+		if (this != DISABLED && shouldCommit()) {
+			this.tick = tick;
+			this.phase = phase;
+			this.balls = balls;
+			commit();
+		}
+	}
+}
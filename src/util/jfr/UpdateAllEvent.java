@@ -0,0 +1,76 @@
+package util.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * A JFR event for one updateAll() call of a dispatcher, with the number of observers that it updated. Strategies such
+ * as the spawn strategy call updateAll() from every ball, so by default only the calls of at least 1 ms are recorded;
+ * a recording can lower the threshold.
+ *
+ * Usage: start() the event before the call and end() it after. When no recording enables the event, start() returns a
+ * shared inert event instead of allocating one, since escape analysis does not remove it, and end() does nothing.
+ * @author Peter Dulworth (psd2), Rocky Wu (lw31)
+ */
+@Name("ballworld.UpdateAll")
+@Label("Dispatcher updateAll")
+@Category({ "Ball World", "Dispatcher" })
+@Description("One updateAll() call of a dispatcher.")
+@StackTrace(false)
+@Threshold("1 ms")
+public class UpdateAllEvent extends Event {
+
+	/**
+	 * The type of this event, which tells whether a recording enables it.
+	 */
+	private static final EventType TYPE = EventType.getEventType(UpdateAllEvent.class);
+
+	/**
+	 * The event that start() returns while the event is disabled. It is never begun nor committed.
+	 */
+	private static final UpdateAllEvent DISABLED = new UpdateAllEvent();
+
+	/**
+	 * The class of the dispatcher.
+	 */
+	@Label("Dispatcher")
+	private Class<?> dispatcher;
+
+	/**
+	 * The number of observers of the dispatcher.
+	 */
+	@Label("Observers")
+	private int observers;
+
+	/**
+	 * Creates the event and starts timing it, unless no recording enables the event.
+	 * @return The event, or a shared inert event if it is disabled.
+	 */
+	public static UpdateAllEvent start() {
+		if (!TYPE.isEnabled()) {
+			return DISABLED;
+		}
+		UpdateAllEvent event = new UpdateAllEvent();
+		event.begin();
+		return event;
+	}
+
+	/**
+	 * Stops timing the event and commits it if a recording wants it.
+	 * @param dispatcher The class of the dispatcher.
+	 * @param observers The number of observers of the dispatcher.
+	 */
+	public void end(Class<?> dispatcher, int observers) {
+		if (this != DISABLED && shouldCommit()) {
+			this.dispatcher = dispatcher;
+			this.observers = observers;
+			commit();
+		}
+	}
+}
@@ -0,0 +1,9 @@
+/**
+ * This package contains the Java Flight Recorder events of the simulation: the phases of a tick, the updateAll() calls
+ * of the dispatchers and the interactions of the balls. The events cost nothing unless a recording enables them, so
+ * they can stay in production code.
+ *
+ * @author Peter Dulworth (psd2)
+ * @author Rocky Wu (lw31)
+ */
+package util.jfr;
@@ -0,0 +1,254 @@
+package view;
+
+import java.awt.Canvas;
+import java.awt.Graphics;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsDevice;
+import java.awt.GraphicsEnvironment;
+import java.awt.Toolkit;
+import java.awt.image.BufferStrategy;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Renders the model onto a heavyweight canvas from a dedicated render thread, instead of asking Swing to repaint the
+ * canvas panel after every simulation tick. Each frame is drawn into the back buffer of a page-flipping BufferStrategy,
+ * which normally lives in accelerated video memory, and then shown in one flip.
+ *
+ * Frames are paced to the refresh rate of the screen: the thread parks until the next frame is due on a fixed schedule
+ * and flushes the window system with Toolkit.sync() after every flip. If the accelerated back buffer keeps losing its
+ * contents, or no BufferStrategy can be created at all, the renderer falls back to drawing into a BufferedImage that is
+ * then copied onto the canvas.
+ *
+ * If painting a frame throws, the failure is reported once, the render thread stops and the failure handler given to
+ * the constructor is run, e.g. to go back to passive repainting, rather than failing again on every frame.
+ * @author Peter Dulworth (psd2), Rocky Wu (lw31)
+ */
+public class ActiveRenderer {
+
+	/**
+	 * The frame rate used when the refresh rate of the screen is unknown.
+	 */
+	private static final int DEFAULT_FPS = 60;
+
+	/**
+	 * The number of consecutive frames whose accelerated back buffer may be lost before falling back to a BufferedImage.
+	 */
+	private static final int MAX_LOST_FRAMES = 3;
+
+	/**
+	 * The canvas that is rendered on.
+	 */
+	private final Canvas canvas;
+
+	/**
+	 * The adapter that paints the model.
+	 */
+	private final IV2MUpdateAdapter v2mUpdateAdapter;
+
+	/**
+	 * The time between two frames, in nanoseconds.
+	 */
+	private final long frameNanos;
+
+	/**
+	 * Run on the render thread when painting a frame fails, after the failure is reported and before the thread stops.
+	 */
+	private final Runnable onFailure;
+
+	/**
+	 * The render thread, or null if the renderer is stopped.
+	 */
+	private Thread renderThread;
+
+	/**
+	 * The back buffer of the fallback path, or null until the fallback path is first used.
+	 */
+	private BufferedImage fallback;
+
+	/**
+	 * The number of consecutive frames whose accelerated back buffer was lost.
+	 */
+	private int lostFrames = 0;
+
+	/**
+	 * Constructor that paces frames to the refresh rate of the screen.
+	 * @param canvas The canvas to render on.
+	 * @param v2mUpdateAdapter The adapter that paints the model.
+	 * @param onFailure Run on the render thread when painting a frame fails and the renderer stops.
+	 */
+	public ActiveRenderer(Canvas canvas, IV2MUpdateAdapter v2mUpdateAdapter, Runnable onFailure) {
+		this(canvas, v2mUpdateAdapter, onFailure, refreshRate());
+	}
+
+	/**
+	 * Constructor.
+	 * @param canvas The canvas to render on.
+	 * @param v2mUpdateAdapter The adapter that paints the model.
+	 * @param onFailure Run on the render thread when painting a frame fails and the renderer stops.
+	 * @param fps The target number of frames per second.
+	 */
+	public ActiveRenderer(Canvas canvas, IV2MUpdateAdapter v2mUpdateAdapter, Runnable onFailure, int fps) {
+		this.canvas = canvas;
+		this.v2mUpdateAdapter = v2mUpdateAdapter;
+		this.onFailure = onFailure;
+		this.frameNanos = TimeUnit.SECONDS.toNanos(1) / Math.max(1, fps);
+		canvas.setIgnoreRepaint(true);
+	}
+
+	/**
+	 * @return The refresh rate of the default screen, or DEFAULT_FPS if it is unknown or there is no screen.
+	 */
+	private static int refreshRate() {
+		if (GraphicsEnvironment.isHeadless()) {
+			return DEFAULT_FPS;
+		}
+		GraphicsDevice device = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice();
+		int rate = device.getDisplayMode().getRefreshRate();
+		return rate > 0 ? rate : DEFAULT_FPS;
+	}
+
+	/**
+	 * Starts the render thread. The canvas must be displayable.
+	 */
+	public synchronized void start() {
+		if (renderThread != null) {
+			return;
+		}
+		renderThread = new Thread(this::run, "ActiveRenderer");
+		renderThread.setDaemon(true);
+		renderThread.start();
+	}
+
+	/**
+	 * Asks the render thread to stop, without waiting for it: the thread finishes the frame in flight, if any, disposes
+	 * its BufferStrategy and exits on its own, so the GUI thread never blocks behind a frame. A frame that fails because
+	 * the canvas was removed meanwhile is not reported.
+	 */
+	public synchronized void stop() {
+		if (renderThread == null) {
+			return;
+		}
+		renderThread.interrupt();
+		renderThread = null;
+	}
+
+	/**
+	 * The body of the render thread. Renders a frame every frameNanos, skipping the frames that are already late, until
+	 * the renderer is stopped or a frame fails.
+	 */
+	private void run() {
+		BufferStrategy strategy = null;
+		try {
+			canvas.createBufferStrategy(2);
+			strategy = canvas.getBufferStrategy();
+		} catch (RuntimeException e) {
+			System.err.println("ActiveRenderer: no BufferStrategy, falling back to a BufferedImage\n" + e);
+		}
+		long next = System.nanoTime();
+		while (!Thread.currentThread().isInterrupted()) {
+			if (canvas.getWidth() > 0 && canvas.getHeight() > 0) {
+				try {
+					if (strategy == null) {
+						renderFallback();
+					} else if (!renderAccelerated(strategy)) {
+						// Give the accelerated buffers back now rather than when the renderer stops.
+						strategy.dispose();
+						strategy = null;
+					}
+					Toolkit.getDefaultToolkit().sync();
+				} catch (RuntimeException e) {
+					if (Thread.currentThread().isInterrupted()) {
+						break; // stopped while the canvas was being removed
+					}
+					System.err.println("ActiveRenderer: painting a frame failed, stopping the renderer\n" + e);
+					onFailure.run();
+					break;
+				}
+			}
+			next += frameNanos;
+			long now = System.nanoTime();
+			if (now - next > frameNanos) {
+				next = now; // drop the frames that could not be rendered in time
+			}
+			LockSupport.parkNanos(next - now);
+		}
+		if (strategy != null) {
+			strategy.dispose();
+		}
+	}
+
+	/**
+	 * Renders one frame into the back buffer of the BufferStrategy and flips it, redrawing the frame if the buffer was
+	 * restored or lost meanwhile.
+	 * @param strategy The BufferStrategy of the canvas.
+	 * @return False if the buffer was lost too often, in which case the next frames must use the fallback path.
+	 */
+	private boolean renderAccelerated(BufferStrategy strategy) {
+		do {
+			do {
+				Graphics g = strategy.getDrawGraphics();
+				try {
+					paintFrame(g, canvas.getWidth(), canvas.getHeight());
+				} finally {
+					g.dispose();
+				}
+			} while (strategy.contentsRestored());
+			strategy.show();
+			if (!strategy.contentsLost()) {
+				lostFrames = 0;
+				return true;
+			}
+		} while (++lostFrames < MAX_LOST_FRAMES);
+		System.err.println("ActiveRenderer: accelerated surface keeps getting lost, falling back to a BufferedImage");
+		return false;
+	}
+
+	/**
+	 * Renders one frame into the BufferedImage back buffer and copies it onto the canvas.
+	 */
+	private void renderFallback() {
+		int w = canvas.getWidth();
+		int h = canvas.getHeight();
+		if (fallback == null || fallback.getWidth() != w || fallback.getHeight() != h) {
+			fallback = newFallback();
+		}
+		Graphics g = fallback.getGraphics();
+		try {
+			paintFrame(g, w, h);
+		} finally {
+			g.dispose();
+		}
+		Graphics screen = canvas.getGraphics();
+		if (screen != null) {
+			try {
+				screen.drawImage(fallback, 0, 0, null);
+			} finally {
+				screen.dispose();
+			}
+		}
+	}
+
+	/**
+	 * @return A BufferedImage the size of the canvas, compatible with its screen if it has one.
+	 */
+	private BufferedImage newFallback() {
+		int w = Math.max(1, canvas.getWidth());
+		int h = Math.max(1, canvas.getHeight());
+		GraphicsConfiguration gc = canvas.getGraphicsConfiguration();
+		return gc != null ? gc.createCompatibleImage(w, h) : new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+	}
+
+	/**
+	 * Clears the given buffer to the background of the canvas and paints the model on it as of the current time.
+	 * @param g The Graphics object of the buffer.
+	 * @param w The width of the buffer.
+	 * @param h The height of the buffer.
+	 */
+	private void paintFrame(Graphics g, int w, int h) {
+		g.setColor(canvas.getBackground());
+		g.fillRect(0, 0, w, h);
+		v2mUpdateAdapter.paint(g, System.nanoTime());
+	}
+}
@@ -20,4 +20,15 @@ public interface IV2MUpdateAdapter {
 	 * @param g The {@link java.awt.Graphics Graphics} object to paint on.
 	 */
 	public void paint(Graphics g);
+
+	/**
+	 * This is the method the view's active renderer calls to paint a frame at a given time. The model may move the balls
+	 * ahead of its latest snapshot to that time, so that frames rendered faster than the simulation ticks still show
+	 * motion. By default, simply paints the latest state.
+	 * @param g The {@link java.awt.Graphics Graphics} object to paint on.
+	 * @param nanoTime The time of the frame, as given by System.nanoTime().
+	 */
+	public default void paint(Graphics g, long nanoTime) {
+		paint(g);
+	}
 }
\ No newline at end of file
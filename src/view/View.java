@@ -1,6 +1,7 @@
 package view;
 
 import java.awt.BorderLayout;
+import java.awt.Canvas;
 import java.awt.Color;
 import java.awt.Component;
 import java.awt.Dimension;
@@ -8,11 +9,13 @@ import java.awt.Graphics;
 import java.awt.GridLayout;
 
 import javax.swing.JButton;
+import javax.swing.JCheckBox;
 import javax.swing.JComboBox;
 import javax.swing.JFrame;
 import javax.swing.JPanel;
 import javax.swing.JTextField;
 import javax.swing.SwingConstants;
+import javax.swing.SwingUtilities;
 import javax.swing.border.EmptyBorder;
 import javax.swing.border.TitledBorder;
 import javax.swing.border.EtchedBorder;
@@ -65,6 +68,21 @@ public class View<TStrategyDropListItem, TPaintDropListItem> extends JFrame {
 	 */
 	private JPanel canvasPnl;
 
+	/**
+	 * The heavyweight canvas that the active renderer draws on, laid over the canvas panel while active rendering is on.
+	 */
+	private Canvas activeCanvas;
+
+	/**
+	 * The renderer that draws the model from its own thread, or null while the canvas panel is repainted by Swing.
+	 */
+	private volatile ActiveRenderer activeRenderer;
+
+	/**
+	 * The check box that turns active rendering on and off.
+	 */
+	private JCheckBox activeRenderingCB;
+
 	/**
 	 * The button that creates a switcher ball.
 	 */
@@ -171,12 +189,13 @@ public class View<TStrategyDropListItem, TPaintDropListItem> extends JFrame {
 			**/
 			public void paintComponent(Graphics g) { // gets called every time pnlCenter.repaint() is called
 				super.paintComponent(g); // Do everything normally done first, e.g. clear the screen.
-				if (init) // don't paint the first time
+				if (init && null == activeRenderer) // don't paint the first time, nor under the active canvas
 					v2mUpdateAdapter.paint(g);
 				init = true; // paint every other time
 			}
 		};
 		canvasPnl.setBorder(null);
+		canvasPnl.setLayout(new BorderLayout(0, 0));
 
 		canvasPnl.setName("Center Panel");
 		canvasPnl.setToolTipText("Panel in which the balls appear.");
@@ -287,6 +306,13 @@ public class View<TStrategyDropListItem, TPaintDropListItem> extends JFrame {
 		switchBtn.setAlignmentY(0.0f);
 		controlPnl.add(clearAllBtn);
 
+		activeRenderingCB = new JCheckBox("Active rendering");
+		activeRenderingCB.setToolTipText("Render the balls from a dedicated thread at the screen's refresh rate instead of repainting after every tick.");
+		activeRenderingCB.addActionListener((e) -> {
+			setActiveRendering(activeRenderingCB.isSelected());
+		});
+		controlPnl.add(activeRenderingCB);
+
 		paintPanel = new JPanel();
 		paintPanel.setBorder(new TitledBorder(new EtchedBorder(EtchedBorder.LOWERED, null, null), "Paint Strategies",
 				TitledBorder.CENTER, TitledBorder.TOP, null, new Color(0, 0, 0)));
@@ -313,6 +339,23 @@ public class View<TStrategyDropListItem, TPaintDropListItem> extends JFrame {
 		paintPanel.add(paintDropList);
 	}
 
+	/**
+	 * Adds an item to both update strategy drop lists, as the "Add to lists" button does.
+	 * @param item The item to add.
+	 */
+	public void addStrategyItem(TStrategyDropListItem item) {
+		dropListTop.addItem(item);
+		dropListBottom.addItem(item);
+	}
+
+	/**
+	 * Adds an item to the paint strategy drop list, as the "Add" button does.
+	 * @param item The item to add.
+	 */
+	public void addPaintItem(TPaintDropListItem item) {
+		paintDropList.addItem(item);
+	}
+
 	/**
 	 * @return The height of the center panel.
 	 */
@@ -328,10 +371,47 @@ public class View<TStrategyDropListItem, TPaintDropListItem> extends JFrame {
 	}
 
 	/**
-	 * This method repaints the center panel.
+	 * This method repaints the center panel. Does nothing while active rendering is on, since the render thread then
+	 * paints frames on its own schedule.
 	 */
 	public void update() {
-		canvasPnl.repaint();
+		if (null == activeRenderer) {
+			canvasPnl.repaint();
+		}
+	}
+
+	/**
+	 * Turns active rendering on or off. While it is on, a heavyweight canvas covers the center panel and an
+	 * ActiveRenderer draws the model on it from its own thread, paced to the refresh rate of the screen. The center
+	 * panel keeps its size, so the balls still bounce off its walls. If the renderer fails to paint a frame, the view goes
+	 * back to repainting the center panel. Must be called on the GUI thread.
+	 * @param active True to render actively, false to go back to repainting the center panel after every tick.
+	 */
+	public void setActiveRendering(boolean active) {
+		if (active == (null != activeRenderer)) {
+			return;
+		}
+		if (active) {
+			Canvas canvas = new Canvas();
+			activeCanvas = canvas;
+			activeCanvas.setBackground(canvasPnl.getBackground());
+			canvasPnl.add(activeCanvas, BorderLayout.CENTER);
+			canvasPnl.validate();
+			activeRenderer = new ActiveRenderer(activeCanvas, v2mUpdateAdapter, () -> SwingUtilities.invokeLater(() -> {
+				if (activeCanvas == canvas) { // not already turned off, or back on with a new renderer
+					setActiveRendering(false);
+				}
+			}));
+			activeRenderer.start();
+		} else {
+			activeRenderer.stop();
+			activeRenderer = null;
+			canvasPnl.remove(activeCanvas);
+			activeCanvas = null;
+			canvasPnl.validate();
+			canvasPnl.repaint();
+		}
+		activeRenderingCB.setSelected(active);
 	}
 
 	/**